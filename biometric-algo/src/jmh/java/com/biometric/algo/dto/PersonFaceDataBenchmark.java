@@ -0,0 +1,87 @@
+package com.biometric.algo.dto;
+
+import com.biometric.algo.config.BiometricDataSerializableFactory;
+import com.biometric.algo.util.Face303JavaCalcuater;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PersonFaceData 各序列化布局的序列化 / 反序列化耗时
+ *
+ * 序列化服务的配置与 HazelcastConfiguration 一致 (本机字节序、允许 Unsafe、不压缩)；
+ * 布局 0 为最初的逐人脸对象布局，1 为定长编码 + 逐人脸对象，2 为扁平布局。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersonFaceDataBenchmark {
+
+    @Param({"0", "1", "2"})
+    private int layout;
+
+    @Param({"1", "3"})
+    private int faces;
+
+    private InternalSerializationService serializationService;
+    private PersonFaceData person;
+    private Data data;
+
+    @Setup
+    public void setup() {
+        serializationService = new DefaultSerializationServiceBuilder()
+                .addDataSerializableFactory(BiometricDataSerializableFactory.FACTORY_ID, new BiometricDataSerializableFactory())
+                .setAllowUnsafe(true)
+                .setUseNativeByteOrder(true)
+                .setEnableCompression(false)
+                .build();
+
+        Random random = new Random(42);
+        List<CachedFaceFeature> features = new ArrayList<>(faces);
+        for (int i = 0; i < faces; i++) {
+            float[] vector = new float[128];
+            for (int k = 0; k < vector.length; k++) {
+                vector[k] = (float) random.nextGaussian();
+            }
+            CachedFaceFeature feature = CachedFaceFeature.createOptimized("F" + i,
+                    new int[]{random.nextInt(), random.nextInt(), random.nextInt(), random.nextInt()},
+                    Face303JavaCalcuater.normalize(vector));
+            feature.setNormalized(true);
+            feature.setTemplateType("FACE");
+            feature.setAlgoType("303");
+            features.add(feature);
+        }
+        person = new PersonFaceData();
+        person.setPersonId("P0000001");
+        person.setGroupIds(new String[]{"G1", "G2"});
+        person.setFeatures(features);
+
+        PersonFaceData.setWriteLayout(layout);
+        data = serializationService.toData(person);
+    }
+
+    @TearDown
+    public void tearDown() {
+        PersonFaceData.setWriteLayout(PersonFaceData.LAYOUT_LEGACY);
+    }
+
+    @Benchmark
+    public Data serialize() {
+        return serializationService.toData(person);
+    }
+
+    @Benchmark
+    public PersonFaceData deserialize() {
+        return serializationService.toObject(data);
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.biometric.algo.aggregator;
+
+import com.biometric.algo.config.BiometricDataSerializableFactory;
+import com.biometric.algo.dto.CompareParams;
+import com.biometric.algo.dto.CompareResult;
+import com.biometric.algo.dto.PersonFaceData;
+import com.biometric.algo.dto.SearchResult;
+import com.hazelcast.aggregation.Aggregator;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import org.springframework.util.CollectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量 1:N 聚合：一批并发查询共享一次 IMap 遍历
+ *
+ * 每条记录只反序列化一次，再按各查询自己的分组过滤后交给对应的 FaceRecogAggregator，
+ * 阈值、topN、剪枝下界均由各查询独立维护；结果与查询一一对应。
+ * 调用方的谓词应为全部查询分组的并集 (任一查询不限分组时不加谓词)。
+ * 序列化时依次内联写出各查询的聚合器，分组由各查询参数重建。
+ */
+public class BatchFaceRecogAggregator implements Aggregator<Map.Entry<String, PersonFaceData>, List<SearchResult>>,
+        IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private FaceRecogAggregator[] aggregators;
+    // 各查询的分组，null 表示不限分组
+    private HashSet<String>[] groups;
+
+    /**
+     * 反序列化使用
+     */
+    public BatchFaceRecogAggregator() {
+    }
+
+    public BatchFaceRecogAggregator(List<CompareParams> paramsList) {
+        FaceRecogAggregator[] aggregators = new FaceRecogAggregator[paramsList.size()];
+        for (int q = 0; q < paramsList.size(); q++) {
+            aggregators[q] = new FaceRecogAggregator(paramsList.get(q));
+        }
+        init(aggregators);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void init(FaceRecogAggregator[] aggregators) {
+        this.aggregators = aggregators;
+        this.groups = new HashSet[aggregators.length];
+        for (int q = 0; q < aggregators.length; q++) {
+            CompareParams params = aggregators[q].getCompareParams();
+            groups[q] = CollectionUtils.isEmpty(params.getGroups()) ? null : new HashSet<>(params.getGroups());
+        }
+    }
+
+    @Override
+    public void accumulate(Map.Entry<String, PersonFaceData> entry) {
+        if (entry == null || !mayMatch(entry)) return;
+        accumulateMatched(entry);
+    }
+
+    /**
+     * 累加调用方已用 {@link #mayMatch} 粗筛通过的记录 (任一查询可能通过)，各查询仍按自身条件粗筛
+     */
+    public void accumulateMatched(Map.Entry<String, PersonFaceData> entry) {
+        if (entry == null) return;
+        PersonFaceData personData = entry.getValue();
+        if (personData == null) return;
+
+        for (int q = 0; q < aggregators.length; q++) {
+            if (groups[q] == null || inGroups(personData.getGroupIds(), groups[q])) {
+                aggregators[q].accumulate(entry);
+            }
+        }
+    }
+
+    /**
+     * 任一查询可能通过序列化字节上的汉明粗筛时才需要反序列化
+     */
+    public boolean mayMatch(Map.Entry<String, PersonFaceData> entry) {
+        for (FaceRecogAggregator aggregator : aggregators) {
+            if (aggregator.mayMatch(entry)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 全部查询都已停止累加
+     */
+    public boolean isAborted() {
+        for (FaceRecogAggregator aggregator : aggregators) {
+            if (!aggregator.isAborted()) return false;
+        }
+        return true;
+    }
+
+    private static boolean inGroups(String[] personGroups, Set<String> targets) {
+        if (personGroups == null) return false;
+        for (String group : personGroups) {
+            if (group != null && targets.contains(group)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onAccumulationFinished() {
+        for (FaceRecogAggregator aggregator : aggregators) {
+            aggregator.onAccumulationFinished();
+        }
+    }
+
+    @Override
+    public void combine(Aggregator aggregator) {
+        if (!(aggregator instanceof BatchFaceRecogAggregator)) return;
+        BatchFaceRecogAggregator other = (BatchFaceRecogAggregator) aggregator;
+        for (int q = 0; q < aggregators.length; q++) {
+            aggregators[q].combine(other.aggregators[q]);
+        }
+    }
+
+    @Override
+    public int getFactoryId() {
+        return BiometricDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return BiometricDataSerializableFactory.ID_BATCH_FACE_RECOG_AGGREGATOR;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeInt(aggregators.length);
+        for (FaceRecogAggregator aggregator : aggregators) {
+            aggregator.writeData(out);
+        }
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        FaceRecogAggregator[] aggregators = new FaceRecogAggregator[in.readInt()];
+        for (int q = 0; q < aggregators.length; q++) {
+            aggregators[q] = new FaceRecogAggregator();
+            aggregators[q].readData(in);
+        }
+        init(aggregators);
+    }
+
+    @Override
+    public List<SearchResult> aggregate() {
+        List<SearchResult> results = new ArrayList<>(aggregators.length);
+        for (FaceRecogAggregator aggregator : aggregators) {
+            results.add(aggregator.aggregate());
+        }
+        return results;
+    }
+
+}
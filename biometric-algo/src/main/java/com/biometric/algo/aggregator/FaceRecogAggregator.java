@@ -1,69 +1,119 @@
 package com.biometric.algo.aggregator;
 
+import com.biometric.algo.config.BiometricDataSerializableFactory;
 import com.biometric.algo.dto.CachedFaceFeature;
 import com.biometric.algo.dto.CompareParams;
 import com.biometric.algo.dto.CompareResult;
 import com.biometric.algo.dto.PersonFaceData;
+import com.biometric.algo.dto.SearchResult;
+import com.biometric.algo.store.ScanBudget;
+import com.biometric.algo.store.SearchCancellation;
 import com.biometric.algo.util.Face303JavaCalcuater;
+import com.biometric.algo.util.HalfFloat;
 import com.hazelcast.aggregation.Aggregator;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.hazelcast.query.impl.QueryableEntry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.util.CollectionUtils;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 
+/**
+ * 1:N 聚合
+ *
+ * 下发与回传使用手写序列化：下发时只有查询参数 (含调用方预计算的查询特征)，
+ * 回传时先物化未结束的累加结果，只写出结果堆与覆盖统计。
+ */
 @Slf4j
-public class FaceRecogAggregator implements Aggregator<Map.Entry<String, PersonFaceData>, List<CompareResult>>, Serializable {
+public class FaceRecogAggregator implements Aggregator<Map.Entry<String, PersonFaceData>, SearchResult>, IdentifiedDataSerializable {
 
     private static final long serialVersionUID = 1L;
-
-    // 汉明距离阈值 - 越小筛选越严格，性能越好但可能漏检
-    private static final int HAMMING_DIST_THRESHOLD = 50;
+    // 每累加该数量的记录检查一次取消、截止时间与预算
+    private static final int ABORT_CHECK_INTERVAL = 256;
 
     private transient List<float[]> inputFloatFeatures;
+    // 分块打分使用的连续输入特征：二进制特征每 4 个 int 一组，归一化浮点特征每 inputDim 个 float 一组
+    private transient int[] inputBinaryBlock;
+    private transient float[] inputUnitBlock;
+    private transient int inputDim;
+    // 归一化输入特征的分块后缀范数，用于余弦精筛提前放弃；维度不是分块整数倍时为 null
+    private transient float[] inputSuffixNorms;
+    // 每个候选复用的打分缓冲区
+    private transient int[] selectedInputs;
+    private transient float[] blockScores;
+    // 半精度候选向量展开为 float 的缓冲区
+    private transient float[] widenBuffer;
     private transient List<int[]> inputBinaryFeatures;
     private transient String[] inputFaceIdStrings;
+    // 汉明距离阈值 - 越小筛选越严格，性能越好但可能漏检
+    private transient int hammingThreshold;
 
     // 动态剪枝阈值 - 记录当前TopN堆中的最低分
     private transient float dynamicThreshold = -1.0f;
+    // 累加阶段的原始 TopN 堆，尚未物化为 CompareResult
+    private transient PersonTopNHeap pendingTopN;
+    // 本成员上同一查询所有并行副本共享的剪枝下界，查询未携带 ID 时为 null
+    private transient SharedPruningBound sharedBound;
+    // scorePerson 最高分对应的人脸
+    private transient String maxPersonFaceId;
+    // 查询已取消、超时或预算用尽，之后的记录直接跳过
+    private transient boolean aborted;
+    private transient int accumulated;
+    // 预算模式下本成员共享的预算，未启用时为 null；已扣减的比对次数
+    private transient ScanBudget budget;
+    private transient long charged;
+
+    // 覆盖统计，随副本合并累加
+    private long candidates;
+    private long evaluations;
+    // 累加中途停止 (预算用尽、取消或超时)，结果不完整
+    private boolean incomplete;
 
     private CompareParams compareParams;
     private PriorityQueue<CompareResult> localTopNHeap;
 
+    /**
+     * 反序列化使用
+     */
+    public FaceRecogAggregator() {
+    }
+
     public FaceRecogAggregator(CompareParams params) {
         this.compareParams = params;
         // 预分配足够容量，避免扩容
         this.localTopNHeap = new PriorityQueue<>(params.getTopN() + 1, new CompareResultScoreComparator());
     }
 
-    // 初始化输入特征（搜索查询特征）
+    // 初始化输入特征（搜索查询特征），编码与归一化向量已由调用方预计算
     private void initInputFeatures() {
         if (inputFloatFeatures != null) return;
 
-        inputFloatFeatures = new ArrayList<>();
-        inputBinaryFeatures = new ArrayList<>();
-        List<String> faceIdList = new ArrayList<>();
+        inputFloatFeatures = Arrays.asList(compareParams.getInputVectors());
+        inputBinaryFeatures = Arrays.asList(compareParams.getInputCodes());
+        inputFaceIdStrings = compareParams.getInputFaceIds();
 
-        if (compareParams != null && !CollectionUtils.isEmpty(compareParams.getFeatures())) {
-            int idx = 0;
-            for (byte[] feature : compareParams.getFeatures()) {
-                if (feature == null || feature.length == 0) {
-                    idx++;
-                    continue;
-                }
-                // 输入特征只计算一次，此处开销可忽略
-                int[] binaryFeat = Face303JavaCalcuater.getBinaFeat(feature);
-                float[] floatFeat = Face303JavaCalcuater.toFloatArray(feature);
-
-                if (binaryFeat != null && floatFeat != null) {
-                    inputBinaryFeatures.add(binaryFeat);
-                    inputFloatFeatures.add(floatFeat);
-                    faceIdList.add(String.valueOf(idx));
-                }
-                idx++;
-            }
-            inputFaceIdStrings = faceIdList.toArray(new String[0]);
+        // 展开为连续数组，候选与全部输入特征一次性分块打分
+        final int inputSize = inputBinaryFeatures.size();
+        inputDim = inputSize == 0 ? 0 : inputFloatFeatures.get(0).length;
+        inputBinaryBlock = new int[inputSize * 4];
+        inputUnitBlock = new float[inputSize * inputDim];
+        for (int i = 0; i < inputSize; i++) {
+            System.arraycopy(inputBinaryFeatures.get(i), 0, inputBinaryBlock, i * 4, 4);
+            System.arraycopy(inputFloatFeatures.get(i), 0, inputUnitBlock, i * inputDim, inputDim);
         }
+        if (inputSize > 0 && inputDim % Face303JavaCalcuater.BOUND_CHUNK == 0) {
+            inputSuffixNorms = Face303JavaCalcuater.suffixNorms(inputUnitBlock, inputDim, inputSize);
+        }
+        hammingThreshold = compareParams.getHammingRadius() != null
+                ? compareParams.getHammingRadius() : Face303JavaCalcuater.DEFAULT_HAM_DIST;
+        selectedInputs = new int[inputSize];
+        blockScores = new float[inputSize];
+        sharedBound = SharedPruningBound.of(compareParams.getQueryId());
+        budget = ScanBudget.of(compareParams);
     }
 
     private static class CompareResultScoreComparator implements Comparator<CompareResult>, Serializable {
@@ -76,79 +126,204 @@ public class FaceRecogAggregator implements Aggregator<Map.Entry<String, PersonF
 
     @Override
     public void accumulate(Map.Entry<String, PersonFaceData> entry) {
-        if (entry == null || entry.getValue() == null) return;
+        accumulate(entry, true);
+    }
+
+    /**
+     * 累加调用方已用 {@link #mayMatch} 粗筛通过的记录，不再重复粗筛
+     */
+    public void accumulateMatched(Map.Entry<String, PersonFaceData> entry) {
+        accumulate(entry, false);
+    }
+
+    private void accumulate(Map.Entry<String, PersonFaceData> entry, boolean prefilter) {
+        if (entry == null) return;
 
         // 懒加载初始化输入特征
         if (inputBinaryFeatures == null) {
             initInputFeatures();
         }
-        if (inputBinaryFeatures.isEmpty()) return;
-
+        if (inputBinaryFeatures.isEmpty() || aborted) return;
+        if (++accumulated % ABORT_CHECK_INTERVAL == 0 && checkAborted()) {
+            aborted = true;
+            incomplete = true;
+            return;
+        }
+        // 先在序列化字节上汉明粗筛，全部人脸都未通过的人员不反序列化
+        if (prefilter && !mayMatch(entry)) {
+            candidates++;
+            return;
+        }
         PersonFaceData personData = entry.getValue();
-        List<CachedFaceFeature> features = personData.getFeatures();
-        if (features == null || features.isEmpty()) return;
+        if (personData == null) return;
+        if (pendingTopN == null) {
+            pendingTopN = new PersonTopNHeap(compareParams.getTopN());
+        }
 
+        // 获取当前有效阈值（用户阈值 vs 本地/成员共享剪枝阈值，取较大者）
+        float pruningThreshold = Math.max(dynamicThreshold, pendingTopN.minScore());
+        if (sharedBound != null) {
+            pruningThreshold = Math.max(pruningThreshold, sharedBound.get());
+        }
+        final float effectiveThreshold = Math.max(compareParams.getThreshold(), pruningThreshold);
+
+        candidates++;
+        // 累加阶段只求人员最高分，不创建任何结果对象
+        final float maxPersonScore = scorePerson(personData, null, effectiveThreshold);
+
+        // 3. 更新局部堆（只有超过有效阈值才入堆）
+        if (maxPersonScore >= effectiveThreshold) {
+            pendingTopN.offer(maxPersonScore, personData);
+            // 本地堆已满时第 N 名分数即全局下界，发布给同成员的其他副本
+            if (sharedBound != null && pendingTopN.size() == compareParams.getTopN()) {
+                sharedBound.raise(pendingTopN.minScore());
+            }
+        }
+    }
+
+    /**
+     * 记录的序列化字节是否可能通过汉明粗筛
+     * 只有值仍为序列化形式 (BINARY 存储的查询条目) 时才能预筛，否则返回 true
+     */
+    public boolean mayMatch(Map.Entry<String, PersonFaceData> entry) {
+        if (!(entry instanceof QueryableEntry)) return true;
+        Data data = ((QueryableEntry<?, ?>) entry).getValueDataIfPresent();
+        if (data == null) return true;
+        if (inputBinaryFeatures == null) {
+            initInputFeatures();
+        }
+        return PersonFaceData.mayMatch(data.toByteArray(), inputBinaryBlock, inputBinaryFeatures.size(), hammingThreshold);
+    }
+
+    CompareParams getCompareParams() {
+        return compareParams;
+    }
+
+    /**
+     * 查询已取消、超时或预算用尽，之后累加的记录将被忽略
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * 检查取消与截止时间；预算模式下先扣减上次检查以来的比对次数再检查预算
+     */
+    private boolean checkAborted() {
+        if (budget != null) {
+            budget.charge(evaluations - charged);
+            charged = evaluations;
+            if (budget.isExhausted()) return true;
+        }
+        return SearchCancellation.isAborted(compareParams.getQueryId(), compareParams.getDeadline());
+    }
+
+    /**
+     * 人员与全部输入特征比对，返回人员最高分，最高分对应的人脸记录在 maxPersonFaceId
+     *
+     * @param matchedDetails 不为 null 时收集分数 >= detailThreshold 的比对详情
+     */
+    private float scorePerson(PersonFaceData personData, List<CompareResult.compareDetails> matchedDetails,
+                              float detailThreshold) {
         float maxPersonScore = -1.0f;
-        String maxPersonFaceId = null;
+        maxPersonFaceId = null;
 
-        // 用于收集通过阈值的详细匹配结果（懒初始化）
-        List<CompareResult.compareDetails> matchedDetails = null;
+        List<CachedFaceFeature> features = personData.getFeatures();
+        if (features == null || features.isEmpty()) return maxPersonScore;
 
         final int inputSize = inputBinaryFeatures.size();
 
-        // 获取当前有效阈值（用户阈值 vs 动态剪枝阈值，取较大者）
-        final float effectiveThreshold = Math.max(compareParams.getThreshold(), dynamicThreshold);
-
         for (CachedFaceFeature candidate : features) {
             // 1. 直接获取预计算特征（优化：避免空检查分支预测失败）
             final int[] candidateBinaryFeat = candidate.getBinaryFeature();
-            final float[] candidateFloatFeat = candidate.getFeatureVector();
+            float[] candidateFloatFeat = candidate.getFeatureVector();
+            final short[] candidateHalfFeat = candidateFloatFeat == null ? candidate.getHalfVector() : null;
+            final boolean candidateNormalized = candidate.isNormalized();
 
             // 快速跳过无效特征
             if (candidateBinaryFeat == null || candidateBinaryFeat.length != 4 ||
-                    candidateFloatFeat == null || candidateFloatFeat.length == 0) {
+                    (candidateFloatFeat == null || candidateFloatFeat.length == 0)
+                            && (candidateHalfFeat == null || candidateHalfFeat.length == 0)) {
                 continue;
             }
 
             // 2. 与所有输入特征比对
-            for (int i = 0; i < inputSize; i++) {
-                final int[] inputBFeat = inputBinaryFeatures.get(i);
-
-                // 2.1 汉明距离粗筛 (位运算，极快，~5ns)
-                boolean isSimilar = Face303JavaCalcuater.isBinaFeatSimilar(
-                        inputBFeat[0], inputBFeat[1], inputBFeat[2], inputBFeat[3],
-                        candidateBinaryFeat[0], candidateBinaryFeat[1], candidateBinaryFeat[2], candidateBinaryFeat[3],
-                        HAMMING_DIST_THRESHOLD
-                );
-
-                if (isSimilar) {
-                    // 2.2 余弦相似度精筛 (浮点运算，~50ns)
-                    final float similarity = Face303JavaCalcuater.compare(inputFloatFeatures.get(i), candidateFloatFeat);
-
-                    // 记录该人员的最佳分数
-                    if (similarity > maxPersonScore) {
-                        maxPersonScore = similarity;
-                        maxPersonFaceId = candidate.getFaceId();
+            // 2.1 批量汉明距离粗筛 (位运算，极快，~5ns/对)，候选编码只加载一次
+            final int passed = Face303JavaCalcuater.filterBinaFeat(inputBinaryBlock, inputSize,
+                    candidateBinaryFeat[0], candidateBinaryFeat[1], candidateBinaryFeat[2], candidateBinaryFeat[3],
+                    hammingThreshold, selectedInputs);
+            if (passed == 0) continue;
+            if (candidateHalfFeat != null) {
+                // 半精度候选通过粗筛后才展开到复用缓冲区，之后与浮点候选走同一内核
+                candidateFloatFeat = widenBuffer = HalfFloat.decode(candidateHalfFeat, widenBuffer);
+            }
+            if (matchedDetails == null) evaluations += passed;
+
+            // 2.2 余弦相似度精筛：候选向量与所有通过粗筛的输入特征分块计算点积
+            // 已归一化的候选逐输入有界计算：低于阈值 (累加阶段还包括人员当前最高分) 的比对不影响结果
+            final float bound = matchedDetails == null ? Math.max(detailThreshold, maxPersonScore) : detailThreshold;
+            if (candidateNormalized && inputSuffixNorms != null && candidateFloatFeat.length == inputDim
+                    && Face303JavaCalcuater.isBoundedWorthwhile(bound)) {
+                Face303JavaCalcuater.dotBlockBounded(inputUnitBlock, inputDim, inputSuffixNorms, selectedInputs, passed,
+                        candidateFloatFeat, 0, bound, blockScores);
+            } else if (candidateFloatFeat.length == inputDim) {
+                Face303JavaCalcuater.dotBlock(inputUnitBlock, inputDim, selectedInputs, passed,
+                        candidateFloatFeat, 0, blockScores);
+                if (!candidateNormalized) {
+                    // 未归一化的候选：点积再乘以候选范数倒数，每个候选只算一次
+                    final float invNorm = Face303JavaCalcuater.inverseNorm(candidateFloatFeat);
+                    for (int k = 0; k < passed; k++) {
+                        blockScores[k] *= invNorm;
                     }
+                }
+            } else {
+                // 维度不一致的异常数据退回逐对计算
+                for (int k = 0; k < passed; k++) {
+                    blockScores[k] = Face303JavaCalcuater.compare(inputFloatFeatures.get(selectedInputs[k]), candidateFloatFeat);
+                }
+            }
 
-                    // 2.3 动态剪枝：只有超过有效阈值，才创建详情对象
-                    if (similarity >= effectiveThreshold) {
-                        if (matchedDetails == null) {
-                            matchedDetails = new ArrayList<>(4); // 预分配小容量
-                        }
-                        CompareResult.compareDetails detail = new CompareResult.compareDetails();
-                        detail.setFaceId1(inputFaceIdStrings[i]);
-                        detail.setFaceId2(candidate.getFaceId());
-                        detail.setScore(similarity);
-                        detail.setMatched(true);
-                        matchedDetails.add(detail);
-                    }
+            for (int k = 0; k < passed; k++) {
+                final float similarity = blockScores[k];
+
+                // 记录该人员的最佳分数
+                if (similarity > maxPersonScore) {
+                    maxPersonScore = similarity;
+                    maxPersonFaceId = candidate.getFaceId();
+                }
+
+                // 2.3 只在物化胜出者时创建详情对象
+                if (matchedDetails != null && similarity >= detailThreshold) {
+                    CompareResult.compareDetails detail = new CompareResult.compareDetails();
+                    detail.setFaceId1(inputFaceIdStrings[selectedInputs[k]]);
+                    detail.setFaceId2(candidate.getFaceId());
+                    detail.setScore(similarity);
+                    detail.setMatched(true);
+                    matchedDetails.add(detail);
                 }
             }
         }
+        return maxPersonScore;
+    }
+
+    /**
+     * 累加结束：为原始堆中的胜出者重新比对，生成带详情的 CompareResult 并入结果堆
+     * 详情收集全部不低于用户阈值的比对，结果对象数量只与 topN 有关，与命中数无关
+     */
+    @Override
+    public void onAccumulationFinished() {
+        if (budget != null) {
+            // 不足一个检查间隔的比对次数在累加结束时扣减
+            budget.charge(evaluations - charged);
+            charged = evaluations;
+        }
+        if (pendingTopN == null || pendingTopN.size() == 0) return;
+
+        for (int i = 0; i < pendingTopN.size(); i++) {
+            PersonFaceData personData = pendingTopN.personAt(i);
+            List<CompareResult.compareDetails> matchedDetails = new ArrayList<>(4);
+            float maxPersonScore = scorePerson(personData, matchedDetails, compareParams.getThreshold());
 
-        // 3. 更新局部堆（只有超过用户阈值才入堆）
-        if (matchedDetails != null && !matchedDetails.isEmpty() && maxPersonScore >= compareParams.getThreshold()) {
             CompareResult result = new CompareResult();
             result.setPsnTmplNo(personData.getPersonId());
             result.setScore(maxPersonScore);
@@ -158,6 +333,7 @@ public class FaceRecogAggregator implements Aggregator<Map.Entry<String, PersonF
 
             updateHeap(result);
         }
+        pendingTopN.clear();
     }
 
     private void updateHeap(CompareResult result) {
@@ -180,10 +356,54 @@ public class FaceRecogAggregator implements Aggregator<Map.Entry<String, PersonF
         }
     }
 
+    @Override
+    public int getFactoryId() {
+        return BiometricDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return BiometricDataSerializableFactory.ID_FACE_RECOG_AGGREGATOR;
+    }
+
+    /**
+     * 只写出字段，不改变状态 (Hazelcast 并行累加时以序列化复制聚合器)；原始堆中的人员数据不参与序列化，
+     * 结果发送前由累加方调用 onAccumulationFinished 物化 (Hazelcast 的累加执行器与 MemberSearchExecutor 均如此)
+     */
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        compareParams.writeData(out);
+        out.writeLong(candidates);
+        out.writeLong(evaluations);
+        out.writeBoolean(incomplete);
+        SearchResult.writeResults(out, localTopNHeap);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        compareParams = new CompareParams();
+        compareParams.readData(in);
+        candidates = in.readLong();
+        evaluations = in.readLong();
+        incomplete = in.readBoolean();
+        localTopNHeap = new PriorityQueue<>(compareParams.getTopN() + 1, new CompareResultScoreComparator());
+        List<CompareResult> results = SearchResult.readResults(in);
+        if (results != null) {
+            for (CompareResult result : results) {
+                updateHeap(result);
+            }
+        }
+    }
+
     @Override
     public void combine(Aggregator aggregator) {
         if (!(aggregator instanceof FaceRecogAggregator)) return;
         FaceRecogAggregator other = (FaceRecogAggregator) aggregator;
+        onAccumulationFinished();
+        other.onAccumulationFinished();
+        candidates += other.candidates;
+        evaluations += other.evaluations;
+        incomplete |= other.incomplete;
         if (other.localTopNHeap == null) return;
 
         for (CompareResult result : other.localTopNHeap) {
@@ -192,8 +412,18 @@ public class FaceRecogAggregator implements Aggregator<Map.Entry<String, PersonF
     }
 
     @Override
-    public List<CompareResult> aggregate() {
+    public SearchResult aggregate() {
+        SearchResult searchResult = SearchResult.of(aggregateResults());
+        // IMap 聚合按记录遍历，不统计分区
+        searchResult.setComplete(!incomplete);
+        searchResult.setCandidates(candidates);
+        searchResult.setEvaluations(evaluations);
+        return searchResult;
+    }
+
+    private List<CompareResult> aggregateResults() {
         if (localTopNHeap == null) return Collections.emptyList();
+        onAccumulationFinished();
 
         List<CompareResult> results = new ArrayList<>(localTopNHeap);
         // 按分数降序排列
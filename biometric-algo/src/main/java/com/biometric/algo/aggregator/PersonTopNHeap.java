@@ -0,0 +1,91 @@
+package com.biometric.algo.aggregator;
+
+import com.biometric.algo.dto.PersonFaceData;
+
+/**
+ * 人员 TopN 小顶堆 (基于并行数组)
+ * 累加阶段只记录人员最高分与人员数据引用，入堆、出堆不产生任何对象；
+ * 比对详情在累加结束后只为最终胜出者重新计算
+ */
+class PersonTopNHeap {
+
+    private final int capacity;
+    private final float[] scores;
+    private final PersonFaceData[] persons;
+    private int size;
+
+    PersonTopNHeap(int capacity) {
+        this.capacity = capacity;
+        this.scores = new float[capacity];
+        this.persons = new PersonFaceData[capacity];
+    }
+
+    /**
+     * 堆满时的最低分 (动态剪枝阈值)，未满时返回 -1
+     */
+    float minScore() {
+        return size < capacity ? -1.0f : scores[0];
+    }
+
+    /**
+     * 与 PriorityQueue 版本语义一致：未满直接入堆，堆满时只有严格高于堆顶才替换
+     */
+    void offer(float score, PersonFaceData person) {
+        if (size < capacity) {
+            int i = size++;
+            scores[i] = score;
+            persons[i] = person;
+            siftUp(i);
+        } else if (score > scores[0]) {
+            scores[0] = score;
+            persons[0] = person;
+            siftDown(0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    PersonFaceData personAt(int i) {
+        return persons[i];
+    }
+
+    /**
+     * 清空并释放人员数据引用
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            persons[i] = null;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && scores[right] < scores[left]) smallest = right;
+            if (scores[i] <= scores[smallest]) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float s = scores[a]; scores[a] = scores[b]; scores[b] = s;
+        PersonFaceData p = persons[a]; persons[a] = persons[b]; persons[b] = p;
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.biometric.algo.aggregator;
+
+import com.biometric.algo.store.QueryScope;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 成员内共享的剪枝下界 (登记在查询的 {@link QueryScope} 上)
+ *
+ * 并行累加时每个分区线程持有独立的聚合器副本，各自只能用本地 TopN 堆的最低分剪枝。
+ * 任一副本堆满时，其第 N 名分数就是全局第 N 名分数的下界 (各分区人员互不重复)，
+ * 因此同一成员上同一查询的所有副本可以共享其中的最大值，尽早跳过不可能进入 TopN 的人员。
+ */
+final class SharedPruningBound {
+
+    // 浮点分数按 int 位存放，初始为 -1 (无下界)
+    private final AtomicInteger bits = new AtomicInteger(Float.floatToIntBits(-1.0f));
+
+    private SharedPruningBound() {
+    }
+
+    /**
+     * 获取查询在本成员上的共享下界，queryId 为空时返回 null (不共享)
+     */
+    static SharedPruningBound of(String queryId) {
+        QueryScope scope = QueryScope.of(queryId);
+        return scope == null ? null : scope.attach(SharedPruningBound.class, SharedPruningBound::new);
+    }
+
+    float get() {
+        return Float.intBitsToFloat(bits.get());
+    }
+
+    /**
+     * 发布某个副本的第 N 名分数，只保留最大值
+     */
+    void raise(float score) {
+        int current = bits.get();
+        while (score > Float.intBitsToFloat(current)) {
+            if (bits.compareAndSet(current, Float.floatToIntBits(score))) {
+                return;
+            }
+            current = bits.get();
+        }
+    }
+
+}
@@ -1,7 +1,16 @@
 package com.biometric.algo.config;
 
+import com.biometric.algo.aggregator.BatchFaceRecogAggregator;
+import com.biometric.algo.aggregator.FaceRecogAggregator;
 import com.biometric.algo.dto.CachedFaceFeature;
+import com.biometric.algo.dto.CompareParams;
+import com.biometric.algo.dto.CompareResult;
 import com.biometric.algo.dto.PersonFaceData;
+import com.biometric.algo.dto.SearchResult;
+import com.biometric.algo.store.LocalBatchSearchTask;
+import com.biometric.algo.store.LocalSearchTask;
+import com.biometric.algo.store.MemberBatchScanTask;
+import com.biometric.algo.store.MemberScanTask;
 import com.hazelcast.nio.serialization.DataSerializableFactory;
 import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
@@ -11,6 +20,16 @@ public class BiometricDataSerializableFactory implements DataSerializableFactory
 
     public static final int ID_CACHED_FACE_FEATURE = 1;
     public static final int ID_PERSON_FACE_DATA = 2;
+    public static final int ID_COMPARE_PARAMS = 3;
+    public static final int ID_COMPARE_RESULT = 4;
+    public static final int ID_COMPARE_DETAILS = 5;
+    public static final int ID_SEARCH_RESULT = 6;
+    public static final int ID_FACE_RECOG_AGGREGATOR = 7;
+    public static final int ID_BATCH_FACE_RECOG_AGGREGATOR = 8;
+    public static final int ID_LOCAL_SEARCH_TASK = 9;
+    public static final int ID_LOCAL_BATCH_SEARCH_TASK = 10;
+    public static final int ID_MEMBER_SCAN_TASK = 11;
+    public static final int ID_MEMBER_BATCH_SCAN_TASK = 12;
 
     @Override
     public IdentifiedDataSerializable create(int typeId) {
@@ -19,6 +38,26 @@ public class BiometricDataSerializableFactory implements DataSerializableFactory
                 return new CachedFaceFeature();
             case ID_PERSON_FACE_DATA:
                 return new PersonFaceData();
+            case ID_COMPARE_PARAMS:
+                return new CompareParams();
+            case ID_COMPARE_RESULT:
+                return new CompareResult();
+            case ID_COMPARE_DETAILS:
+                return new CompareResult.compareDetails();
+            case ID_SEARCH_RESULT:
+                return new SearchResult();
+            case ID_FACE_RECOG_AGGREGATOR:
+                return new FaceRecogAggregator();
+            case ID_BATCH_FACE_RECOG_AGGREGATOR:
+                return new BatchFaceRecogAggregator();
+            case ID_LOCAL_SEARCH_TASK:
+                return new LocalSearchTask();
+            case ID_LOCAL_BATCH_SEARCH_TASK:
+                return new LocalBatchSearchTask();
+            case ID_MEMBER_SCAN_TASK:
+                return new MemberScanTask();
+            case ID_MEMBER_BATCH_SCAN_TASK:
+                return new MemberBatchScanTask();
             default:
                 return null;
         }
@@ -1,6 +1,8 @@
 package com.biometric.algo.config;
 
+import com.biometric.algo.dto.PersonFaceData;
 import com.hazelcast.config.*;
+import com.hazelcast.partition.strategy.StringPartitioningStrategy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,6 +10,10 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class HazelcastConfiguration {
     public static final String FACE_FEATURE_MAP = "face-features";
+    public static final String FACE_SEARCH_EXECUTOR = "face-search";
+    public static final String GROUP_PARTITION_MAP = "face-group-partitions";
+    // 分组共置时 personId → 当前缓存键，主分组变化时据此删除旧键
+    public static final String PERSON_KEY_MAP = "face-person-keys";
 
     @Value("${hazelcast.cluster.name:biometric-cluster}")
     private String clusterName;
@@ -105,12 +111,26 @@ public class HazelcastConfiguration {
         mapConfig.setStatisticsEnabled(true);
         mapConfig.setPerEntryStatsEnabled(false);
 
+        // 键中带 @ 时按 @ 之后的分区键分区 (分组共置)，普通 personId 键的分区与默认策略相同
+        mapConfig.setPartitioningStrategyConfig(
+                new PartitioningStrategyConfig(StringPartitioningStrategy.class.getName()));
+
         IndexConfig groupIndex = new IndexConfig(IndexType.HASH, "groupIds[any]");
         groupIndex.setName("idx_group_ids");
         mapConfig.addIndexConfig(groupIndex);
 
         config.addMapConfig(mapConfig);
 
+        // 1:N 搜索任务执行器（成员本地扫描在任务内部再按分区并行）
+        ExecutorConfig searchExecutorConfig = new ExecutorConfig(FACE_SEARCH_EXECUTOR);
+        searchExecutorConfig.setPoolSize(Math.max(cpuCores / 2, 4));
+        searchExecutorConfig.setStatisticsEnabled(true);
+        config.addExecutorConfig(searchExecutorConfig);
+
+        // 声明本节点可读的最高序列化布局，写出布局由 SerializationLayoutSwitch 按全部成员的声明切换
+        config.getMemberAttributeConfig().setAttribute(SerializationLayoutSwitch.READABLE_LAYOUT_ATTRIBUTE,
+                String.valueOf(PersonFaceData.LAYOUT_FLAT));
+
         // --- 注册自定义序列化工厂 ---
         config.getSerializationConfig()
                 .addDataSerializableFactory(
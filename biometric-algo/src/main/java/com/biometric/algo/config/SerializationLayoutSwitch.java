@@ -0,0 +1,95 @@
+package com.biometric.algo.config;
+
+import com.biometric.algo.dto.PersonFaceData;
+import com.hazelcast.cluster.Member;
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * PersonFaceData 写出布局的切换
+ *
+ * 各节点通过成员属性 {@link #READABLE_LAYOUT_ATTRIBUTE} 声明自身可读的最高布局，未声明的旧版本节点按 0 计。
+ * 实际写出的布局取配置值与集群内全部成员可读布局的最小值，成员加入或离开时重新计算：
+ * 配置为 2 时，集群中仍有旧节点则继续写出最初的布局，最后一个旧节点离开后才切换。
+ * 旧节点在切换后重新加入时立即回退，但此前已写出的数据仍为新布局，滚动升级期间不要让旧节点重新加入。
+ *
+ * PersonFaceData 的序列化方法没有实例上下文，写出布局只能保存在其静态字段中。
+ */
+@Component
+public class SerializationLayoutSwitch {
+
+    private static final Logger log = LoggerFactory.getLogger(SerializationLayoutSwitch.class);
+
+    public static final String READABLE_LAYOUT_ATTRIBUTE = "biometric.serialization.readable-layout";
+
+    // 期望写出的布局：0 最初布局 (默认，旧节点可读) / 1 定长编码 / 2 扁平布局
+    @Value("${biometric.cache.serialization-layout:0}")
+    private int configuredLayout = PersonFaceData.LAYOUT_LEGACY;
+
+    private final HazelcastInstance hazelcastInstance;
+
+    @Autowired
+    public SerializationLayoutSwitch(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (configuredLayout < PersonFaceData.LAYOUT_LEGACY || configuredLayout > PersonFaceData.LAYOUT_FLAT) {
+            throw new IllegalArgumentException("不支持的序列化布局: " + configuredLayout);
+        }
+        if (configuredLayout == PersonFaceData.LAYOUT_LEGACY) {
+            PersonFaceData.setWriteLayout(PersonFaceData.LAYOUT_LEGACY);
+            return;
+        }
+        hazelcastInstance.getCluster().addMembershipListener(new MembershipListener() {
+            @Override
+            public void memberAdded(MembershipEvent event) {
+                update();
+            }
+
+            @Override
+            public void memberRemoved(MembershipEvent event) {
+                update();
+            }
+        });
+        update();
+    }
+
+    private synchronized void update() {
+        int layout = configuredLayout;
+        for (Member member : hazelcastInstance.getCluster().getMembers()) {
+            layout = Math.min(layout, readableLayout(member));
+        }
+        int previous = PersonFaceData.getWriteLayout();
+        PersonFaceData.setWriteLayout(layout);
+        if (layout != previous) {
+            log.info("人员特征序列化布局: {} -> {} (配置: {})", previous, layout, configuredLayout);
+        } else if (layout < configuredLayout) {
+            log.info("集群中有成员只能读取布局 {}，暂不切换为配置的布局 {}", layout, configuredLayout);
+        }
+    }
+
+    private static int readableLayout(Member member) {
+        String value = member.getAttribute(READABLE_LAYOUT_ATTRIBUTE);
+        if (value == null) return PersonFaceData.LAYOUT_LEGACY;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return PersonFaceData.LAYOUT_LEGACY;
+        }
+    }
+
+    public int getConfiguredLayout() {
+        return configuredLayout;
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.biometric.algo.dto;
 
+import com.biometric.algo.util.HalfFloat;
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
@@ -17,6 +18,12 @@ import java.io.IOException;
  * - featureData: 仅在需要NX算法时保留（可选）
  *
  * 预期内存节省: 约30-50%（取决于NX算法使用频率）
+ *
+ * 半精度模式下 featureVector 为 null，向量以 float16 存于 halfVector (256B)，比对时再展开为 float。
+ *
+ * 本类的序列化格式与最初版本逐字节一致 (PersonFaceData 最初的布局与定长编码布局逐人脸写出本对象)，
+ * 新旧节点可互相读取。加载阶段派生的字段 (normalized / quantizedVector / longCode) 只由
+ * PersonFaceData 扁平布局写出；按本格式读取时 normalized 由向量重新判定，量化向量与长编码由特征库入库时重新计算。
  */
 public class CachedFaceFeature implements IdentifiedDataSerializable {
 
@@ -43,6 +50,35 @@ public class CachedFaceFeature implements IdentifiedDataSerializable {
      */
     private float[] featureVector;
 
+    /**
+     * 半精度特征向量 (float16 位模式，见 HalfFloat) - 半精度模式下替代 featureVector (可选)
+     * 固定长度: 128个short = 256 bytes
+     */
+    private short[] halfVector;
+
+    /**
+     * int8 标量量化特征 - 用于整数点积快速粗排 (可选)
+     * 固定长度: 128个byte = 128 bytes，配合 quantizedScale 还原
+     */
+    private byte[] quantizedVector;
+
+    /**
+     * 量化缩放系数: featureVector[i] ≈ quantizedVector[i] * quantizedScale
+     */
+    private float quantizedScale;
+
+    /**
+     * featureVector 是否已做 L2 归一化
+     * 归一化后余弦相似度可直接用点积计算
+     */
+    private boolean normalized;
+
+    /**
+     * 长二进制特征 (256/512 位随机旋转符号投影，见 BinaryProjection) - 用于第二道汉明距离粗筛 (可选)
+     * 固定长度: bits / 64 个long
+     */
+    private long[] longCode;
+
     // ================== 内存优化标记 ==================
     /**
      * 是否保留原始特征数据的标记
@@ -105,7 +141,8 @@ public class CachedFaceFeature implements IdentifiedDataSerializable {
         }
 
         // featureVector 使用标准数组写入（JIT会优化）
-        out.writeFloatArray(featureVector);
+        // 本格式不含半精度字段，半精度向量展开为 float 写出，保持旧节点可读 (PersonFaceData 扁平布局直接写出半精度)
+        out.writeFloatArray(featureVector == null && halfVector != null ? HalfFloat.decode(halfVector, null) : featureVector);
     }
 
     @Override
@@ -131,6 +168,31 @@ public class CachedFaceFeature implements IdentifiedDataSerializable {
         }
 
         this.featureVector = in.readFloatArray();
+        // 本格式不携带归一化标记，按向量模长重新判定
+        this.normalized = isUnit(featureVector);
+    }
+
+    /**
+     * 向量模长是否为 1 (容差覆盖 float 归一化后的累加误差)
+     */
+    private static boolean isUnit(float[] vector) {
+        if (vector == null || vector.length == 0) return false;
+        float sum = 0.0F;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        return Math.abs(sum - 1.0F) < 1e-4F;
+    }
+
+    /**
+     * 比对使用的浮点向量：优先返回 featureVector，半精度模式下展开 halfVector
+     *
+     * @param buffer 展开用的缓冲区，长度一致时复用 (调用方独占)，为 null 时新建
+     * @return 两者均不存在时为 null
+     */
+    public float[] widenVector(float[] buffer) {
+        if (featureVector != null) return featureVector;
+        return halfVector == null ? null : HalfFloat.decode(halfVector, buffer);
     }
 
     /**
@@ -145,6 +207,9 @@ public class CachedFaceFeature implements IdentifiedDataSerializable {
         if (featureData != null) size += 16 + featureData.length;
         if (binaryFeature != null) size += 16 + binaryFeature.length * 4;
         if (featureVector != null) size += 16 + featureVector.length * 4;
+        if (halfVector != null) size += 16 + halfVector.length * 2;
+        if (quantizedVector != null) size += 16 + quantizedVector.length;
+        if (longCode != null) size += 16 + longCode.length * 8;
         return size;
     }
 
@@ -168,6 +233,21 @@ public class CachedFaceFeature implements IdentifiedDataSerializable {
     public float[] getFeatureVector() { return featureVector; }
     public void setFeatureVector(float[] featureVector) { this.featureVector = featureVector; }
 
+    public short[] getHalfVector() { return halfVector; }
+    public void setHalfVector(short[] halfVector) { this.halfVector = halfVector; }
+
+    public byte[] getQuantizedVector() { return quantizedVector; }
+    public void setQuantizedVector(byte[] quantizedVector) { this.quantizedVector = quantizedVector; }
+
+    public float getQuantizedScale() { return quantizedScale; }
+    public void setQuantizedScale(float quantizedScale) { this.quantizedScale = quantizedScale; }
+
+    public boolean isNormalized() { return normalized; }
+    public void setNormalized(boolean normalized) { this.normalized = normalized; }
+
+    public long[] getLongCode() { return longCode; }
+    public void setLongCode(long[] longCode) { this.longCode = longCode; }
+
     public boolean isKeepRawData() { return keepRawData; }
     public void setKeepRawData(boolean keepRawData) { this.keepRawData = keepRawData; }
 
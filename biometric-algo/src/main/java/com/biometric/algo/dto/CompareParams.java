@@ -1,10 +1,25 @@
 package com.biometric.algo.dto;
 
+import com.biometric.algo.config.BiometricDataSerializableFactory;
+import com.biometric.algo.util.Face303JavaCalcuater;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * 1:N 搜索参数
+ *
+ * 随聚合器下发到各成员时使用手写的紧凑序列化：查询特征在调用方预计算一次 (二进制编码与归一化向量)，
+ * 只下发预计算结果，不再下发原始特征与图片，成员上的各聚合副本与列式扫描直接使用。
+ */
 @lombok.Data
-public class CompareParams implements Serializable {
+public class CompareParams implements IdentifiedDataSerializable, Serializable {
 
     List<byte[]> features;
 
@@ -18,4 +33,179 @@ public class CompareParams implements Serializable {
 
     int topN;
 
+    /**
+     * 搜索引擎，为空时使用全量扫描
+     */
+    SearchEngine engine;
+
+    /**
+     * IVF 探查的聚类数，<= 0 时使用服务端默认值
+     */
+    int nprobe;
+
+    /**
+     * HNSW 搜索的候选队列长度 (efSearch)，<= 0 时使用服务端默认值
+     */
+    int efSearch;
+
+    /**
+     * 汉明距离粗筛半径 (0 ~ 128)，越小越快但可能漏检，为空时使用服务端默认值
+     */
+    Integer hammingRadius;
+
+    /**
+     * 查询 ID，由服务端在每次搜索时生成，同一成员上的并行聚合副本据此共享剪枝下界，取消广播亦按此 ID 登记
+     */
+    String queryId;
+
+    /**
+     * 截止时间 (本地时钟 epoch 毫秒)，<= 0 表示不限；随查询下发到各成员，过期后成员停止扫描
+     * 序列化时写出剩余时长，接收方按自身时钟换算，不依赖集群时钟同步
+     */
+    long deadline;
+
+    /**
+     * 预算模式：每个成员的扫描时长上限 (毫秒)，<= 0 表示不限
+     * 预算用尽时成员停止扫描并返回已扫描部分的 TopN，覆盖范围见 SearchResult
+     */
+    long budgetMillis;
+
+    /**
+     * 预算模式：每个成员的特征比对次数上限 (汉明粗筛通过后的余弦或 int8 比对)，<= 0 表示不限
+     */
+    long budgetEvaluations;
+
+    /**
+     * 查询特征的预计算结果：有效输入特征的二进制编码、归一化向量与在 features 中的序号，
+     * 由 {@link #prepareInputs()} 计算，未计算时为 null
+     */
+    int[][] inputCodes;
+
+    float[][] inputVectors;
+
+    String[] inputFaceIds;
+
+    public boolean isBudgeted() {
+        return budgetMillis > 0 || budgetEvaluations > 0;
+    }
+
+    /**
+     * 替换原始特征时清除预计算结果
+     */
+    public synchronized void setFeatures(List<byte[]> features) {
+        this.features = features;
+        this.inputCodes = null;
+        this.inputVectors = null;
+        this.inputFaceIds = null;
+    }
+
+    /**
+     * 预计算查询特征，已计算过时直接返回；解析失败的特征跳过
+     */
+    public synchronized void prepareInputs() {
+        if (inputCodes != null) return;
+        List<int[]> codes = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        List<String> faceIds = new ArrayList<>();
+        if (features != null) {
+            int idx = 0;
+            for (byte[] feature : features) {
+                if (feature != null && feature.length > 0) {
+                    int[] binaryFeat = Face303JavaCalcuater.getBinaFeat(feature);
+                    float[] floatFeat = Face303JavaCalcuater.toFloatArray(feature);
+                    if (binaryFeat != null && floatFeat != null) {
+                        codes.add(binaryFeat);
+                        vectors.add(Face303JavaCalcuater.normalize(floatFeat));
+                        faceIds.add(String.valueOf(idx));
+                    }
+                }
+                idx++;
+            }
+        }
+        inputVectors = vectors.toArray(new float[0][]);
+        inputFaceIds = faceIds.toArray(new String[0]);
+        inputCodes = codes.toArray(new int[0][]);
+    }
+
+    public int[][] getInputCodes() {
+        prepareInputs();
+        return inputCodes;
+    }
+
+    public float[][] getInputVectors() {
+        prepareInputs();
+        return inputVectors;
+    }
+
+    public String[] getInputFaceIds() {
+        prepareInputs();
+        return inputFaceIds;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return BiometricDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return BiometricDataSerializableFactory.ID_COMPARE_PARAMS;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        prepareInputs();
+        out.writeInt(inputCodes.length);
+        for (int i = 0; i < inputCodes.length; i++) {
+            out.writeString(inputFaceIds[i]);
+            out.writeIntArray(inputCodes[i]);
+            out.writeFloatArray(inputVectors[i]);
+        }
+        out.writeStringArray(groups == null ? null : groups.toArray(new String[0]));
+        out.writeString(algoType);
+        out.writeFloat(threshold);
+        out.writeInt(topN);
+        out.writeString(engine == null ? null : engine.name());
+        out.writeInt(nprobe);
+        out.writeInt(efSearch);
+        out.writeInt(hammingRadius == null ? -1 : hammingRadius);
+        out.writeString(queryId);
+        // 剩余时长，已过期时至少为 1 (0 表示不限)
+        out.writeLong(deadline > 0 ? Math.max(deadline - System.currentTimeMillis(), 1) : 0);
+        out.writeLong(budgetMillis);
+        out.writeLong(budgetEvaluations);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        int inputs = in.readInt();
+        int[][] codes = new int[inputs][];
+        float[][] vectors = new float[inputs][];
+        String[] faceIds = new String[inputs];
+        for (int i = 0; i < inputs; i++) {
+            faceIds[i] = in.readString();
+            codes[i] = in.readIntArray();
+            vectors[i] = in.readFloatArray();
+        }
+        this.inputCodes = codes;
+        this.inputVectors = vectors;
+        this.inputFaceIds = faceIds;
+        String[] groupArray = in.readStringArray();
+        this.groups = groupArray == null ? null : new ArrayList<>(Arrays.asList(groupArray));
+        this.algoType = in.readString();
+        this.threshold = in.readFloat();
+        this.topN = in.readInt();
+        String engineName = in.readString();
+        this.engine = engineName == null ? null : SearchEngine.valueOf(engineName);
+        this.nprobe = in.readInt();
+        this.efSearch = in.readInt();
+        int radius = in.readInt();
+        this.hammingRadius = radius < 0 ? null : radius;
+        this.queryId = in.readString();
+        long remaining = in.readLong();
+        this.deadline = remaining > 0 ? System.currentTimeMillis() + remaining : 0;
+        this.budgetMillis = in.readLong();
+        this.budgetEvaluations = in.readLong();
+    }
+
 }
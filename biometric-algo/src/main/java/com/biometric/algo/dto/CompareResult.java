@@ -1,12 +1,18 @@
 package com.biometric.algo.dto;
 
+import com.biometric.algo.config.BiometricDataSerializableFactory;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 import lombok.Data;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
-public class CompareResult implements Serializable {
+public class CompareResult implements IdentifiedDataSerializable, Serializable {
 
     private String psnTmplNo;
 
@@ -26,8 +32,64 @@ public class CompareResult implements Serializable {
 
     private List<compareDetails> details;
 
+    @Override
+    public int getFactoryId() {
+        return BiometricDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return BiometricDataSerializableFactory.ID_COMPARE_RESULT;
+    }
+
+    /**
+     * 比对详情随结果内联写出，不逐条写对象头 (详情数为 -1 表示 null)
+     */
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeString(psnTmplNo);
+        out.writeString(faceId);
+        out.writeFloat(score);
+        out.writeBoolean(matched);
+        out.writeString(maxFaceId);
+        out.writeFloat(maxScore);
+        out.writeString(minFaceId);
+        out.writeFloat(minScore);
+        if (details == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(details.size());
+            for (compareDetails detail : details) {
+                detail.writeData(out);
+            }
+        }
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        this.psnTmplNo = in.readString();
+        this.faceId = in.readString();
+        this.score = in.readFloat();
+        this.matched = in.readBoolean();
+        this.maxFaceId = in.readString();
+        this.maxScore = in.readFloat();
+        this.minFaceId = in.readString();
+        this.minScore = in.readFloat();
+        int size = in.readInt();
+        if (size < 0) {
+            this.details = null;
+        } else {
+            this.details = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                compareDetails detail = new compareDetails();
+                detail.readData(in);
+                this.details.add(detail);
+            }
+        }
+    }
+
     @Data
-    public static class compareDetails implements Serializable {
+    public static class compareDetails implements IdentifiedDataSerializable, Serializable {
 
         private String faceId1;
 
@@ -37,6 +99,32 @@ public class CompareResult implements Serializable {
 
         private boolean matched;
 
+        @Override
+        public int getFactoryId() {
+            return BiometricDataSerializableFactory.FACTORY_ID;
+        }
+
+        @Override
+        public int getClassId() {
+            return BiometricDataSerializableFactory.ID_COMPARE_DETAILS;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            out.writeString(faceId1);
+            out.writeString(faceId2);
+            out.writeFloat(score);
+            out.writeBoolean(matched);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            this.faceId1 = in.readString();
+            this.faceId2 = in.readString();
+            this.score = in.readFloat();
+            this.matched = in.readBoolean();
+        }
+
     }
 
-}
\ No newline at end of file
+}
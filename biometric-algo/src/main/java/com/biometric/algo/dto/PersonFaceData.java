@@ -1,15 +1,69 @@
 package com.biometric.algo.dto;
 
+import com.biometric.algo.util.Face303JavaCalcuater;
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * 人员特征缓存对象 (face-features 的值)
+ *
+ * 【序列化布局】
+ * 版本 1、2 的负载以格式标记开头，随后是人脸数与全部人脸的二进制编码 (每张 4 个 int，缺失时为 0)，位于固定偏移，
+ * 扫描方可直接在序列化字节上做汉明粗筛 (见 {@link #mayMatch})，只反序列化通过粗筛的人员。
+ *
+ * 扁平布局 (版本 2) 在定长部分之后按列写出全部人脸：
+ * personId、groupIds、字符串表 (faceId / templateType / algoType 去重)、每张人脸 3 个字符串表下标、
+ * 每张人脸 1 字节标记、各人脸向量依次整块写出的向量区 (半精度向量写 short 数组)，最后是少数人脸才有的可选字段
+ * (原始特征、int8 量化向量、长二进制编码)。不再逐人脸写对象头与 factoryId/classId，编码也只写一份。
+ *
+ * 读取兼容全部旧布局：版本 1 (定长编码后逐人脸写对象) 与最初的布局 (以 personId 开头，
+ * 首个 int 为字符串长度，不会等于格式标记，粗筛时视为可能匹配)。默认写出最初的布局，旧节点可读；
+ * 全部节点升级后再用 {@link #setWriteLayout} 切换为带格式标记的布局。
+ * 最初的布局与版本 1 中的人脸对象为最初的 CachedFaceFeature 格式，不含加载阶段的派生字段 (归一化标记、
+ * int8 量化向量、长二进制编码)，这些字段只在扁平布局中保留，缺失时由读取方重新计算。
+ */
 public class PersonFaceData implements IdentifiedDataSerializable {
 
+    /**
+     * 写出布局：最初的布局 / 定长编码 + 逐人脸对象 / 扁平布局
+     */
+    public static final int LAYOUT_LEGACY = 0;
+    public static final int LAYOUT_CODES = 1;
+    public static final int LAYOUT_FLAT = 2;
+
+    /**
+     * 各布局的格式标记，定长部分相同
+     */
+    static final int LAYOUT_MAGIC = 0xFACE5EED;
+    static final int LAYOUT_MAGIC_FLAT = 0xFACE5EE2;
+
+    // 序列化字节中的偏移：Data 头 (分区哈希 4 + 类型 4)，IdentifiedDataSerializable 头 (标记 1 + factoryId 4 + classId 4)
+    private static final int TYPE_OFFSET = 4;
+    private static final int IDS_HEADER_OFFSET = 8;
+    private static final int MAGIC_OFFSET = 17;
+    private static final int COUNT_OFFSET = MAGIC_OFFSET + 4;
+    private static final int CODES_OFFSET = COUNT_OFFSET + 4;
+    // SerializationConstants.CONSTANT_TYPE_DATA_SERIALIZABLE
+    private static final int TYPE_DATA_SERIALIZABLE = -2;
+
+    // 扁平布局的人脸标记位
+    private static final int FLAG_CODE = 1;
+    private static final int FLAG_NORMALIZED = 1 << 1;
+    private static final int FLAG_RAW = 1 << 2;
+    private static final int FLAG_QUANTIZED = 1 << 3;
+    private static final int FLAG_LONG_CODE = 1 << 4;
+    // 向量以半精度存储 (旧版本节点不识别，全部节点升级后才能开启半精度加载)
+    private static final int FLAG_HALF = 1 << 5;
+
+    private static volatile int writeLayout = LAYOUT_LEGACY;
+
     private String personId;
     private String[] groupIds;
     private List<CachedFaceFeature> features;
@@ -17,6 +71,20 @@ public class PersonFaceData implements IdentifiedDataSerializable {
     public PersonFaceData() {
     }
 
+    /**
+     * 设置本节点写出的布局 (读取总是兼容全部布局)
+     */
+    public static void setWriteLayout(int layout) {
+        if (layout < LAYOUT_LEGACY || layout > LAYOUT_FLAT) {
+            throw new IllegalArgumentException("不支持的序列化布局: " + layout);
+        }
+        writeLayout = layout;
+    }
+
+    public static int getWriteLayout() {
+        return writeLayout;
+    }
+
     @Override
     public int getFactoryId() {
         return 1000;
@@ -29,6 +97,105 @@ public class PersonFaceData implements IdentifiedDataSerializable {
 
     @Override
     public void writeData(ObjectDataOutput out) throws IOException {
+        final int layout = writeLayout;
+        if (layout == LAYOUT_LEGACY) {
+            writeLegacy(out);
+            return;
+        }
+        // 定长部分：格式标记、人脸数、全部人脸的二进制编码
+        final int size = features == null ? 0 : features.size();
+        out.writeInt(layout == LAYOUT_FLAT ? LAYOUT_MAGIC_FLAT : LAYOUT_MAGIC);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            int[] code = features.get(i).getBinaryFeature();
+            boolean valid = code != null && code.length == 4;
+            for (int k = 0; k < 4; k++) {
+                out.writeInt(valid ? code[k] : 0);
+            }
+        }
+
+        out.writeString(personId);
+        out.writeStringArray(groupIds);
+        if (layout == LAYOUT_FLAT) {
+            writeFlat(out, size);
+        } else {
+            for (int i = 0; i < size; i++) {
+                out.writeObject(features.get(i));
+            }
+        }
+    }
+
+    private void writeFlat(ObjectDataOutput out, int size) throws IOException {
+        // 字符串表：同一人员的 templateType / algoType 通常相同，只写一次；表很小，线性查找即可
+        String[] table = new String[size * 3];
+        int tableSize = 0;
+        int[] refs = new int[size * 3];
+        byte[] flags = new byte[size];
+        for (int i = 0; i < size; i++) {
+            CachedFaceFeature feature = features.get(i);
+            String[] values = {feature.getFaceId(), feature.getTemplateType(), feature.getAlgoType()};
+            for (int k = 0; k < 3; k++) {
+                int ref = values[k] == null ? -1 : indexOf(table, tableSize, values[k]);
+                if (values[k] != null && ref < 0) {
+                    ref = tableSize;
+                    table[tableSize++] = values[k];
+                }
+                refs[i * 3 + k] = ref;
+            }
+            flags[i] = flagsOf(feature);
+        }
+
+        out.writeInt(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            out.writeString(table[i]);
+        }
+        out.writeIntArray(refs);
+        out.writeByteArray(flags);
+        // 向量区：各人脸向量依次整块写出 (null 记为长度 -1)，读取时直接整块读入各自的数组
+        for (int i = 0; i < size; i++) {
+            CachedFaceFeature feature = features.get(i);
+            if ((flags[i] & FLAG_HALF) != 0) {
+                out.writeShortArray(feature.getHalfVector());
+            } else {
+                out.writeFloatArray(feature.getFeatureVector());
+            }
+        }
+
+        // 可选字段按人脸顺序写出，只有标记位为 1 的人脸才有
+        for (int i = 0; i < size; i++) {
+            CachedFaceFeature feature = features.get(i);
+            if ((flags[i] & FLAG_RAW) != 0) {
+                out.writeByteArray(feature.getFeatureData());
+            }
+            if ((flags[i] & FLAG_QUANTIZED) != 0) {
+                out.writeByteArray(feature.getQuantizedVector());
+                out.writeFloat(feature.getQuantizedScale());
+            }
+            if ((flags[i] & FLAG_LONG_CODE) != 0) {
+                out.writeLongArray(feature.getLongCode());
+            }
+        }
+    }
+
+    private static int indexOf(String[] table, int tableSize, String value) {
+        for (int i = 0; i < tableSize; i++) {
+            if (table[i].equals(value)) return i;
+        }
+        return -1;
+    }
+
+    private static byte flagsOf(CachedFaceFeature feature) {
+        int flags = 0;
+        if (feature.getBinaryFeature() != null && feature.getBinaryFeature().length == 4) flags |= FLAG_CODE;
+        if (feature.isNormalized()) flags |= FLAG_NORMALIZED;
+        if (feature.getFeatureData() != null && feature.getFeatureData().length > 0) flags |= FLAG_RAW;
+        if (feature.getQuantizedVector() != null && feature.getQuantizedVector().length > 0) flags |= FLAG_QUANTIZED;
+        if (feature.getLongCode() != null && feature.getLongCode().length > 0) flags |= FLAG_LONG_CODE;
+        if (feature.getFeatureVector() == null && feature.getHalfVector() != null) flags |= FLAG_HALF;
+        return (byte) flags;
+    }
+
+    private void writeLegacy(ObjectDataOutput out) throws IOException {
         out.writeString(personId);
         out.writeStringArray(groupIds);
 
@@ -44,8 +211,89 @@ public class PersonFaceData implements IdentifiedDataSerializable {
 
     @Override
     public void readData(ObjectDataInput in) throws IOException {
+        final int head = in.readInt();
+        if (head != LAYOUT_MAGIC && head != LAYOUT_MAGIC_FLAT) {
+            readLegacy(head, in);
+            return;
+        }
+        final int size = in.readInt();
+        if (head == LAYOUT_MAGIC) {
+            // 编码在各人脸特征中另有一份，此处跳过
+            in.skipBytes(size * 16);
+            this.personId = in.readString();
+            this.groupIds = in.readStringArray();
+            this.features = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                this.features.add(in.readObject());
+            }
+            return;
+        }
+
+        int[] codes = new int[size * 4];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = in.readInt();
+        }
         this.personId = in.readString();
         this.groupIds = in.readStringArray();
+        readFlat(in, size, codes);
+    }
+
+    private void readFlat(ObjectDataInput in, int size, int[] codes) throws IOException {
+        String[] table = new String[in.readInt()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = in.readString();
+        }
+        int[] refs = in.readIntArray();
+        byte[] flags = in.readByteArray();
+
+        this.features = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CachedFaceFeature feature = new CachedFaceFeature();
+            feature.setFaceId(lookup(table, refs[i * 3]));
+            feature.setTemplateType(lookup(table, refs[i * 3 + 1]));
+            feature.setAlgoType(lookup(table, refs[i * 3 + 2]));
+            if ((flags[i] & FLAG_CODE) != 0) {
+                feature.setBinaryFeature(Arrays.copyOfRange(codes, i * 4, i * 4 + 4));
+            }
+            if ((flags[i] & FLAG_HALF) != 0) {
+                feature.setHalfVector(in.readShortArray());
+            } else {
+                feature.setFeatureVector(in.readFloatArray());
+            }
+            feature.setNormalized((flags[i] & FLAG_NORMALIZED) != 0);
+            this.features.add(feature);
+        }
+        for (int i = 0; i < size; i++) {
+            CachedFaceFeature feature = features.get(i);
+            if ((flags[i] & FLAG_RAW) != 0) {
+                feature.setFeatureData(in.readByteArray());
+            }
+            if ((flags[i] & FLAG_QUANTIZED) != 0) {
+                feature.setQuantizedVector(in.readByteArray());
+                feature.setQuantizedScale(in.readFloat());
+            }
+            if ((flags[i] & FLAG_LONG_CODE) != 0) {
+                feature.setLongCode(in.readLongArray());
+            }
+        }
+    }
+
+    private static String lookup(String[] table, int index) {
+        return index < 0 ? null : table[index];
+    }
+
+    /**
+     * 最初的布局：personId (head 为其 UTF-8 字节长度，-1 表示 null)、groupIds、人脸数、各人脸特征
+     */
+    private void readLegacy(int head, ObjectDataInput in) throws IOException {
+        if (head < 0) {
+            this.personId = null;
+        } else {
+            byte[] utf8 = new byte[head];
+            in.readFully(utf8);
+            this.personId = new String(utf8, StandardCharsets.UTF_8);
+        }
+        this.groupIds = in.readStringArray();
 
         int size = in.readInt();
         if (size > 0) {
@@ -58,6 +306,57 @@ public class PersonFaceData implements IdentifiedDataSerializable {
         }
     }
 
+    /**
+     * 在序列化字节 (Data.toByteArray()) 上做汉明粗筛，不反序列化
+     *
+     * @return 任一人脸编码与任一输入编码的汉明距离不超过 hamDist 时为 true；
+     *         非定长布局 (旧版本写入或非本类型) 无法判断，同样返回 true 由调用方反序列化后比对
+     */
+    public static boolean mayMatch(byte[] data, int[] inputCodes, int inputSize, int hamDist) {
+        if (data == null || data.length < CODES_OFFSET
+                || readInt(data, TYPE_OFFSET, true) != TYPE_DATA_SERIALIZABLE || data[IDS_HEADER_OFFSET] != 1) {
+            return true;
+        }
+        // 负载按序列化配置的字节序写入，以格式标记判断字节序
+        final boolean bigEndian;
+        if (isLayoutMagic(readInt(data, MAGIC_OFFSET, true))) {
+            bigEndian = true;
+        } else if (isLayoutMagic(readInt(data, MAGIC_OFFSET, false))) {
+            bigEndian = false;
+        } else {
+            return true;
+        }
+        final int size = readInt(data, COUNT_OFFSET, bigEndian);
+        if (size < 0 || CODES_OFFSET + size * 16L > data.length) return true;
+
+        for (int i = 0, off = CODES_OFFSET; i < size; i++, off += 16) {
+            final int c0 = readInt(data, off, bigEndian);
+            final int c1 = readInt(data, off + 4, bigEndian);
+            final int c2 = readInt(data, off + 8, bigEndian);
+            final int c3 = readInt(data, off + 12, bigEndian);
+            for (int c = 0; c < inputSize * 4; c += 4) {
+                if (Face303JavaCalcuater.isBinaFeatSimilar(inputCodes[c], inputCodes[c + 1], inputCodes[c + 2], inputCodes[c + 3],
+                        c0, c1, c2, c3, hamDist)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLayoutMagic(int value) {
+        return value == LAYOUT_MAGIC || value == LAYOUT_MAGIC_FLAT;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean bigEndian) {
+        if (bigEndian) {
+            return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+                    | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+        }
+        return (data[offset + 3] & 0xFF) << 24 | (data[offset + 2] & 0xFF) << 16
+                | (data[offset + 1] & 0xFF) << 8 | (data[offset] & 0xFF);
+    }
+
     public String getPersonId() { return personId; }
     public void setPersonId(String personId) { this.personId = personId; }
     public String[] getGroupIds() { return groupIds; }
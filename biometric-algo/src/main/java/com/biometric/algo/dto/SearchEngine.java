@@ -0,0 +1,29 @@
+package com.biometric.algo.dto;
+
+/**
+ * 1:N 搜索引擎
+ */
+public enum SearchEngine {
+
+    /**
+     * 全量扫描 (汉明粗筛 + 余弦精筛)，结果精确
+     */
+    SCAN,
+
+    /**
+     * IVF 倒排索引：只扫描与查询最近的 nprobe 个聚类，近似搜索
+     */
+    IVF,
+
+    /**
+     * HNSW 图索引：分层图上的贪心 + beam 搜索，ef 越大召回越高、延迟越大
+     */
+    HNSW,
+
+    /**
+     * 由查询规划器按分组基数、查询特征数与各成员数据规模自动选择：
+     * 候选规模较小时精确扫描 (分组检索只扫描分组成员)，候选规模很大且索引可用时改用 IVF / HNSW
+     */
+    AUTO
+
+}
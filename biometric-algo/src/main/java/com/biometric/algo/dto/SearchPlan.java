@@ -0,0 +1,78 @@
+package com.biometric.algo.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 1:N 搜索的执行计划 (查询规划器输出，亦用于 explain)
+ *
+ * 代价单位为 "一次人脸比对" (一次汉明粗筛，通过时再加一次余弦精筛)，
+ * 成员扇出、分组位图合并、聚类中心比对等开销折算为等价的比对次数。
+ */
+@Data
+public class SearchPlan implements Serializable {
+
+    public enum Strategy {
+        /**
+         * 发往全部成员扫描全部分区 (有分组时按分组位图跳过非成员)
+         */
+        FULL_SCAN,
+        /**
+         * 分组共置下只发往分组成员所在分区的主副本成员，按分组位图扫描
+         */
+        GROUP_SCAN,
+        /**
+         * 近似索引 (IVF / HNSW) 探查
+         */
+        ANN_PROBE
+    }
+
+    private Strategy strategy;
+
+    /**
+     * 请求的引擎与实际执行的引擎
+     */
+    private SearchEngine requestedEngine;
+
+    private SearchEngine engine;
+
+    /**
+     * 是否走成员本地列式特征库 (否则为 IMap 聚合)
+     */
+    private boolean localStore;
+
+    private int features;
+
+    private int topN;
+
+    private float threshold;
+
+    /**
+     * 规划统计：全部人脸数、目标分组人脸数 (无分组时等于全部人脸数)、统计的年龄，统计未就绪时为 -1
+     */
+    private long totalFaces = -1;
+
+    private long candidateFaces = -1;
+
+    private long statisticsAgeMillis = -1;
+
+    /**
+     * 目标分区与成员数，0 表示全部
+     */
+    private int targetPartitions;
+
+    private int targetMembers;
+
+    private double estimatedCost = -1;
+
+    /**
+     * 各备选计划的估算代价，key 为 策略/引擎
+     */
+    private Map<String, Double> alternatives = new LinkedHashMap<>();
+
+    private String reason;
+
+}
@@ -0,0 +1,126 @@
+package com.biometric.algo.dto;
+
+import com.biometric.algo.config.BiometricDataSerializableFactory;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 1:N 搜索结果与覆盖范围
+ *
+ * 预算模式下各成员预算用尽即停止扫描，返回已扫描部分的 TopN，complete 为 false (查询取消或超时时同样为 false)；
+ * 覆盖统计由各成员 (IMap 聚合路径为各聚合器副本) 累加后在调用方合并。
+ */
+@Data
+public class SearchResult implements IdentifiedDataSerializable, Serializable {
+
+    private List<CompareResult> results = new ArrayList<>();
+
+    /**
+     * 是否扫描了全部候选，预算用尽、取消或超时提前结束时为 false
+     */
+    private boolean complete = true;
+
+    /**
+     * 参与检索的分区数与完整扫描的分区数，不统计分区的执行方式 (IMap 全量聚合、合并扫描) 为 -1
+     */
+    private int partitions = -1;
+
+    private int partitionsScanned = -1;
+
+    /**
+     * 已比对的候选人员数与特征比对次数 (汉明粗筛通过后的余弦或 int8 比对)，未统计时为 -1
+     */
+    private long candidates = -1;
+
+    private long evaluations = -1;
+
+    public static SearchResult of(List<CompareResult> results) {
+        SearchResult result = new SearchResult();
+        result.setResults(results);
+        return result;
+    }
+
+    /**
+     * 合并另一部分的覆盖统计 (不合并结果列表，TopN 由调用方合并)
+     */
+    public void mergeCoverage(SearchResult other) {
+        complete = complete && other.complete;
+        partitions = sum(partitions, other.partitions);
+        partitionsScanned = sum(partitionsScanned, other.partitionsScanned);
+        candidates = sum(candidates, other.candidates);
+        evaluations = sum(evaluations, other.evaluations);
+    }
+
+    @Override
+    public int getFactoryId() {
+        return BiometricDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return BiometricDataSerializableFactory.ID_SEARCH_RESULT;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        writeResults(out, results);
+        out.writeBoolean(complete);
+        out.writeInt(partitions);
+        out.writeInt(partitionsScanned);
+        out.writeLong(candidates);
+        out.writeLong(evaluations);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        this.results = readResults(in);
+        this.complete = in.readBoolean();
+        this.partitions = in.readInt();
+        this.partitionsScanned = in.readInt();
+        this.candidates = in.readLong();
+        this.evaluations = in.readLong();
+    }
+
+    /**
+     * 结果列表内联写出，不逐条写对象头 (结果数为 -1 表示 null)
+     */
+    public static void writeResults(ObjectDataOutput out, Collection<CompareResult> results) throws IOException {
+        if (results == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(results.size());
+        for (CompareResult result : results) {
+            result.writeData(out);
+        }
+    }
+
+    public static List<CompareResult> readResults(ObjectDataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) return null;
+        List<CompareResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CompareResult result = new CompareResult();
+            result.readData(in);
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static int sum(int a, int b) {
+        return a < 0 ? b : b < 0 ? a : a + b;
+    }
+
+    private static long sum(long a, long b) {
+        return a < 0 ? b : b < 0 ? a : a + b;
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.biometric.algo.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单个分区段的分组倒排表：分组 → 人员槽位集合
+ *
+ * 每个分组一个压缩位图容器，布局参照 Roaring Bitmap 的两种容器：
+ * - 稀疏分组: 有序 int 数组，每个成员 32 位
+ * - 稠密分组: 成员数超过槽位范围的 1/32 时转为 long 位图，每个槽位 1 位
+ * 槽位在段内单调追加，新成员总是追加在末尾；人员删除只留墓碑 (扫描时按人脸数跳过)，
+ * 段压缩后槽位变化，由所属分区段清空后整体重建。
+ *
+ * 查询时把目标分组的容器并入一个覆盖全部槽位的位图，扫描直接遍历置位的槽位，
+ * 逐条人脸的索引检索 (IVF/HNSW/MIH) 以位测试代替分组字符串比较。
+ */
+public class GroupPostings {
+
+    private static final int INITIAL_ARRAY_SIZE = 4;
+
+    private final Map<String, Container> groups = new HashMap<>();
+
+    public void add(String[] groupIds, int slot) {
+        if (groupIds == null) return;
+        for (String group : groupIds) {
+            if (group == null) continue;
+            Container container = groups.get(group);
+            if (container == null) {
+                container = new Container();
+                groups.put(group, container);
+            }
+            container.add(slot);
+        }
+    }
+
+    public void clear() {
+        groups.clear();
+    }
+
+    public int groupCount() {
+        return groups.size();
+    }
+
+    /**
+     * 目标分组在 [0, slotCount) 内的并集位图，第 slot 位置位表示该人员属于任一目标分组
+     */
+    public long[] union(Collection<String> targets, int slotCount) {
+        long[] bitmap = new long[(slotCount + 63) >>> 6];
+        for (String group : targets) {
+            Container container = groups.get(group);
+            if (container != null) {
+                container.orInto(bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * 各分组的槽位数累加到 out (查询规划统计用)；墓碑槽位在段压缩前仍计入，估计值略偏大
+     */
+    public void addCardinalities(Map<String, Long> out) {
+        for (Map.Entry<String, Container> entry : groups.entrySet()) {
+            out.merge(entry.getKey(), (long) entry.getValue().cardinality(), Long::sum);
+        }
+    }
+
+    public static boolean contains(long[] bitmap, int slot) {
+        return (bitmap[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    public long estimateMemorySize() {
+        long bytes = 0;
+        for (Container container : groups.values()) {
+            bytes += container.estimateMemorySize();
+        }
+        return bytes;
+    }
+
+    private static final class Container {
+
+        // 稀疏形态：有序槽位数组
+        private int[] slots = new int[INITIAL_ARRAY_SIZE];
+        private int size;
+        // 稠密形态：槽位位图，非空时 slots 不再使用
+        private long[] bits;
+
+        void add(int slot) {
+            if (bits != null) {
+                final int word = slot >>> 6;
+                if (word >= bits.length) {
+                    bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+                }
+                bits[word] |= 1L << slot;
+                return;
+            }
+            // 槽位单调追加，重复写入只可能是最后一个
+            if (size > 0 && slots[size - 1] == slot) return;
+            if (size == slots.length) {
+                // 数组占用 (32 位/成员) 超过位图 (1 位/槽位) 时转为位图
+                if ((long) (size + 1) * 32 > slot + 1) {
+                    toBitmap(slot);
+                    add(slot);
+                    return;
+                }
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        private void toBitmap(int maxSlot) {
+            bits = new long[(maxSlot >>> 6) + 1];
+            for (int i = 0; i < size; i++) {
+                bits[slots[i] >>> 6] |= 1L << slots[i];
+            }
+            slots = null;
+            size = 0;
+        }
+
+        void orInto(long[] bitmap) {
+            if (bits != null) {
+                final int words = Math.min(bits.length, bitmap.length);
+                for (int w = 0; w < words; w++) {
+                    bitmap[w] |= bits[w];
+                }
+                return;
+            }
+            final int limit = bitmap.length << 6;
+            for (int i = 0; i < size; i++) {
+                final int slot = slots[i];
+                if (slot >= limit) break;
+                bitmap[slot >>> 6] |= 1L << slot;
+            }
+        }
+
+        int cardinality() {
+            if (bits == null) return size;
+            int count = 0;
+            for (long word : bits) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        long estimateMemorySize() {
+            return bits != null ? (long) bits.length * 8 : (long) slots.length * 4;
+        }
+    }
+
+}
@@ -0,0 +1,408 @@
+package com.biometric.algo.index;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 单个分区段的 HNSW (分层可导航小世界) 图索引
+ *
+ * 【结构】
+ * - 节点编号即分区段内的人脸下标，向量不复制，通过 {@link Vectors} 回调读取人脸列
+ * - 第 0 层每个节点最多 2M 个邻居，连续存放在 level0 数组中 (首位为邻居数)
+ * - 上层每个节点最多 M 个邻居，仅为层数 > 0 的节点分配
+ *
+ * 删除采用墓碑：被删除的人脸仍参与图导航，由调用方在结果中过滤；
+ * 分区段压缩时按新下标重映射，并为邻居损失过多的节点重新连边。
+ *
+ * 由所属分区段的读写锁保护：插入/压缩持有写锁，搜索持有读锁，搜索状态均为线程私有。
+ *
+ * 【按分区段建图】
+ * 图按分区段 (即 Hazelcast 分区) 而非按成员建立：节点编号直接复用段内人脸下标，
+ * 分区迁入迁出时随分区段整体装载或丢弃，不需要在一张成员级大图上批量插入、删除。
+ * 代价是一次查询要在成员拥有的每个分区段 (默认 271 个分区 / 成员数) 上各做一次图搜索：
+ * - 每个分区段各取 ef 个候选 (ef 不小于 TopN) 再合并，真实 TopN 集中在某一分区段时也不会被截断；
+ * - 相同 ef 下每张小图的召回不低于成员级大图，但相似度计算量随分区段数线性增长，
+ *   远高于在一张成员级大图上搜索一次，各分区段人脸较少时接近全量扫描；
+ * - 各分区段的图较浅，分层导航带来的加速有限，召回不足时应调大 ef-search，而不是 M。
+ */
+public class HnswGraph {
+
+    /**
+     * 节点向量访问 (向量均已归一化，相似度即点积)
+     */
+    public interface Vectors {
+
+        float similarity(int node, float[] query);
+
+        void read(int node, float[] out);
+    }
+
+    /**
+     * 搜索检查点：beam 搜索每展开 CHECK_INTERVAL 个节点回调一次
+     */
+    public interface Checkpoint {
+
+        /**
+         * @param evaluations 自上次回调以来的相似度计算次数
+         * @return true 时停止搜索，返回已找到的节点
+         */
+        boolean stopAt(long evaluations);
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int CHECK_INTERVAL = 64;
+
+    private final int m;
+    private final int m0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final int dim;
+    private final Vectors vectors;
+    private final Random random;
+
+    private int[] level0;
+    private int[][] upper;
+    private int[] levels;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswGraph(int m, int efConstruction, int dim, Vectors vectors, long seed) {
+        this.m = m;
+        this.m0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(Math.max(m, 2));
+        this.dim = dim;
+        this.vectors = vectors;
+        this.random = new Random(seed);
+        this.level0 = new int[INITIAL_CAPACITY * (m0 + 1)];
+        this.upper = new int[INITIAL_CAPACITY][];
+        this.levels = new int[INITIAL_CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ================== 插入 ==================
+
+    /**
+     * 插入节点，node 为新追加的人脸下标
+     *
+     * @param vector 节点的归一化向量
+     */
+    public void insert(int node, float[] vector) {
+        ensureCapacity(node + 1);
+        size = Math.max(size, node + 1);
+
+        int level = randomLevel();
+        levels[node] = level;
+        level0[node * (m0 + 1)] = 0;
+        upper[node] = level > 0 ? new int[level * (m + 1)] : null;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        float epScore = vectors.similarity(ep, vector);
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedy(vector, ep, epScore, l);
+            epScore = vectors.similarity(ep, vector);
+        }
+
+        NodeHeap results = new NodeHeap(efConstruction + 1, false);
+        int[] found = new int[efConstruction];
+        float[] foundScores = new float[efConstruction];
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            searchLayer(vector, ep, epScore, efConstruction, l, results, null);
+            int count = results.drainDescending(found, foundScores);
+            ep = found[0];
+            epScore = foundScores[0];
+
+            // 新节点每层选 M 个邻居，第 0 层的反向连边允许增长到 2M
+            int selected = selectNeighbors(found, foundScores, count, m);
+            setNeighbors(node, l, found, selected);
+            for (int k = 0; k < selected; k++) {
+                addLink(found[k], node, l);
+            }
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        return (int) (-Math.log(Math.max(r, 1.0E-12)) * levelMultiplier);
+    }
+
+    /**
+     * 启发式选邻：按相似度降序，只保留与基准点比与任何已选邻居都更接近的候选，
+     * 使邻居分散在不同方向，保证图的可导航性。选中的候选前移到数组头部。
+     */
+    private int selectNeighbors(int[] nodes, float[] scores, int count, int max) {
+        if (count <= max) return count;
+        float[] buffer = new float[dim];
+        int selected = 0;
+        for (int k = 0; k < count && selected < max; k++) {
+            int candidate = nodes[k];
+            float score = scores[k];
+            vectors.read(candidate, buffer);
+            boolean keep = true;
+            for (int s = 0; s < selected; s++) {
+                if (vectors.similarity(nodes[s], buffer) > score) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                nodes[selected] = candidate;
+                scores[selected] = score;
+                selected++;
+            }
+        }
+        return selected;
+    }
+
+    private void addLink(int node, int neighbor, int level) {
+        int[] list = level == 0 ? level0 : upper[node];
+        int base = level == 0 ? node * (m0 + 1) : (level - 1) * (m + 1);
+        int maxNeighbors = level == 0 ? m0 : m;
+        int count = list[base];
+        if (count < maxNeighbors) {
+            list[base + 1 + count] = neighbor;
+            list[base] = count + 1;
+            return;
+        }
+
+        // 邻居已满：连同新邻居一起按启发式重新选邻
+        float[] vector = new float[dim];
+        vectors.read(node, vector);
+        int[] nodes = new int[count + 1];
+        float[] scores = new float[count + 1];
+        for (int k = 0; k < count; k++) {
+            nodes[k] = list[base + 1 + k];
+        }
+        nodes[count] = neighbor;
+        for (int k = 0; k <= count; k++) {
+            scores[k] = vectors.similarity(nodes[k], vector);
+        }
+        sortDescending(nodes, scores, count + 1);
+        int selected = selectNeighbors(nodes, scores, count + 1, maxNeighbors);
+        setNeighbors(node, level, nodes, selected);
+    }
+
+    private void setNeighbors(int node, int level, int[] neighbors, int count) {
+        int[] list = level == 0 ? level0 : upper[node];
+        int base = level == 0 ? node * (m0 + 1) : (level - 1) * (m + 1);
+        System.arraycopy(neighbors, 0, list, base + 1, count);
+        list[base] = count;
+    }
+
+    // ================== 搜索 ==================
+
+    /**
+     * 近似最近邻搜索，按相似度降序输出最多 ef 个节点 (可能包含墓碑节点)
+     *
+     * @param checkpoint 为 null 时不检查；提前停止时输出已找到的节点
+     * @return 输出的节点数
+     */
+    public int search(float[] query, int ef, int[] outNodes, float[] outScores, Checkpoint checkpoint) {
+        if (entryPoint < 0) return 0;
+        int ep = entryPoint;
+        float epScore = vectors.similarity(ep, query);
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedy(query, ep, epScore, l);
+            epScore = vectors.similarity(ep, query);
+        }
+        NodeHeap results = new NodeHeap(ef + 1, false);
+        searchLayer(query, ep, epScore, ef, 0, results, checkpoint);
+        return results.drainDescending(outNodes, outScores);
+    }
+
+    /**
+     * 上层贪心下降：沿相似度递增方向移动，直到局部最优
+     */
+    private int greedy(float[] query, int ep, float epScore, int level) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] list = upper[ep];
+            int base = (level - 1) * (m + 1);
+            int count = list[base];
+            for (int k = 1; k <= count; k++) {
+                int neighbor = list[base + k];
+                float score = vectors.similarity(neighbor, query);
+                if (score > epScore) {
+                    epScore = score;
+                    ep = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * 单层 beam 搜索，结果写入 results (小顶堆，最多 ef 个)；checkpoint 不为 null 时按展开节点数定期检查
+     */
+    private void searchLayer(float[] query, int ep, float epScore, int ef, int level, NodeHeap results,
+                             Checkpoint checkpoint) {
+        VisitedMarks visited = VisitedMarks.acquire(size);
+        NodeHeap candidates = new NodeHeap(ef * 2, true);
+
+        results.clear();
+        visited.mark(ep);
+        candidates.push(ep, epScore);
+        results.push(ep, epScore);
+
+        int expanded = 0;
+        long evaluations = 0;
+        while (candidates.size() > 0) {
+            int current = candidates.topNode();
+            float currentScore = candidates.topScore();
+            if (results.size() >= ef && currentScore < results.topScore()) break;
+            candidates.pop();
+            if (checkpoint != null && ++expanded % CHECK_INTERVAL == 0) {
+                if (checkpoint.stopAt(evaluations)) return;
+                evaluations = 0;
+            }
+
+            int[] list = level == 0 ? level0 : upper[current];
+            int base = level == 0 ? current * (m0 + 1) : (level - 1) * (m + 1);
+            int count = list[base];
+            for (int k = 1; k <= count; k++) {
+                int neighbor = list[base + k];
+                if (!visited.mark(neighbor)) continue;
+                float score = vectors.similarity(neighbor, query);
+                evaluations++;
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbor, score);
+                    results.push(neighbor, score);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+    }
+
+    // ================== 压缩 ==================
+
+    /**
+     * 分区段压缩后按新下标重映射，oldToNew[i] < 0 表示节点已删除
+     * 删除节点的连边随之丢失，第 0 层邻居数低于 M/2 的节点重新搜索连边
+     */
+    public void compact(int[] oldToNew, int newSize) {
+        int[] newLevel0 = new int[Math.max(newSize, INITIAL_CAPACITY) * (m0 + 1)];
+        int[][] newUpper = new int[Math.max(newSize, INITIAL_CAPACITY)][];
+        int[] newLevels = new int[newUpper.length];
+        int newEntry = -1;
+        int newMaxLevel = -1;
+
+        for (int old = 0; old < size; old++) {
+            int node = oldToNew[old];
+            if (node < 0) continue;
+            newLevels[node] = levels[old];
+            newLevel0[node * (m0 + 1)] = remap(level0, old * (m0 + 1), oldToNew, newLevel0, node * (m0 + 1));
+            if (levels[old] > 0) {
+                int[] list = new int[levels[old] * (m + 1)];
+                for (int l = 1; l <= levels[old]; l++) {
+                    int base = (l - 1) * (m + 1);
+                    list[base] = remap(upper[old], base, oldToNew, list, base);
+                }
+                newUpper[node] = list;
+            }
+            if (levels[old] > newMaxLevel) {
+                newMaxLevel = levels[old];
+                newEntry = node;
+            }
+        }
+
+        level0 = newLevel0;
+        upper = newUpper;
+        levels = newLevels;
+        size = newSize;
+        entryPoint = newEntry;
+        maxLevel = newMaxLevel;
+
+        relinkSparseNodes();
+    }
+
+    private static int remap(int[] src, int srcBase, int[] oldToNew, int[] dst, int dstBase) {
+        int count = src[srcBase];
+        int kept = 0;
+        for (int k = 1; k <= count; k++) {
+            int neighbor = oldToNew[src[srcBase + k]];
+            if (neighbor >= 0) {
+                dst[dstBase + 1 + kept++] = neighbor;
+            }
+        }
+        return kept;
+    }
+
+    private void relinkSparseNodes() {
+        if (entryPoint < 0) return;
+        float[] vector = new float[dim];
+        int[] found = new int[efConstruction];
+        float[] foundScores = new float[efConstruction];
+        for (int node = 0; node < size; node++) {
+            if (level0[node * (m0 + 1)] >= m / 2) continue;
+            vectors.read(node, vector);
+            int count = search(vector, efConstruction, found, foundScores, null);
+            // 去掉自身
+            int n = 0;
+            for (int k = 0; k < count; k++) {
+                if (found[k] != node) {
+                    found[n] = found[k];
+                    foundScores[n] = foundScores[k];
+                    n++;
+                }
+            }
+            int selected = selectNeighbors(found, foundScores, n, m);
+            setNeighbors(node, 0, found, selected);
+            for (int k = 0; k < selected; k++) {
+                addLink(found[k], node, 0);
+            }
+        }
+    }
+
+    // ================== 工具 ==================
+
+    private void ensureCapacity(int required) {
+        if (required <= levels.length) return;
+        int capacity = Math.max(required, levels.length * 2);
+        level0 = Arrays.copyOf(level0, capacity * (m0 + 1));
+        upper = Arrays.copyOf(upper, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+    }
+
+    private static void sortDescending(int[] nodes, float[] scores, int count) {
+        for (int i = 1; i < count; i++) {
+            int node = nodes[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                nodes[j + 1] = nodes[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            scores[j + 1] = score;
+        }
+    }
+
+    public long estimateMemorySize() {
+        long bytes = (long) level0.length * 4 + (long) levels.length * 4 + (long) upper.length * 8;
+        for (int n = 0; n < size; n++) {
+            if (upper[n] != null) bytes += (long) upper[n].length * 4 + 16;
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.biometric.algo.index;
+
+import com.biometric.algo.util.Face303JavaCalcuater;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * IVF 粗量化器：球面 k-means 训练得到的聚类中心
+ *
+ * 特征向量均已归一化，以点积 (余弦) 作为相似度，聚类中心同样保持单位长度。
+ * 训练完成后不可变，可被多个分区段并发读取。
+ */
+public class IvfCentroids {
+
+    private final int lists;
+    private final int dim;
+    // 聚类中心按 dim 连续存放
+    private final float[] centroids;
+
+    private IvfCentroids(int lists, int dim, float[] centroids) {
+        this.lists = lists;
+        this.dim = dim;
+        this.centroids = centroids;
+    }
+
+    /**
+     * 球面 k-means 训练
+     *
+     * @param samples    训练样本 (已归一化)，按 dim 连续存放
+     * @param count      样本数
+     * @param lists      聚类数
+     * @param iterations 迭代次数
+     */
+    public static IvfCentroids train(float[] samples, int count, int dim, int lists, int iterations, long seed) {
+        if (count < lists) {
+            throw new IllegalArgumentException("训练样本数 " + count + " 少于聚类数 " + lists);
+        }
+        Random random = new Random(seed);
+        float[] centroids = new float[lists * dim];
+
+        // 随机选取互不相同的样本作为初始中心
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        for (int c = 0; c < lists; c++) {
+            int j = c + random.nextInt(count - c);
+            int tmp = order[c]; order[c] = order[j]; order[j] = tmp;
+            System.arraycopy(samples, order[c] * dim, centroids, c * dim, dim);
+        }
+
+        IvfCentroids model = new IvfCentroids(lists, dim, centroids);
+        int[] assignment = new int[count];
+        float[] sums = new float[lists * dim];
+        int[] sizes = new int[lists];
+
+        for (int iter = 0; iter < iterations; iter++) {
+            // 分配步骤占训练的绝大部分耗时，按样本并行
+            IntStream.range(0, count).parallel()
+                    .forEach(s -> assignment[s] = model.nearest(samples, s * dim));
+
+            Arrays.fill(sums, 0.0F);
+            Arrays.fill(sizes, 0);
+            for (int s = 0; s < count; s++) {
+                int c = assignment[s];
+                sizes[c]++;
+                int src = s * dim;
+                int dst = c * dim;
+                for (int d = 0; d < dim; d++) {
+                    sums[dst + d] += samples[src + d];
+                }
+            }
+
+            for (int c = 0; c < lists; c++) {
+                if (sizes[c] == 0) {
+                    // 空聚类：用随机样本重新播种
+                    System.arraycopy(samples, random.nextInt(count) * dim, centroids, c * dim, dim);
+                    continue;
+                }
+                float[] mean = new float[dim];
+                System.arraycopy(sums, c * dim, mean, 0, dim);
+                System.arraycopy(Face303JavaCalcuater.normalize(mean), 0, centroids, c * dim, dim);
+            }
+        }
+        return model;
+    }
+
+    public int getLists() {
+        return lists;
+    }
+
+    /**
+     * 与向量最相似的聚类
+     */
+    public int nearest(float[] vector, int offset) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < lists; c++) {
+            float score = dot(vector, offset, c * dim);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 与查询向量最相似的 nprobe 个聚类，按相似度降序
+     */
+    public int[] probe(float[] unitQuery, int nprobe) {
+        int n = Math.min(nprobe, lists);
+        int[] best = new int[n];
+        float[] bestScores = new float[n];
+        int size = 0;
+        for (int c = 0; c < lists; c++) {
+            float score = dot(unitQuery, 0, c * dim);
+            if (size == n && score <= bestScores[n - 1]) continue;
+            // 插入排序维护前 n 个
+            int pos = size < n ? size++ : n - 1;
+            while (pos > 0 && bestScores[pos - 1] < score) {
+                bestScores[pos] = bestScores[pos - 1];
+                best[pos] = best[pos - 1];
+                pos--;
+            }
+            bestScores[pos] = score;
+            best[pos] = c;
+        }
+        return best;
+    }
+
+    private float dot(float[] vector, int offset, int centroidOffset) {
+        float s0 = 0.0F, s1 = 0.0F;
+        int d = 0;
+        for (; d <= dim - 2; d += 2) {
+            s0 += vector[offset + d] * centroids[centroidOffset + d];
+            s1 += vector[offset + d + 1] * centroids[centroidOffset + d + 1];
+        }
+        for (; d < dim; d++) {
+            s0 += vector[offset + d] * centroids[centroidOffset + d];
+        }
+        return s0 + s1;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.biometric.algo.index;
+
+import java.util.Arrays;
+
+/**
+ * 单个分区段的 IVF 倒排表：每个聚类一个人脸下标列表
+ *
+ * 由所属分区段在其读写锁保护下维护；人脸下标在段压缩后会变化，此时清空后按人脸的聚类归属整体重建。
+ */
+public class IvfPostings {
+
+    private static final int INITIAL_LIST_SIZE = 8;
+
+    private final int[][] lists;
+    private final int[] sizes;
+
+    public IvfPostings(int listCount) {
+        this.lists = new int[listCount][];
+        this.sizes = new int[listCount];
+    }
+
+    public void add(int list, int face) {
+        int[] faces = lists[list];
+        int size = sizes[list];
+        if (faces == null) {
+            faces = lists[list] = new int[INITIAL_LIST_SIZE];
+        } else if (size == faces.length) {
+            faces = lists[list] = Arrays.copyOf(faces, size * 2);
+        }
+        faces[size] = face;
+        sizes[list] = size + 1;
+    }
+
+    /**
+     * 清空全部倒排列表 (保留已分配数组)，段压缩后由调用方按新下标重新添加
+     */
+    public void clear() {
+        Arrays.fill(sizes, 0);
+    }
+
+    public int[] faces(int list) {
+        return lists[list];
+    }
+
+    public int size(int list) {
+        return sizes[list];
+    }
+
+    public long estimateMemorySize() {
+        long bytes = 0;
+        for (int[] faces : lists) {
+            if (faces != null) bytes += (long) faces.length * 4;
+        }
+        return bytes;
+    }
+
+}
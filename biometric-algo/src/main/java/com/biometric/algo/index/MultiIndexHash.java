@@ -0,0 +1,151 @@
+package com.biometric.algo.index;
+
+import java.util.Arrays;
+
+/**
+ * 128 位二进制特征的多索引哈希 (Multi-Index Hashing)
+ *
+ * 将 4 个 int 的二进制特征切分为 8 个 16 位子串，每个子串建立一张直接寻址的桶表 (65536 个桶)。
+ * 由鸽巢原理，汉明距离 <= r 的两个编码至少有一个子串的距离 <= r / 8，
+ * 因此只需在每张表中探查与查询子串距离不超过 r / 8 的桶，即可得到完整 (无漏检) 的候选集，
+ * 再对候选做完整的汉明距离校验。
+ *
+ * 桶表采用 CSR 布局 (offsets + faces)，构建后只读；人脸下标在分区段压缩后失效，需要重建。
+ * 子串半径较大时探查的桶数呈组合级增长，调用方应退回顺序扫描。
+ */
+public class MultiIndexHash {
+
+    public static final int SUBSTRINGS = 8;
+
+    private static final int BITS = 16;
+    private static final int BUCKETS = 1 << BITS;
+    // 支持的最大子串半径
+    public static final int MAX_SUB_RADIUS = 4;
+
+    // 16 位内汉明权重 <= MAX_SUB_RADIUS 的异或掩码，按权重升序
+    private static final int[] MASKS;
+    // MASK_COUNTS[s] = 权重 <= s 的掩码个数
+    private static final int[] MASK_COUNTS = new int[MAX_SUB_RADIUS + 1];
+
+    static {
+        int total = 0;
+        for (int mask = 0; mask < BUCKETS; mask++) {
+            if (Integer.bitCount(mask) <= MAX_SUB_RADIUS) total++;
+        }
+        MASKS = new int[total];
+        int n = 0;
+        for (int weight = 0; weight <= MAX_SUB_RADIUS; weight++) {
+            for (int mask = 0; mask < BUCKETS; mask++) {
+                if (Integer.bitCount(mask) == weight) MASKS[n++] = mask;
+            }
+            MASK_COUNTS[weight] = n;
+        }
+    }
+
+    private final int[][] offsets;
+    private final int[][] faces;
+    private final int indexedFaces;
+
+    private MultiIndexHash(int[][] offsets, int[][] faces, int indexedFaces) {
+        this.offsets = offsets;
+        this.faces = faces;
+        this.indexedFaces = indexedFaces;
+    }
+
+    /**
+     * 构建索引
+     *
+     * @param codes        二进制特征，每张人脸 4 个 int 连续存放
+     * @param live         live[f] 为 false 的人脸 (墓碑) 不入索引
+     * @param indexedFaces 参与构建的人脸数 [0, indexedFaces)
+     */
+    public static MultiIndexHash build(int[] codes, boolean[] live, int indexedFaces) {
+        int[][] offsets = new int[SUBSTRINGS][];
+        int[][] faces = new int[SUBSTRINGS][];
+        int liveCount = 0;
+        for (int f = 0; f < indexedFaces; f++) {
+            if (live[f]) liveCount++;
+        }
+
+        for (int j = 0; j < SUBSTRINGS; j++) {
+            // 计数排序：先统计每个桶的大小，再前缀和得到偏移
+            int[] offset = new int[BUCKETS + 1];
+            for (int f = 0; f < indexedFaces; f++) {
+                if (live[f]) offset[substring(codes, f * 4, j) + 1]++;
+            }
+            for (int b = 0; b < BUCKETS; b++) {
+                offset[b + 1] += offset[b];
+            }
+            int[] cursor = new int[BUCKETS];
+            System.arraycopy(offset, 0, cursor, 0, BUCKETS);
+            int[] list = new int[liveCount];
+            for (int f = 0; f < indexedFaces; f++) {
+                if (live[f]) list[cursor[substring(codes, f * 4, j)]++] = f;
+            }
+            offsets[j] = offset;
+            faces[j] = list;
+        }
+        return new MultiIndexHash(offsets, faces, indexedFaces);
+    }
+
+    /**
+     * 第 j 个 16 位子串
+     */
+    private static int substring(int[] code, int base, int j) {
+        return (code[base + (j >> 1)] >>> ((j & 1) << 4)) & 0xFFFF;
+    }
+
+    /**
+     * 子串半径 (鸽巢原理下每个子串允许的最大距离)
+     */
+    public static int subRadius(int hamDist) {
+        return hamDist / SUBSTRINGS;
+    }
+
+    /**
+     * 指定汉明半径下是否适合使用索引
+     */
+    public static boolean supports(int hamDist, int maxSubRadius) {
+        return hamDist >= 0 && subRadius(hamDist) <= Math.min(maxSubRadius, MAX_SUB_RADIUS);
+    }
+
+    public int getIndexedFaces() {
+        return indexedFaces;
+    }
+
+    /**
+     * 收集汉明距离可能 <= hamDist 的候选人脸 (去重)，候选仍需调用方做完整汉明校验
+     */
+    public int[] candidates(int[] queryCode, int hamDist) {
+        int maskCount = MASK_COUNTS[subRadius(hamDist)];
+        VisitedMarks visited = VisitedMarks.acquire(indexedFaces);
+        int[] out = new int[64];
+        int size = 0;
+        for (int j = 0; j < SUBSTRINGS; j++) {
+            final int sub = substring(queryCode, 0, j);
+            final int[] offset = offsets[j];
+            final int[] list = faces[j];
+            for (int k = 0; k < maskCount; k++) {
+                final int bucket = sub ^ MASKS[k];
+                for (int p = offset[bucket], end = offset[bucket + 1]; p < end; p++) {
+                    final int face = list[p];
+                    if (!visited.mark(face)) continue;
+                    if (size == out.length) {
+                        out = Arrays.copyOf(out, size * 2);
+                    }
+                    out[size++] = face;
+                }
+            }
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    public long estimateMemorySize() {
+        long bytes = 0;
+        for (int j = 0; j < SUBSTRINGS; j++) {
+            bytes += (long) offsets[j].length * 4 + (long) faces[j].length * 4;
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.biometric.algo.index;
+
+import java.util.Arrays;
+
+/**
+ * 图搜索使用的 (节点, 相似度) 二叉堆，基于原始数组，不产生对象
+ *
+ * max = true 时堆顶为相似度最高的节点 (候选队列)，否则为最低 (结果集)。
+ */
+final class NodeHeap {
+
+    private final boolean max;
+    private int[] nodes;
+    private float[] scores;
+    private int size;
+
+    NodeHeap(int capacity, boolean max) {
+        this.max = max;
+        this.nodes = new int[Math.max(capacity, 4)];
+        this.scores = new float[nodes.length];
+    }
+
+    void push(int node, float score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int i = size++;
+        nodes[i] = node;
+        scores[i] = score;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    void pop() {
+        size--;
+        if (size == 0) return;
+        nodes[0] = nodes[size];
+        scores[0] = scores[size];
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int child = left;
+            int right = left + 1;
+            if (right < size && before(right, left)) child = right;
+            if (!before(child, i)) break;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * 弹出全部元素，按相似度降序写入输出数组，返回元素数
+     */
+    int drainDescending(int[] outNodes, float[] outScores) {
+        int n = size;
+        if (max) {
+            for (int k = 0; k < n; k++) {
+                outNodes[k] = topNode();
+                outScores[k] = topScore();
+                pop();
+            }
+        } else {
+            for (int k = n - 1; k >= 0; k--) {
+                outNodes[k] = topNode();
+                outScores[k] = topScore();
+                pop();
+            }
+        }
+        return n;
+    }
+
+    private boolean before(int a, int b) {
+        return max ? scores[a] > scores[b] : scores[a] < scores[b];
+    }
+
+    private void swap(int a, int b) {
+        int n = nodes[a]; nodes[a] = nodes[b]; nodes[b] = n;
+        float s = scores[a]; scores[a] = scores[b]; scores[b] = s;
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.biometric.algo.index;
+
+import java.util.Arrays;
+
+/**
+ * 线程私有的访问标记，以代数区分不同搜索，避免每次搜索清零或分配数组
+ */
+public final class VisitedMarks {
+
+    private static final ThreadLocal<VisitedMarks> CURRENT = ThreadLocal.withInitial(VisitedMarks::new);
+
+    private int[] marks = new int[0];
+    private int generation;
+
+    private VisitedMarks() {
+    }
+
+    /**
+     * 取得当前线程的标记表并开始一轮新的标记，同一线程内不可嵌套使用
+     */
+    public static VisitedMarks acquire(int size) {
+        VisitedMarks visited = CURRENT.get();
+        visited.reset(size);
+        return visited;
+    }
+
+    private void reset(int size) {
+        if (marks.length < size) {
+            marks = new int[Math.max(size, marks.length * 2)];
+            generation = 0;
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * 标记节点，首次访问返回 true
+     */
+    public boolean mark(int node) {
+        if (marks[node] == generation) return false;
+        marks[node] = generation;
+        return true;
+    }
+
+}
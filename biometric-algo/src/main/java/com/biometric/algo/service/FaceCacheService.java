@@ -4,14 +4,20 @@ import com.biometric.algo.config.HazelcastConfiguration;
 import com.biometric.algo.dto.PersonFaceData;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.map.IMap;
+import com.hazelcast.partition.strategy.StringPartitioningStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 
 @Service
@@ -23,10 +29,27 @@ public class FaceCacheService {
     private final Semaphore writeSemaphore = new Semaphore(MAX_CONCURRENT_WRITES);
 
     private final IMap<String, PersonFaceData> faceFeatureMap;
+    // 分组 → 分区键登记表：记录每个分组的成员 (含非主分组成员) 落在哪些分区键上
+    private final IMap<String, HashSet<String>> groupPartitionMap;
+    // 本节点已登记过的 (分组, 分区键)，避免每批数据重复提交登记
+    private final Map<String, Set<String>> registeredPartitionKeys = new ConcurrentHashMap<>();
+    // 分组共置时 personId → 当前缓存键
+    private final IMap<String, String> personKeyMap;
+
+    // 分组共置：键格式为 personId@主分组#桶号，同一主分组的人员落在少数几个分区上
+    // 切换后键格式变化，须清空缓存重新加载
+    @Value("${biometric.cache.group-colocation.enabled:false}")
+    private boolean groupColocation;
+
+    // 每个主分组分散到的桶数，桶数越多单个大分组的扫描并行度越高，小分组检索涉及的分区越多
+    @Value("${biometric.cache.group-colocation.buckets:4}")
+    private int groupBuckets = 4;
 
     @Autowired
     public FaceCacheService(HazelcastInstance hazelcastInstance) {
         this.faceFeatureMap = hazelcastInstance.getMap(HazelcastConfiguration.FACE_FEATURE_MAP);
+        this.groupPartitionMap = hazelcastInstance.getMap(HazelcastConfiguration.GROUP_PARTITION_MAP);
+        this.personKeyMap = hazelcastInstance.getMap(HazelcastConfiguration.PERSON_KEY_MAP);
     }
 
     public void loadFeatures(List<PersonFaceData> features) {
@@ -52,7 +75,13 @@ public class FaceCacheService {
                 // 精确设置 Map 容量，避免 resize
                 Map<String, PersonFaceData> batchMap = new HashMap<>((int)(batch.size() / 0.75) + 1);
                 for (PersonFaceData data : batch) {
-                    batchMap.put(data.getPersonId(), data);
+                    batchMap.put(keyOf(data), data);
+                }
+                if (groupColocation) {
+                    // 先登记再写入，检索时登记表总是覆盖已写入的数据
+                    registerGroupPartitions(batch);
+                    // 先删旧键再写新键：新旧键落在同一分区时，本地存储按事件顺序先删后增
+                    removeMovedKeys(batchMap);
                 }
                 faceFeatureMap.putAll(batchMap);
             } finally {
@@ -67,8 +96,105 @@ public class FaceCacheService {
         }
     }
 
+    /**
+     * 人员在缓存中的键：未启用分组共置或人员没有分组时即 personId，
+     * 否则为 personId@主分组#桶号，由 StringPartitioningStrategy 按 @ 之后的分区键分区
+     * 主分组 (groupIds[0]) 变化时键随之变化，写入时按 personId → 键登记表删除旧键
+     */
+    public String keyOf(PersonFaceData data) {
+        String[] groups = data.getGroupIds();
+        if (!groupColocation || groups == null || groups.length == 0 || groups[0] == null) {
+            return data.getPersonId();
+        }
+        return data.getPersonId() + "@" + partitionKeyOf(data.getPersonId(), groups[0]);
+    }
+
+    private String partitionKeyOf(String personId, String primaryGroup) {
+        int bucket = (personId.hashCode() & Integer.MAX_VALUE) % Math.max(groupBuckets, 1);
+        return primaryGroup + "#" + bucket;
+    }
+
+    /**
+     * 缓存键中的人员 ID
+     */
+    public static String personIdOf(String key) {
+        return StringPartitioningStrategy.getBaseName(key);
+    }
+
+    /**
+     * 缓存键的分区键，与 face-features 的分区策略一致：普通键即自身
+     */
+    public static String partitionKeyOf(String key) {
+        return StringPartitioningStrategy.getPartitionKey(key);
+    }
+
+    /**
+     * 删除主分组变化的人员在旧键下的数据，并登记新键
+     */
+    private void removeMovedKeys(Map<String, PersonFaceData> batchMap) {
+        Map<String, String> currentKeys = new HashMap<>((int)(batchMap.size() / 0.75) + 1);
+        for (String key : batchMap.keySet()) {
+            currentKeys.put(personIdOf(key), key);
+        }
+        Map<String, String> previousKeys = personKeyMap.getAll(currentKeys.keySet());
+        Map<String, String> changed = new HashMap<>();
+        for (Map.Entry<String, String> entry : currentKeys.entrySet()) {
+            String previous = previousKeys.get(entry.getKey());
+            if (entry.getValue().equals(previous)) continue;
+            if (previous != null) {
+                faceFeatureMap.delete(previous);
+            }
+            changed.put(entry.getKey(), entry.getValue());
+        }
+        if (!changed.isEmpty()) {
+            personKeyMap.putAll(changed);
+        }
+    }
+
+    private void registerGroupPartitions(List<PersonFaceData> batch) {
+        Map<String, Set<String>> pending = new HashMap<>();
+        for (PersonFaceData data : batch) {
+            String[] groups = data.getGroupIds();
+            if (groups == null || groups.length == 0 || groups[0] == null) continue;
+            String partitionKey = partitionKeyOf(data.getPersonId(), groups[0]);
+            for (String group : groups) {
+                if (group == null) continue;
+                Set<String> registered = registeredPartitionKeys.get(group);
+                if (registered != null && registered.contains(partitionKey)) continue;
+                pending.computeIfAbsent(group, g -> new HashSet<>()).add(partitionKey);
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : pending.entrySet()) {
+            groupPartitionMap.executeOnKey(entry.getKey(), new GroupPartitionsMerger(entry.getValue()));
+            registeredPartitionKeys.computeIfAbsent(entry.getKey(), g -> ConcurrentHashMap.newKeySet())
+                    .addAll(entry.getValue());
+        }
+    }
+
+    /**
+     * 目标分组成员所在的全部分区键；未启用分组共置或任一分组未登记时返回 null，由调用方全量检索
+     */
+    public Set<String> groupPartitionKeys(Collection<String> groups) {
+        if (!groupColocation || groups == null || groups.isEmpty()) return null;
+        Set<String> groupSet = new HashSet<>(groups);
+        Map<String, HashSet<String>> registered = groupPartitionMap.getAll(groupSet);
+        if (registered.size() < groupSet.size()) return null;
+        Set<String> result = new HashSet<>();
+        for (HashSet<String> keys : registered.values()) {
+            result.addAll(keys);
+        }
+        return result;
+    }
+
+    public boolean isGroupColocation() {
+        return groupColocation;
+    }
+
     public void clearCache() {
         faceFeatureMap.clear();
+        groupPartitionMap.clear();
+        personKeyMap.clear();
+        registeredPartitionKeys.clear();
     }
 
     public IMap<String, PersonFaceData> getFaceFeatureMap() {
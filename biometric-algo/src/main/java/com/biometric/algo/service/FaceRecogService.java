@@ -1,33 +1,256 @@
 package com.biometric.algo.service;
 
+import com.biometric.algo.aggregator.BatchFaceRecogAggregator;
 import com.biometric.algo.aggregator.FaceRecogAggregator;
+import com.biometric.algo.config.HazelcastConfiguration;
 import com.biometric.algo.dto.CompareParams;
 import com.biometric.algo.dto.CompareResult;
 import com.biometric.algo.dto.PersonFaceData;
+import com.biometric.algo.dto.SearchEngine;
+import com.biometric.algo.dto.SearchPlan;
+import com.biometric.algo.dto.SearchResult;
+import com.biometric.algo.store.CancelSearchTask;
+import com.biometric.algo.store.HammingCalibration;
+import com.biometric.algo.store.HammingCalibrationTask;
+import com.biometric.algo.store.IvfTrainTask;
+import com.biometric.algo.store.LocalBatchSearchTask;
+import com.biometric.algo.store.LocalFeatureStore;
+import com.biometric.algo.store.LocalSearchTask;
+import com.biometric.algo.store.MemberBatchScanTask;
+import com.biometric.algo.store.MemberScanTask;
+import com.biometric.algo.store.MemberSearchExecutor;
+import com.biometric.algo.store.PlannerStatistics;
+import com.biometric.algo.store.PlannerStatisticsTask;
+import com.biometric.algo.store.QueryScope;
+import com.biometric.algo.store.SearchCancellation;
+import com.biometric.algo.store.TopNCollector;
+import com.biometric.algo.util.Face303JavaCalcuater;
+import com.hazelcast.cluster.Member;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IExecutorService;
+import com.hazelcast.core.MultiExecutionCallback;
 import com.hazelcast.map.IMap;
+import com.hazelcast.partition.Partition;
+import com.hazelcast.partition.PartitionService;
 import com.hazelcast.query.Predicate;
 import com.hazelcast.query.Predicates;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 @Service
 public class FaceRecogService {
     private static final Logger log = LoggerFactory.getLogger(FaceRecogService.class);
+    // 分组共置下，目标分区不超过该数量时 IMap 聚合逐分区执行，否则全量聚合
+    private static final int MAX_TARGETED_PARTITIONS = 16;
+    // 查询规划代价模型：一次成员扇出 (任务序列化 + 网络往返) 折算的人脸比对次数
+    private static final double MEMBER_FANOUT_COST = 40000;
+
+    private final FaceCacheService faceCacheService;
     private final IMap<String, PersonFaceData> faceFeatureMap;
+    private final IExecutorService searchExecutor;
+    private final PartitionService partitionService;
+    private final LocalFeatureStore localFeatureStore;
+
+    // 请求未指定搜索引擎时使用的默认引擎
+    @Value("${biometric.recognition.engine:AUTO}")
+    private SearchEngine defaultEngine = SearchEngine.AUTO;
+
+    // 请求未指定汉明半径时使用的默认值
+    @Value("${biometric.recognition.hamming-radius:50}")
+    private int defaultHammingRadius = Face303JavaCalcuater.DEFAULT_HAM_DIST;
+
+    // 查询规划：成员统计的刷新周期，过期后异步刷新，刷新完成前沿用旧统计
+    @Value("${biometric.recognition.planner.stats-ttl-seconds:30}")
+    private int plannerStatsTtlSeconds = 30;
+
+    // 查询规划：目标人脸数达到该规模时才考虑近似索引，规模较小时精确扫描已足够快
+    @Value("${biometric.recognition.planner.ann-min-candidates:1000000}")
+    private long annMinCandidates = 1000000;
+
+    // 查询规划：分组检索的目标人脸占比低于该值时不用近似索引 (过滤后召回率明显下降)
+    @Value("${biometric.recognition.planner.ann-min-selectivity:0.2}")
+    private float annMinSelectivity = 0.2f;
+
+    // 并发查询合并：窗口内到达的全量扫描查询合并为一次共享扫描
+    @Value("${biometric.recognition.coalesce.enabled:false}")
+    private boolean coalesceEnabled;
+
+    @Value("${biometric.recognition.coalesce.window-ms:3}")
+    private long coalesceWindowMillis = 3;
+
+    @Value("${biometric.recognition.coalesce.max-batch:64}")
+    private int coalesceMaxBatch = 64;
+
+    private SearchCoalescer coalescer;
+
+    // 列式特征库未启用时，IMap 路径由各成员在本地搜索线程池上逐分区扫描 (关闭则使用 IMap.aggregate)
+    @Value("${biometric.recognition.member-scan.enabled:true}")
+    private boolean memberScanEnabled = true;
+
+    // 异步搜索：执行线程数，搜索在这些线程上阻塞等待成员结果，不占用 Web 容器线程
+    @Value("${biometric.recognition.async.threads:32}")
+    private int asyncThreads = 32;
+
+    private ExecutorService asyncExecutor;
+    private ScheduledExecutorService timeoutScheduler;
+
+    private volatile PlannerStatistics plannerStats;
+    private final AtomicBoolean plannerStatsRefreshing = new AtomicBoolean();
 
     @Autowired
-    public FaceRecogService(FaceCacheService faceCacheService) {
+    public FaceRecogService(FaceCacheService faceCacheService, HazelcastInstance hazelcastInstance,
+                            LocalFeatureStore localFeatureStore) {
+        this.faceCacheService = faceCacheService;
         this.faceFeatureMap = faceCacheService.getFaceFeatureMap();
+        this.searchExecutor = hazelcastInstance.getExecutorService(HazelcastConfiguration.FACE_SEARCH_EXECUTOR);
+        this.partitionService = hazelcastInstance.getPartitionService();
+        this.localFeatureStore = localFeatureStore;
+        log.info("1:N 搜索评分内核: {}", Face303JavaCalcuater.kernelName());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (memberScanEnabled && !MemberSearchExecutor.supportsScan(faceFeatureMap)) {
+            // 成员本地扫描依赖成员端 IMap 代理的分区迭代，不支持时退回 IMap.aggregate
+            memberScanEnabled = false;
+            log.warn("当前 IMap 代理不支持按分区迭代，成员本地扫描改用 IMap 聚合");
+        }
+        if (coalesceEnabled) {
+            coalescer = new SearchCoalescer(coalesceWindowMillis, coalesceMaxBatch, this::searchBatch);
+            log.info("1:N 并发查询合并已启用, 窗口: {}ms, 单批上限: {}", coalesceWindowMillis, coalesceMaxBatch);
+        }
+        asyncExecutor = Executors.newFixedThreadPool(Math.max(asyncThreads, 1), daemonThreads("FaceSearchAsync"));
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("FaceSearchTimeout"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+            timeoutScheduler.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
     }
 
     public List<CompareResult> recogOneToMany(CompareParams params) {
+        return recogOneToManyWithCoverage(params).getResults();
+    }
+
+    /**
+     * 1:N 搜索，同时返回覆盖统计
+     *
+     * 设置 budgetMillis / budgetEvaluations 时为预算模式：各成员预算用尽即停止扫描，
+     * 返回已扫描部分的 TopN (best-effort)，complete 为 false 并给出已扫描的分区与比对次数。
+     */
+    public SearchResult recogOneToManyWithCoverage(CompareParams params) {
+        validate(params);
+        // 每次搜索生成新的查询 ID：各成员上的并行聚合副本据此共享剪枝下界与预算，取消广播亦按此 ID 登记
+        params.setQueryId(UUID.randomUUID().toString());
+        return search(params);
+    }
+
+    /**
+     * 异步 1:N 搜索
+     *
+     * 截止时间随查询下发到各成员，到期后成员停止扫描、返回的 Future 以 TimeoutException 结束；
+     * 调用方取消返回的 Future (如 HTTP 连接断开) 时向全部成员广播取消。
+     * 参数校验失败时直接抛出 IllegalArgumentException。
+     *
+     * @param timeoutMillis 超时时间，<= 0 表示不限
+     */
+    public CompletableFuture<List<CompareResult>> recogOneToManyAsync(CompareParams params, long timeoutMillis) {
+        return searchAsync(params, timeoutMillis, SearchResult::getResults);
+    }
+
+    /**
+     * 异步 1:N 搜索，同时返回覆盖统计 (预算模式见 {@link #recogOneToManyWithCoverage})
+     */
+    public CompletableFuture<SearchResult> recogOneToManyWithCoverageAsync(CompareParams params, long timeoutMillis) {
+        return searchAsync(params, timeoutMillis, Function.identity());
+    }
+
+    private <T> CompletableFuture<T> searchAsync(CompareParams params, long timeoutMillis, Function<SearchResult, T> mapper) {
+        if (asyncExecutor == null) {
+            throw new IllegalStateException("异步搜索未初始化");
+        }
+        validate(params);
+        final String queryId = UUID.randomUUID().toString();
+        params.setQueryId(queryId);
+        if (timeoutMillis > 0) {
+            params.setDeadline(System.currentTimeMillis() + timeoutMillis);
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        asyncExecutor.execute(() -> {
+            if (future.isDone()) return;
+            try {
+                future.complete(mapper.apply(search(params)));
+            } catch (Throwable e) {
+                future.completeExceptionally(params.getDeadline() > 0 && System.currentTimeMillis() >= params.getDeadline()
+                        ? new TimeoutException("1:N 搜索超时: " + timeoutMillis + "ms") : e);
+            }
+        });
+        if (timeoutMillis > 0) {
+            ScheduledFuture<?> timer = timeoutScheduler.schedule(() ->
+                    future.completeExceptionally(new TimeoutException("1:N 搜索超时: " + timeoutMillis + "ms")),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+            future.whenComplete((result, e) -> timer.cancel(false));
+        }
+        future.whenComplete((result, e) -> {
+            // 超时由各成员按截止时间自行停止，调用方放弃时需要广播取消
+            if (e instanceof CancellationException) {
+                cancelSearch(queryId);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 向全部成员广播取消，各成员在下一个分区段或扫描块处停止该查询
+     */
+    public void cancelSearch(String queryId) {
+        if (queryId == null) return;
+        try {
+            searchExecutor.executeOnAllMembers(new CancelSearchTask(queryId));
+            log.debug("1:N 搜索已取消: {}", queryId);
+        } catch (RuntimeException e) {
+            log.warn("1:N 搜索取消广播失败: {}", e.getMessage());
+        }
+    }
+
+    private void validate(CompareParams params) {
         if (params == null) {
             throw new IllegalArgumentException("识别参数不能为空");
         }
@@ -42,20 +265,536 @@ public class FaceRecogService {
             throw new IllegalArgumentException("topN 必须在 1 和 100 之间，当前值: " + params.getTopN());
         }
 
-        List<CompareResult> result = null;
+        if (params.getHammingRadius() != null &&
+            (params.getHammingRadius() < 0 || params.getHammingRadius() > Face303JavaCalcuater.MAX_HAM_DIST)) {
+            throw new IllegalArgumentException("汉明半径必须在 0 和 " + Face303JavaCalcuater.MAX_HAM_DIST + " 之间，当前值: " + params.getHammingRadius());
+        }
+        if (params.getBudgetMillis() < 0 || params.getBudgetEvaluations() < 0) {
+            throw new IllegalArgumentException("搜索预算不能为负数");
+        }
+    }
+
+    private SearchResult search(CompareParams params) {
+        try {
+            return execute(params);
+        } finally {
+            // 释放本成员上的查询级状态；成员本地搜索任务在各自成员上结束时释放
+            QueryScope.release(params.getQueryId());
+        }
+    }
+
+    private SearchResult execute(CompareParams params) {
+        if (params.getEngine() == null) {
+            params.setEngine(defaultEngine);
+        }
+        if (params.getHammingRadius() == null) {
+            params.setHammingRadius(defaultHammingRadius);
+        }
+        // 查询特征只在调用方解析一次，随参数下发，各成员与各聚合副本不再重复解析
+        params.prepareInputs();
+
+        SearchResult result;
         long startTime = System.currentTimeMillis();
-        FaceRecogAggregator aggregator = new FaceRecogAggregator(params);
-        if(params.getGroups() == null || CollectionUtils.isEmpty(params.getGroups())){
-            result = faceFeatureMap.aggregate(aggregator);
-        }else{
-            Predicate<String, PersonFaceData> groupPredicate = Predicates.in("groupIds[any]", params.getGroups().toArray(new String[0]));
-            result = faceFeatureMap.aggregate(aggregator, groupPredicate);
+        PartitionTarget target = resolveTarget(faceCacheService.groupPartitionKeys(params.getGroups()));
+        SearchPlan plan = plan(params, target);
+        params.setEngine(plan.getEngine());
+        if (plan.getStrategy() == SearchPlan.Strategy.FULL_SCAN) {
+            target = null;
+        }
+        log.debug("1:N 搜索计划: {}", plan);
+
+        if (!localFeatureStore.isEnabled()
+                && plan.getRequestedEngine() != SearchEngine.SCAN && plan.getRequestedEngine() != SearchEngine.AUTO) {
+            log.debug("列式特征库未启用，{} 检索退回 IMap 全量聚合", plan.getRequestedEngine());
+        }
+        if (coalescer != null && target == null && plan.getEngine() == SearchEngine.SCAN && !params.isBudgeted()) {
+            // 全量扫描查询交给合并调度，与窗口内的其他查询共享一次扫描 (预算模式的查询单独执行以统计覆盖范围)
+            result = coalescer.search(params);
+        } else if (localFeatureStore.isEnabled() || memberScanEnabled) {
+            result = searchMembers(params, target);
+        } else if (target != null) {
+            result = aggregateByPartitions(params, target);
+        } else {
+            result = aggregateAll(params);
+        }
+
+        if (!result.isComplete() && SearchCancellation.isAborted(params.getQueryId(), params.getDeadline())) {
+            // 成员因取消或超时中途停止扫描，结果不完整；各成员都已完整返回时即使刚过截止时间也照常返回
+            throw new IllegalStateException("1:N 搜索超时或已取消");
         }
 
         long totalDuration = System.currentTimeMillis() - startTime;
-        log.info("1:N 搜索耗时: {}ms", totalDuration);
-        
+        log.info("1:N 搜索耗时: {}ms, 计划: {}, 引擎: {}, 汉明半径: {}", totalDuration, plan.getStrategy(),
+                params.getEngine(), params.getHammingRadius());
+        if (!result.isComplete()) {
+            log.info("1:N 搜索预算用尽, 已扫描分区: {}/{}, 候选人员: {}, 比对次数: {}", result.getPartitionsScanned(),
+                    result.getPartitions(), result.getCandidates(), result.getEvaluations());
+        }
+
+        return result;
+    }
+
+    /**
+     * 在所有成员上重新训练 IVF 索引，返回各成员的训练统计
+     */
+    public Map<String, Object> rebuildIvfIndex() {
+        if (!localFeatureStore.isEnabled()) {
+            throw new IllegalStateException("列式特征库未启用，无法构建 IVF 索引");
+        }
+        Map<Member, Future<Map<String, Object>>> futures = searchExecutor.submitToAllMembers(new IvfTrainTask());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Member, Future<Map<String, Object>>> entry : futures.entrySet()) {
+                result.put(entry.getKey().getAddress().toString(), entry.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("IVF 索引训练被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("IVF 索引训练失败", e.getCause());
+        }
         return result;
     }
 
-}
\ No newline at end of file
+    /**
+     * 汉明半径标定：各成员从本地数据抽样查询，统计不同半径下的粗筛通过率与相对精确余弦搜索的召回率
+     *
+     * @param sampleSize 每个成员抽样的查询数
+     * @param threshold  判定为命中的余弦阈值
+     * @param radii      需要输出的半径，为空时输出 8 ~ 96 (步长 8) 及默认半径
+     */
+    public Map<String, Object> calibrateHammingRadius(int sampleSize, float threshold, List<Integer> radii) {
+        if (!localFeatureStore.isEnabled()) {
+            throw new IllegalStateException("列式特征库未启用，无法执行汉明半径标定");
+        }
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("抽样数必须大于 0，当前值: " + sampleSize);
+        }
+        if (CollectionUtils.isEmpty(radii)) {
+            TreeSet<Integer> defaults = new TreeSet<>();
+            for (int r = 8; r <= 96; r += 8) {
+                defaults.add(r);
+            }
+            defaults.add(defaultHammingRadius);
+            radii = new ArrayList<>(defaults);
+        }
+
+        Map<Member, Future<HammingCalibration>> futures =
+                searchExecutor.submitToAllMembers(new HammingCalibrationTask(sampleSize, threshold));
+
+        HammingCalibration merged = new HammingCalibration(threshold);
+        try {
+            for (Future<HammingCalibration> future : futures.values()) {
+                merged.merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("汉明半径标定被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("汉明半径标定失败", e.getCause());
+        }
+
+        Map<String, Object> result = merged.report(radii);
+        result.put("members", futures.size());
+        result.put("defaultRadius", defaultHammingRadius);
+        return result;
+    }
+
+    /**
+     * 生成搜索计划但不执行 (explain)
+     */
+    public SearchPlan explain(CompareParams params) {
+        if (params == null) {
+            throw new IllegalArgumentException("识别参数不能为空");
+        }
+        return plan(params, resolveTarget(faceCacheService.groupPartitionKeys(params.getGroups())));
+    }
+
+    /**
+     * 查询规划：按目标分组基数、查询特征数与各成员数据规模估算各执行方式的代价
+     *
+     * - 精确扫描：有分组时按分组位图只比对分组成员，代价 = 目标人脸数 × 特征数 + 位图合并 + 成员扇出；
+     *   分组共置且分组已登记时只发往目标分区的成员 (GROUP_SCAN)，否则发往全部成员 (FULL_SCAN)
+     * - IVF：每个成员比对全部聚类中心，再遍历 nprobe/lists 比例的倒排项
+     * - HNSW：每个分区段一张图，每层访问约 ef × 2M 个邻居
+     * 只有请求引擎为 AUTO、目标人脸数不低于 ann-min-candidates、分组占比不低于 ann-min-selectivity
+     * 且索引在全部成员上可用时，才会自动选用近似索引；显式指定的引擎保持不变，只决定是否定向发送。
+     */
+    private SearchPlan plan(CompareParams params, PartitionTarget target) {
+        SearchEngine requested = params.getEngine() != null ? params.getEngine() : defaultEngine;
+        int features = params.getFeatures() != null && !params.getFeatures().isEmpty() ? params.getFeatures().size()
+                : params.getImages() != null ? params.getImages().size() : 0;
+        features = Math.max(features, 1);
+        boolean grouped = !CollectionUtils.isEmpty(params.getGroups());
+
+        SearchPlan plan = new SearchPlan();
+        plan.setRequestedEngine(requested);
+        plan.setEngine(requested == SearchEngine.AUTO ? SearchEngine.SCAN : requested);
+        plan.setLocalStore(localFeatureStore.isEnabled());
+        plan.setFeatures(features);
+        plan.setTopN(params.getTopN());
+        plan.setThreshold(params.getThreshold());
+        plan.setStrategy(SearchPlan.Strategy.FULL_SCAN);
+
+        if (!localFeatureStore.isEnabled()) {
+            // IMap 路径没有成员统计，只决定是否定向扫描分组所在分区
+            plan.setEngine(SearchEngine.SCAN);
+            if (memberScanEnabled) {
+                // 成员本地扫描一次任务即可覆盖多个分区，定向扫描不受分区数限制
+                if (target != null) {
+                    targetPlan(plan, target);
+                    plan.setReason("列式特征库未启用，成员本地扫描分组所在分区");
+                } else {
+                    plan.setReason("列式特征库未启用，成员本地扫描全部持有分区");
+                }
+            } else if (target != null && target.partitions.size() <= MAX_TARGETED_PARTITIONS) {
+                targetPlan(plan, target);
+                plan.setReason("列式特征库未启用，分组共置下逐分区聚合");
+            } else {
+                plan.setReason("列式特征库未启用，IMap 全量聚合");
+            }
+            return plan;
+        }
+
+        if (target != null) {
+            targetPlan(plan, target);
+        }
+        PlannerStatistics stats = plannerStatistics();
+        if (stats == null || stats.getMembers() == 0) {
+            plan.setReason("规划统计尚未就绪，按精确扫描执行");
+            return plan;
+        }
+
+        long totalFaces = stats.getFaces();
+        long candidateFaces = totalFaces;
+        double bitmapCost = 0;
+        if (grouped) {
+            double facesPerPerson = stats.getPersons() > 0 ? (double) totalFaces / stats.getPersons() : 1;
+            long groupPersons = 0;
+            for (String group : new HashSet<>(params.getGroups())) {
+                groupPersons += stats.getGroupPersons(group);
+            }
+            // 多分组的人员可能重叠，按各分组之和估计 (偏大)
+            candidateFaces = Math.min(totalFaces, Math.round(groupPersons * facesPerPerson));
+            bitmapCost = stats.getPersons() / 64.0;
+        }
+        plan.setTotalFaces(totalFaces);
+        plan.setCandidateFaces(candidateFaces);
+        plan.setStatisticsAgeMillis(System.currentTimeMillis() - stats.getCollectedAt());
+
+        double fullScanCost = (double) candidateFaces * features + bitmapCost + stats.getMembers() * MEMBER_FANOUT_COST;
+        plan.getAlternatives().put(SearchPlan.Strategy.FULL_SCAN.name(), fullScanCost);
+        double scanCost = fullScanCost;
+        if (target != null) {
+            double fraction = stats.getPartitions() > 0
+                    ? Math.min(1.0, (double) target.partitions.size() / stats.getPartitions()) : 1.0;
+            scanCost = (double) candidateFaces * features + bitmapCost * fraction
+                    + target.owners.size() * MEMBER_FANOUT_COST;
+            plan.getAlternatives().put(SearchPlan.Strategy.GROUP_SCAN.name(), scanCost);
+        }
+
+        double ivfCost = -1;
+        if (stats.getIvfLists() > 0) {
+            int nprobe = params.getNprobe() > 0 ? params.getNprobe() : stats.getIvfNprobe();
+            double probeFraction = Math.min(1.0, (double) nprobe / stats.getIvfLists());
+            ivfCost = features * ((double) stats.getIvfLists() * stats.getMembers() + totalFaces * probeFraction)
+                    + stats.getMembers() * MEMBER_FANOUT_COST;
+            plan.getAlternatives().put(SearchPlan.Strategy.ANN_PROBE + "/" + SearchEngine.IVF, ivfCost);
+        }
+        double hnswCost = -1;
+        if (stats.isHnsw()) {
+            int ef = Math.max(params.getEfSearch() > 0 ? params.getEfSearch() : stats.getHnswEfSearch(), params.getTopN());
+            double layers = Math.max(1.0, Math.log(Math.max(totalFaces, 2)) / Math.log(Math.max(stats.getHnswM(), 2)));
+            hnswCost = features * (double) stats.getPartitions() * (ef * 2.0 * stats.getHnswM() + layers * stats.getHnswM())
+                    + stats.getMembers() * MEMBER_FANOUT_COST;
+            plan.getAlternatives().put(SearchPlan.Strategy.ANN_PROBE + "/" + SearchEngine.HNSW, hnswCost);
+        }
+
+        switch (requested) {
+            case IVF:
+                if (ivfCost >= 0) {
+                    plan.setStrategy(SearchPlan.Strategy.ANN_PROBE);
+                    plan.setEstimatedCost(ivfCost);
+                    plan.setReason("请求指定 IVF");
+                } else {
+                    plan.setEstimatedCost(scanCost);
+                    plan.setReason("请求指定 IVF，但索引未在全部成员上训练，未训练的成员退回全量扫描");
+                }
+                return plan;
+            case HNSW:
+                if (hnswCost >= 0) {
+                    plan.setStrategy(SearchPlan.Strategy.ANN_PROBE);
+                    plan.setEstimatedCost(hnswCost);
+                    plan.setReason("请求指定 HNSW");
+                } else {
+                    plan.setEstimatedCost(scanCost);
+                    plan.setReason("请求指定 HNSW，但索引未在全部成员上启用，未启用的成员退回全量扫描");
+                }
+                return plan;
+            case SCAN:
+                plan.setEstimatedCost(scanCost);
+                plan.setReason("请求指定精确扫描");
+                return plan;
+            default:
+                break;
+        }
+
+        plan.setEstimatedCost(scanCost);
+        if (candidateFaces < annMinCandidates) {
+            plan.setReason("目标人脸数 " + candidateFaces + " 低于近似索引门槛 " + annMinCandidates + "，精确扫描");
+            return plan;
+        }
+        if (grouped && candidateFaces < totalFaces * (double) annMinSelectivity) {
+            plan.setReason("分组占比过低，近似索引过滤后召回率下降，精确扫描");
+            return plan;
+        }
+        SearchEngine annEngine = null;
+        double annCost = scanCost;
+        if (ivfCost >= 0 && ivfCost < annCost) {
+            annEngine = SearchEngine.IVF;
+            annCost = ivfCost;
+        }
+        if (hnswCost >= 0 && hnswCost < annCost) {
+            annEngine = SearchEngine.HNSW;
+            annCost = hnswCost;
+        }
+        if (annEngine == null) {
+            plan.setReason(ivfCost < 0 && hnswCost < 0 ? "近似索引不可用，精确扫描" : "精确扫描代价最低");
+            return plan;
+        }
+        plan.setStrategy(SearchPlan.Strategy.ANN_PROBE);
+        plan.setEngine(annEngine);
+        plan.setEstimatedCost(annCost);
+        plan.setReason(annEngine + " 代价最低");
+        return plan;
+    }
+
+    private static void targetPlan(SearchPlan plan, PartitionTarget target) {
+        plan.setStrategy(SearchPlan.Strategy.GROUP_SCAN);
+        plan.setTargetPartitions(target.partitions.size());
+        plan.setTargetMembers(target.owners.size());
+    }
+
+    /**
+     * 规划统计，过期或尚未收集时触发异步刷新并返回当前缓存 (可能为 null)
+     */
+    private PlannerStatistics plannerStatistics() {
+        PlannerStatistics stats = plannerStats;
+        boolean stale = stats == null
+                || System.currentTimeMillis() - stats.getCollectedAt() > plannerStatsTtlSeconds * 1000L;
+        if (stale && plannerStatsRefreshing.compareAndSet(false, true)) {
+            try {
+                searchExecutor.submitToAllMembers(new PlannerStatisticsTask(), new PlannerStatisticsCallback());
+            } catch (RuntimeException e) {
+                plannerStatsRefreshing.set(false);
+                log.warn("规划统计刷新提交失败: {}", e.getMessage());
+            }
+        }
+        return stats;
+    }
+
+    private class PlannerStatisticsCallback implements MultiExecutionCallback {
+
+        @Override
+        public void onResponse(Member member, Object value) {
+        }
+
+        @Override
+        public void onComplete(Map<Member, Object> values) {
+            try {
+                PlannerStatistics merged = PlannerStatistics.empty();
+                for (Map.Entry<Member, Object> entry : values.entrySet()) {
+                    if (!(entry.getValue() instanceof PlannerStatistics)) {
+                        // 任一成员失败时保留旧统计，下次规划再重试
+                        log.debug("成员 {} 规划统计收集失败: {}", entry.getKey(), entry.getValue());
+                        return;
+                    }
+                    merged.merge((PlannerStatistics) entry.getValue());
+                }
+                plannerStats = merged;
+            } finally {
+                plannerStatsRefreshing.set(false);
+            }
+        }
+    }
+
+    /**
+     * 分组共置下的目标分区：分区 ID → 任一落在该分区的分区键，及各分区的主副本成员
+     */
+    private static final class PartitionTarget {
+        final Map<Integer, String> partitions = new HashMap<>();
+        final Set<Member> owners = new HashSet<>();
+    }
+
+    /**
+     * 分区键解析为目标分区，分区键为 null (未启用共置或分组未登记) 或有分区尚未分配时返回 null
+     */
+    private PartitionTarget resolveTarget(Set<String> partitionKeys) {
+        if (partitionKeys == null) return null;
+        PartitionTarget target = new PartitionTarget();
+        for (String partitionKey : partitionKeys) {
+            Partition partition = partitionService.getPartition(partitionKey);
+            if (partition.getOwner() == null) {
+                // 分区尚未分配 (集群启动中)，退回全量检索
+                return null;
+            }
+            target.partitions.putIfAbsent(partition.getPartitionId(), partitionKey);
+            target.owners.add(partition.getOwner());
+        }
+        return target;
+    }
+
+    /**
+     * 分组共置下的 IMap 聚合：只在目标分组成员所在的分区上执行，各分区的结果在调用方合并
+     */
+    private SearchResult aggregateByPartitions(CompareParams params, PartitionTarget target) {
+        Predicate<String, PersonFaceData> groupPredicate = Predicates.in("groupIds[any]", params.getGroups().toArray(new String[0]));
+        TopNCollector merged = new TopNCollector(params.getTopN());
+        SearchResult coverage = new SearchResult();
+        coverage.setPartitions(target.partitions.size());
+        coverage.setPartitionsScanned(0);
+        // 不同分区键可能落在同一分区，每个分区只聚合一次
+        for (String partitionKey : target.partitions.values()) {
+            SearchResult partial = faceFeatureMap.aggregate(new FaceRecogAggregator(params),
+                    Predicates.partitionPredicate(partitionKey, groupPredicate));
+            merged.merge(partial.getResults());
+            if (partial.isComplete()) {
+                coverage.setPartitionsScanned(coverage.getPartitionsScanned() + 1);
+            }
+            coverage.mergeCoverage(partial);
+        }
+        coverage.setResults(merged.toSortedList());
+        return coverage;
+    }
+
+    /**
+     * 一批全量扫描查询共享一次扫描，返回与 paramsList 一一对应的 TopN
+     * 列式特征库启用时各成员对每个分区段只遍历一次；否则各成员本地扫描 (或一次 IMap 聚合)，每条记录只反序列化一次
+     */
+    private List<SearchResult> searchBatch(List<CompareParams> paramsList) {
+        boolean members = localFeatureStore.isEnabled() || memberScanEnabled;
+        if (paramsList.size() == 1) {
+            CompareParams params = paramsList.get(0);
+            return Collections.singletonList(members ? searchMembers(params, null) : aggregateAll(params));
+        }
+        if (!members) {
+            return aggregateBatch(paramsList);
+        }
+
+        Map<Member, Future<List<SearchResult>>> futures = searchExecutor.submitToAllMembers(
+                localFeatureStore.isEnabled() ? new LocalBatchSearchTask(paramsList) : new MemberBatchScanTask(paramsList));
+        List<TopNCollector> merged = new ArrayList<>(paramsList.size());
+        List<SearchResult> coverage = new ArrayList<>(paramsList.size());
+        // 批次中最晚的截止时间，任一查询不限时为 0；各查询按自身截止时间等待合并结果
+        long deadline = 0;
+        boolean unbounded = false;
+        for (CompareParams params : paramsList) {
+            merged.add(new TopNCollector(params.getTopN()));
+            coverage.add(new SearchResult());
+            if (params.getDeadline() <= 0) {
+                unbounded = true;
+            } else {
+                deadline = Math.max(deadline, params.getDeadline());
+            }
+        }
+        try {
+            for (Future<List<SearchResult>> future : futures.values()) {
+                List<SearchResult> partial = await(future, unbounded ? 0 : deadline);
+                for (int q = 0; q < merged.size(); q++) {
+                    merged.get(q).merge(partial.get(q).getResults());
+                    coverage.get(q).mergeCoverage(partial.get(q));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("1:N 搜索被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("1:N 搜索执行失败", e.getCause());
+        }
+        for (int q = 0; q < merged.size(); q++) {
+            coverage.get(q).setResults(merged.get(q).toSortedList());
+        }
+        log.debug("1:N 合并扫描 {} 个查询", paramsList.size());
+        return coverage;
+    }
+
+    /**
+     * IMap 全量聚合 (有分组时按分组谓词过滤)
+     */
+    private SearchResult aggregateAll(CompareParams params) {
+        if (CollectionUtils.isEmpty(params.getGroups())) {
+            return faceFeatureMap.aggregate(new FaceRecogAggregator(params));
+        }
+        return faceFeatureMap.aggregate(new FaceRecogAggregator(params),
+                Predicates.in("groupIds[any]", params.getGroups().toArray(new String[0])));
+    }
+
+    /**
+     * 一次 IMap 聚合求值整批查询，谓词取各查询分组的并集，任一查询不限分组时全量遍历
+     */
+    private List<SearchResult> aggregateBatch(List<CompareParams> paramsList) {
+        Set<String> groups = new HashSet<>();
+        boolean unrestricted = false;
+        for (CompareParams params : paramsList) {
+            if (CollectionUtils.isEmpty(params.getGroups())) {
+                unrestricted = true;
+            } else {
+                groups.addAll(params.getGroups());
+            }
+        }
+        BatchFaceRecogAggregator aggregator = new BatchFaceRecogAggregator(paramsList);
+        if (unrestricted) {
+            return faceFeatureMap.aggregate(aggregator);
+        }
+        return faceFeatureMap.aggregate(aggregator, Predicates.in("groupIds[any]", groups.toArray(new String[0])));
+    }
+
+    /**
+     * 在所有成员上扫描本地列式特征库 (未启用时扫描成员持有的 IMap 分区)，并在调用方合并各成员的 TopN
+     * 分组共置下的分组检索只发往目标分区的主副本成员，各成员只扫描这些分区
+     */
+    private SearchResult searchMembers(CompareParams params, PartitionTarget target) {
+        Set<Integer> partitionIds = target != null ? target.partitions.keySet() : null;
+        Callable<SearchResult> task = localFeatureStore.isEnabled()
+                ? new LocalSearchTask(params, partitionIds) : new MemberScanTask(params, partitionIds);
+        Map<Member, Future<SearchResult>> futures;
+        if (target != null) {
+            if (target.owners.isEmpty()) return SearchResult.of(Collections.emptyList());
+            log.debug("分组检索 {} 定位到 {} 个分区, {} 个成员", params.getGroups(), target.partitions.size(), target.owners.size());
+            futures = searchExecutor.submitToMembers(task, target.owners);
+        } else {
+            futures = searchExecutor.submitToAllMembers(task);
+        }
+
+        TopNCollector merged = new TopNCollector(params.getTopN());
+        SearchResult coverage = new SearchResult();
+        try {
+            for (Future<SearchResult> future : futures.values()) {
+                SearchResult partial = await(future, params.getDeadline());
+                merged.merge(partial.getResults());
+                coverage.mergeCoverage(partial);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("1:N 搜索被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("1:N 搜索执行失败", e.getCause());
+        }
+        coverage.setResults(merged.toSortedList());
+        return coverage;
+    }
+
+    /**
+     * 等待成员结果，截止时间 (epoch 毫秒，<= 0 表示不限) 到期时抛出超时
+     */
+    private static <T> T await(Future<T> future, long deadline) throws InterruptedException, ExecutionException {
+        if (deadline <= 0) return future.get();
+        try {
+            return future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("1:N 搜索超时", e);
+        }
+    }
+
+}
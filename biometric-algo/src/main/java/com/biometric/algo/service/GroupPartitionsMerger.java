@@ -0,0 +1,34 @@
+package com.biometric.algo.service;
+
+import com.hazelcast.map.EntryProcessor;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分组 → 分区键登记表的并集更新，在分组所在分区上原子执行，多个加载端并发写入不会互相覆盖
+ */
+public class GroupPartitionsMerger implements EntryProcessor<String, HashSet<String>, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final HashSet<String> partitionKeys;
+
+    public GroupPartitionsMerger(Set<String> partitionKeys) {
+        this.partitionKeys = new HashSet<>(partitionKeys);
+    }
+
+    @Override
+    public Object process(Map.Entry<String, HashSet<String>> entry) {
+        HashSet<String> current = entry.getValue();
+        if (current == null) {
+            entry.setValue(partitionKeys);
+        } else if (!current.containsAll(partitionKeys)) {
+            current.addAll(partitionKeys);
+            entry.setValue(current);
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.biometric.algo.service;
+
+import com.biometric.algo.dto.CompareParams;
+import com.biometric.algo.dto.SearchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * 并发 1:N 搜索合并调度
+ *
+ * 没有批次在收集时到达的查询开启一个批次并成为批次的执行者 (leader)；已有批次在执行时
+ * 等待一个短窗口，窗口内到达的查询加入该批次后等待结果。窗口结束或批次已满时由执行者在
+ * 自己的线程中执行一次共享扫描，再按查询拆分结果，不额外占用线程池。
+ * 没有其他查询在执行时批次立即执行，低负载下不增加等待；高负载时一次扫描服务整批查询，吞吐随并发增长。
+ */
+final class SearchCoalescer {
+
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Function<List<CompareParams>, List<SearchResult>> batchSearch;
+
+    private final Object lock = new Object();
+    // 正在收集查询的批次，没有时为 null
+    private Batch open;
+    // 已关闭、正在执行的批次数
+    private int running;
+
+    SearchCoalescer(long windowMillis, int maxBatch, Function<List<CompareParams>, List<SearchResult>> batchSearch) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(windowMillis, 0));
+        this.maxBatch = Math.max(maxBatch, 1);
+        this.batchSearch = batchSearch;
+    }
+
+    SearchResult search(CompareParams params) {
+        Batch batch;
+        int index;
+        boolean leader;
+        synchronized (lock) {
+            leader = open == null;
+            if (leader) {
+                open = new Batch(System.nanoTime() + windowNanos);
+            }
+            batch = open;
+            index = batch.params.size();
+            batch.params.add(params);
+            if (batch.params.size() >= maxBatch) {
+                // 批次已满，立即关闭并唤醒执行者
+                open = null;
+                lock.notifyAll();
+            }
+        }
+
+        if (leader) {
+            boolean interrupted = false;
+            synchronized (lock) {
+                long remaining;
+                // 没有其他批次在执行时不等待窗口：此时合并不到其他查询，等待只会增加延迟
+                while (open == batch && running > 0 && (remaining = batch.deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    } catch (InterruptedException e) {
+                        // 批次内其他查询依赖执行者，中断时提前关闭批次并照常执行
+                        interrupted = true;
+                        break;
+                    }
+                }
+                if (open == batch) {
+                    open = null;
+                }
+                running++;
+            }
+            try {
+                batch.execute(batchSearch);
+            } finally {
+                synchronized (lock) {
+                    running--;
+                    // 唤醒正在等待窗口的执行者：不再有批次在执行时立即执行
+                    lock.notifyAll();
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return batch.get(index, params.getDeadline());
+    }
+
+    private static final class Batch {
+
+        final long deadline;
+        // 关闭前只在 lock 内修改，关闭后只由执行者读取
+        final List<CompareParams> params = new ArrayList<>();
+        final CompletableFuture<List<SearchResult>> result = new CompletableFuture<>();
+
+        Batch(long deadline) {
+            this.deadline = deadline;
+        }
+
+        void execute(Function<List<CompareParams>, List<SearchResult>> batchSearch) {
+            try {
+                result.complete(batchSearch.apply(params));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * 等待批次结果，截止时间 (epoch 毫秒，<= 0 表示不限) 到期时抛出超时
+         */
+        SearchResult get(int index, long deadline) {
+            try {
+                if (deadline <= 0) {
+                    return result.get().get(index);
+                }
+                return result.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS).get(index);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("1:N 搜索超时", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("1:N 搜索被中断", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("1:N 搜索执行失败", e.getCause());
+            }
+        }
+    }
+
+}
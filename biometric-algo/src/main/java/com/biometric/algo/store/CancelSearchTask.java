@@ -0,0 +1,23 @@
+package com.biometric.algo.store;
+
+import java.io.Serializable;
+
+/**
+ * 广播到各成员的搜索取消任务
+ */
+public class CancelSearchTask implements Runnable, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String queryId;
+
+    public CancelSearchTask(String queryId) {
+        this.queryId = queryId;
+    }
+
+    @Override
+    public void run() {
+        SearchCancellation.cancel(queryId);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.biometric.algo.store;
+
+import java.util.Arrays;
+
+/**
+ * 粗排候选堆 (基于原始数组的小顶堆)
+ * 保留近似分数最高的 capacity 个 (人脸, 查询特征) 对，供浮点精排使用，扫描过程中不产生对象
+ */
+public class CandidateHeap {
+
+    private final int capacity;
+    private final float[] scores;
+    private final int[] faces;
+    private final int[] inputs;
+    private int size;
+
+    public CandidateHeap(int capacity) {
+        this.capacity = capacity;
+        this.scores = new float[capacity];
+        this.faces = new int[capacity];
+        this.inputs = new int[capacity];
+    }
+
+    /**
+     * 堆满时的最低分，未满时返回负无穷
+     */
+    public float minScore() {
+        return size < capacity ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public void offer(float score, int face, int input) {
+        if (size < capacity) {
+            int i = size++;
+            scores[i] = score;
+            faces[i] = face;
+            inputs[i] = input;
+            siftUp(i);
+        } else if (score > scores[0]) {
+            scores[0] = score;
+            faces[0] = face;
+            inputs[0] = input;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按 (人脸, 查询特征) 升序输出候选，使同一人员的候选相邻，便于精排后按人员汇总
+     * 每个候选编码为 long: 高 32 位人脸下标，低 32 位查询特征下标
+     */
+    public long[] sortedByFace() {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) faces[i] << 32) | inputs[i];
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    public static int faceOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int inputOf(long key) {
+        return (int) key;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && scores[right] < scores[left]) smallest = right;
+            if (scores[i] <= scores[smallest]) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float s = scores[a]; scores[a] = scores[b]; scores[b] = s;
+        int f = faces[a]; faces[a] = faces[b]; faces[b] = f;
+        int in = inputs[a]; inputs[a] = inputs[b]; inputs[b] = in;
+    }
+
+}
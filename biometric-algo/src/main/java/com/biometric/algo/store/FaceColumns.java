@@ -0,0 +1,118 @@
+package com.biometric.algo.store;
+
+/**
+ * 人脸列存储 (二进制特征 + 浮点特征 + 可选的 int8 量化特征 + 可选的长二进制特征)
+ *
+ * 以人脸下标寻址，由 FeatureSegment 在读写锁保护下访问；
+ * 打分核心直接在存储上原地计算，不拷贝候选向量。
+ * 浮点特征可按 float16 位模式保存 (半精度列)，写入时转换，打分内核逐维展开为 float。
+ */
+public interface FaceColumns {
+
+    /**
+     * 当前可容纳的人脸数
+     */
+    int capacity();
+
+    /**
+     * 扩容到至少 faces 张人脸，保留已有数据
+     */
+    void ensureCapacity(int faces);
+
+    /**
+     * 是否保存 int8 量化列
+     */
+    boolean isQuantized();
+
+    /**
+     * 浮点特征是否以 float16 保存
+     */
+    boolean isHalf();
+
+    /**
+     * 每张人脸的长二进制特征占用的 long 数，0 表示未保存长二进制特征
+     */
+    int longCodeWords();
+
+    /**
+     * 写入一张人脸；featureVector 须已做 L2 归一化 (半精度列在写入时转换为 float16)，
+     * 未启用量化时忽略 quantizedVector/cosineFactor，
+     * 未保存长二进制特征时忽略 longCode
+     *
+     * @param cosineFactor 量化余弦换算系数 scale / norm，见 VectorQuantizer.cosineFactor
+     */
+    void write(int face, int[] binaryFeature, float[] featureVector, byte[] quantizedVector, float cosineFactor,
+               long[] longCode);
+
+    /**
+     * 将 [from, from + count) 的人脸移动到 to 处 (to <= from，用于原地压缩)
+     */
+    void move(int from, int to, int count);
+
+    /**
+     * 读出一张人脸的二进制特征，写入 out[outOffset, outOffset + CODE_WORDS) (索引构建时使用)
+     */
+    void readCode(int face, int[] out, int outOffset);
+
+    /**
+     * 读出一张人脸的归一化浮点特征 (索引训练与重建时使用，半精度列展开为 float)
+     */
+    void readVector(int face, float[] out);
+
+    /**
+     * 余弦相似度精筛；列中向量已在写入时归一化，输入也须为归一化向量，结果即点积
+     */
+    float compare(int face, float[] inputUnitVector);
+
+    /**
+     * 批量汉明距离粗筛：一张人脸与全部查询特征比较
+     *
+     * @param inputCodes 查询二进制特征按 CODE_WORDS 连续存放
+     * @param selected   输出通过粗筛的查询下标
+     * @return 通过粗筛的查询数
+     */
+    int filterBinaFeat(int face, int[] inputCodes, int inputSize, int hamDist, int[] selected);
+
+    /**
+     * 长二进制特征粗筛：在已通过 128 位粗筛的 selected[0, count) 中保留长编码汉明距离 <= radius 的查询
+     *
+     * @param inputCodes 查询长二进制特征按 longCodeWords 连续存放
+     * @return 保留的查询数，结果原地写回 selected
+     */
+    int filterLongCode(int face, long[] inputCodes, int radius, int[] selected, int count);
+
+    /**
+     * 分块多查询精筛：一张人脸与 selected 中的查询向量同时计算余弦相似度，scores[k] 对应 selected[k]
+     *
+     * @param inputUnitVectors 归一化查询向量按 DIM 连续存放
+     */
+    void compareBlock(int face, float[] inputUnitVectors, int[] selected, int count, float[] scores);
+
+    /**
+     * 有界余弦精筛：分块累加，确定达不到 threshold 时提前放弃，见 Face303JavaCalcuater.dotBounded
+     *
+     * @param inputUnitVectors 归一化查询向量按 DIM 连续存放
+     * @param inputSuffixNorms 查询的分块后缀范数，见 Face303JavaCalcuater.suffixNorms
+     * @param input            查询下标
+     * @return 精确余弦；提前放弃时返回低于 threshold 的上界
+     */
+    float compareBounded(int face, float[] inputUnitVectors, float[] inputSuffixNorms, int input, float threshold);
+
+    /**
+     * int8 量化近似余弦相似度，仅用于粗排
+     *
+     * @param inputCosineFactor 查询向量的量化余弦换算系数
+     */
+    float approxCompare(int face, byte[] inputQuantizedVector, float inputCosineFactor);
+
+    /**
+     * 已分配的存储字节数
+     */
+    long allocatedBytes();
+
+    /**
+     * 立即释放底层内存/文件，之后不可再访问
+     */
+    void release();
+
+}
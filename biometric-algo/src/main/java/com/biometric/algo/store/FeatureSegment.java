@@ -0,0 +1,1125 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.dto.CachedFaceFeature;
+import com.biometric.algo.dto.CompareResult;
+import com.biometric.algo.dto.PersonFaceData;
+import com.biometric.algo.index.GroupPostings;
+import com.biometric.algo.index.HnswGraph;
+import com.biometric.algo.index.IvfCentroids;
+import com.biometric.algo.index.IvfPostings;
+import com.biometric.algo.index.MultiIndexHash;
+import com.biometric.algo.util.BinaryProjection;
+import com.biometric.algo.util.Face303JavaCalcuater;
+import com.biometric.algo.util.VectorQuantizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个分区的列式特征段
+ *
+ * 【存储布局】
+ * - columns: 人脸列 (二进制特征 + 浮点特征)，可位于堆内或堆外，见 {@link StorageType}
+ * - personFaceStart/personFaceCount: 人员偏移表，同一人员的人脸在数组中连续
+ * - groupPostings: 分组 → 人员槽位的压缩位图，分组检索只遍历目标分组的人员
+ *
+ * - ivf/postings/faceLists: 可选的 IVF 倒排表，训练完成后由特征库下发聚类中心
+ * - hnsw: 可选的 HNSW 图索引，节点即人脸下标，随人脸写入增量插入
+ * - mih: 可选的二进制特征多索引哈希，汉明半径较小时以查桶代替逐条粗筛，结果与全量扫描一致
+ * - projection: 可选的长二进制特征编码器，长编码存于人脸列，作为 128 位粗筛之后的第二道粗筛
+ *
+ * 更新采用追加写 + 墓碑标记，垃圾比例过高时原地压缩。
+ * 搜索时直接顺序扫描原始数组，不产生任何反序列化开销。
+ */
+public class FeatureSegment {
+
+    static final int CODE_WORDS = 4;
+    static final int DIM = 128;
+
+    static final int INITIAL_FACES = 256;
+    private static final int INITIAL_PERSONS = 128;
+    // 墓碑人脸超过该比例时触发压缩
+    private static final float COMPACT_RATIO = 0.3f;
+    // 共享扫描每块的人员槽位数：约 256 张人脸 (128 维浮点特征 128KB)，一块在缓存中供整批查询比对
+    private static final int SHARED_BLOCK_SLOTS = 128;
+    // 多索引哈希检索每校验多少个候选检查一次查询是否已停止
+    private static final int MIH_CHECK_FACES = 1024;
+
+    private final int partitionId;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ================== 人脸列 ==================
+    private final FaceColumns columns;
+    private String[] faceIds = new String[INITIAL_FACES];
+    // 人脸所属人员槽位，供精排阶段由人脸回溯人员
+    private int[] facePerson = new int[INITIAL_FACES];
+    private int faceCount;
+    private int deadFaces;
+
+    // ================== 人员列 ==================
+    private String[] personIds = new String[INITIAL_PERSONS];
+    private String[][] personGroups = new String[INITIAL_PERSONS][];
+    private int[] personFaceStart = new int[INITIAL_PERSONS];
+    private int[] personFaceCount = new int[INITIAL_PERSONS];
+    private int personCount;
+    private final Map<String, Integer> personSlots = new HashMap<>();
+    private final GroupPostings groupPostings = new GroupPostings();
+
+    // ================== IVF 倒排表 ==================
+    private IvfCentroids ivf;
+    private IvfPostings postings;
+    // 人脸所属聚类
+    private int[] faceLists;
+    // 压缩次数，人脸下标在压缩后失效
+    private int compactions;
+
+    // ================== HNSW 图索引 ==================
+    private HnswGraph hnsw;
+
+    // ================== 多索引哈希 ==================
+    // 存活人脸达到该数量才建立索引，<= 0 表示未启用
+    private int mihMinFaces;
+    private int mihMaxSubRadius;
+    private MultiIndexHash mih;
+
+    // ================== 长二进制特征 ==================
+    private BinaryProjection projection;
+
+    private boolean released;
+
+    // 半精度特征入库时的展开缓冲区，写锁保护；展开结果只在写入列与索引期间使用
+    private final float[] widenBuffer = new float[DIM];
+
+    public FeatureSegment(int partitionId, FaceColumns columns) {
+        this.partitionId = partitionId;
+        this.columns = columns;
+    }
+
+    /**
+     * 启用 HNSW 图索引，须在写入任何数据之前调用
+     */
+    public void enableHnsw(int m, int efConstruction) {
+        lock.writeLock().lock();
+        try {
+            hnsw = new HnswGraph(m, efConstruction, DIM, new HnswGraph.Vectors() {
+                @Override
+                public float similarity(int node, float[] query) {
+                    return columns.compare(node, query);
+                }
+
+                @Override
+                public void read(int node, float[] out) {
+                    columns.readVector(node, out);
+                }
+            }, partitionId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 启用长二进制特征粗筛，须在写入任何数据之前调用，人脸列须按同样的位数分配
+     */
+    public void enableLongCode(BinaryProjection projection) {
+        if (columns.longCodeWords() != projection.getWords()) {
+            throw new IllegalArgumentException("人脸列长二进制特征长度与编码器不一致: "
+                    + columns.longCodeWords() + " != " + projection.getWords());
+        }
+        lock.writeLock().lock();
+        try {
+            this.projection = projection;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 启用二进制特征多索引哈希
+     *
+     * @param minFaces     存活人脸达到该数量才建立索引，小分区段顺序扫描已足够快
+     * @param maxSubRadius 子串半径 (汉明半径 / 8) 超过该值时退回顺序扫描
+     */
+    public void enableMih(int minFaces, int maxSubRadius) {
+        lock.writeLock().lock();
+        try {
+            this.mihMinFaces = Math.max(minFaces, 1);
+            this.mihMaxSubRadius = maxSubRadius;
+            maintainMih();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 维护多索引哈希：索引之后追加的人脸由搜索时顺序扫描补齐，
+     * 追加部分超过已索引部分的 1/8 时整体重建；压缩后人脸下标变化，同样重建
+     */
+    private void maintainMih() {
+        if (mihMinFaces <= 0) return;
+        if (faceCount - deadFaces < mihMinFaces) {
+            mih = null;
+            return;
+        }
+        if (mih != null && faceCount - mih.getIndexedFaces() <= mih.getIndexedFaces() / 8) return;
+
+        int[] codes = new int[faceCount * CODE_WORDS];
+        boolean[] live = new boolean[faceCount];
+        for (int f = 0; f < faceCount; f++) {
+            if (faceIds[f] == null) continue;
+            columns.readCode(f, codes, f * CODE_WORDS);
+            live[f] = true;
+        }
+        mih = MultiIndexHash.build(codes, live, faceCount);
+    }
+
+    public int getPartitionId() {
+        return partitionId;
+    }
+
+    /**
+     * 写入或覆盖一个人员的全部人脸
+     */
+    public void put(PersonFaceData data) {
+        if (data == null || data.getPersonId() == null) return;
+
+        lock.writeLock().lock();
+        try {
+            if (released) return;
+            removeInternal(data.getPersonId());
+
+            List<CachedFaceFeature> features = data.getFeatures();
+            int start = faceCount;
+            int slot = personCount;
+            int added = 0;
+            if (features != null) {
+                ensureFaceCapacity(faceCount + features.size());
+                for (CachedFaceFeature feature : features) {
+                    int[] binaryFeat = feature.getBinaryFeature();
+                    // 半精度特征展开到缓冲区，由列决定以 float 或 float16 保存
+                    float[] floatFeat = feature.widenVector(widenBuffer);
+                    // 与聚合器保持一致：无效特征直接跳过
+                    if (binaryFeat == null || binaryFeat.length != CODE_WORDS ||
+                            floatFeat == null || floatFeat.length != DIM) {
+                        continue;
+                    }
+                    int face = faceCount++;
+                    writeFace(face, feature, binaryFeat, floatFeat);
+                    faceIds[face] = feature.getFaceId();
+                    facePerson[face] = slot;
+                    added++;
+                }
+            }
+            if (added == 0) return;
+
+            ensurePersonCapacity(personCount + 1);
+            personCount++;
+            personIds[slot] = data.getPersonId();
+            personGroups[slot] = data.getGroupIds();
+            groupPostings.add(data.getGroupIds(), slot);
+            personFaceStart[slot] = start;
+            personFaceCount[slot] = added;
+            personSlots.put(data.getPersonId(), slot);
+            maintainMih();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写入人脸列并同步更新索引；列中统一存放归一化向量，加载阶段已归一化的特征直接复用
+     */
+    private void writeFace(int face, CachedFaceFeature feature, int[] binaryFeat, float[] floatFeat) {
+        float[] unitFeat = feature.isNormalized() ? floatFeat : Face303JavaCalcuater.normalize(floatFeat);
+        long[] longCode = null;
+        if (projection != null) {
+            // 加载阶段已按相同位数编码的特征直接复用
+            longCode = feature.getLongCode();
+            if (longCode == null || longCode.length != projection.getWords()) {
+                longCode = projection.encode(unitFeat);
+            }
+        }
+        if (columns.isQuantized()) {
+            writeQuantized(face, feature, binaryFeat, floatFeat, unitFeat, longCode);
+        } else {
+            columns.write(face, binaryFeat, unitFeat, null, 0.0F, longCode);
+        }
+        if (ivf != null) {
+            int list = ivf.nearest(unitFeat, 0);
+            faceLists[face] = list;
+            postings.add(list, face);
+        }
+        if (hnsw != null) {
+            hnsw.insert(face, unitFeat);
+        }
+    }
+
+    /**
+     * 写入量化列；加载阶段已量化的特征直接复用，否则在此量化
+     */
+    private void writeQuantized(int face, CachedFaceFeature feature, int[] binaryFeat, float[] floatFeat, float[] unitFeat,
+                                long[] longCode) {
+        byte[] quantized = feature.getQuantizedVector();
+        float scale = feature.getQuantizedScale();
+        if (quantized == null || quantized.length != DIM) {
+            scale = VectorQuantizer.scale(floatFeat);
+            quantized = VectorQuantizer.quantize(floatFeat, scale);
+        }
+        float factor = VectorQuantizer.cosineFactor(scale, VectorQuantizer.norm(floatFeat));
+        columns.write(face, binaryFeat, unitFeat, quantized, factor, longCode);
+    }
+
+    public void remove(String personId) {
+        if (personId == null) return;
+        lock.writeLock().lock();
+        try {
+            removeInternal(personId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeInternal(String personId) {
+        Integer slot = personSlots.remove(personId);
+        if (slot == null) return;
+
+        int start = personFaceStart[slot];
+        int count = personFaceCount[slot];
+        for (int f = start; f < start + count; f++) {
+            faceIds[f] = null;
+        }
+        deadFaces += count;
+        personIds[slot] = null;
+        personGroups[slot] = null;
+        personFaceCount[slot] = 0;
+
+        if (deadFaces > INITIAL_FACES && deadFaces > faceCount * COMPACT_RATIO) {
+            compact();
+        }
+    }
+
+    /**
+     * 原地压缩：人员槽位与人脸均按写入顺序单调递增，向前搬移即可丢弃墓碑
+     */
+    private void compact() {
+        int[] oldToNew = null;
+        if (hnsw != null) {
+            oldToNew = new int[faceCount];
+            Arrays.fill(oldToNew, -1);
+        }
+        int f = 0;
+        int p = 0;
+        groupPostings.clear();
+        for (int slot = 0; slot < personCount; slot++) {
+            if (personIds[slot] == null) continue;
+            int start = personFaceStart[slot];
+            int count = personFaceCount[slot];
+            if (oldToNew != null) {
+                for (int k = 0; k < count; k++) {
+                    oldToNew[start + k] = f + k;
+                }
+            }
+            columns.move(start, f, count);
+            System.arraycopy(faceIds, start, faceIds, f, count);
+            if (ivf != null) {
+                System.arraycopy(faceLists, start, faceLists, f, count);
+            }
+            Arrays.fill(facePerson, f, f + count, p);
+
+            personIds[p] = personIds[slot];
+            personGroups[p] = personGroups[slot];
+            groupPostings.add(personGroups[p], p);
+            personFaceStart[p] = f;
+            personFaceCount[p] = count;
+            personSlots.put(personIds[slot], p);
+            f += count;
+            p++;
+        }
+
+        Arrays.fill(faceIds, f, faceCount, null);
+        Arrays.fill(personIds, p, personCount, null);
+        Arrays.fill(personGroups, p, personCount, null);
+        Arrays.fill(personFaceCount, p, personCount, 0);
+        faceCount = f;
+        personCount = p;
+        deadFaces = 0;
+        compactions++;
+
+        if (hnsw != null) {
+            hnsw.compact(oldToNew, faceCount);
+        }
+        if (mih != null) {
+            mih = null;
+            maintainMih();
+        }
+
+        if (ivf != null) {
+            postings.clear();
+            for (int face = 0; face < faceCount; face++) {
+                postings.add(faceLists[face], face);
+            }
+        }
+    }
+
+    /**
+     * 下发 IVF 聚类中心并重建倒排表
+     * 人脸归属在读锁下计算，只在安装时短暂持有写锁；期间发生压缩则重新计算
+     */
+    public void applyIvf(IvfCentroids centroids) {
+        float[] vector = new float[DIM];
+        while (true) {
+            int[] assigned;
+            int assignedCount;
+            int version;
+            lock.readLock().lock();
+            try {
+                if (released || ivf == centroids) return;
+                version = compactions;
+                assignedCount = faceCount;
+                assigned = new int[faceIds.length];
+                for (int f = 0; f < assignedCount; f++) {
+                    if (faceIds[f] == null) continue;
+                    columns.readVector(f, vector);
+                    assigned[f] = centroids.nearest(vector, 0);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (released) return;
+                if (version != compactions) continue;
+                if (assigned.length < faceIds.length) {
+                    assigned = Arrays.copyOf(assigned, faceIds.length);
+                }
+                // 计算期间新追加的人脸
+                for (int f = assignedCount; f < faceCount; f++) {
+                    if (faceIds[f] == null) continue;
+                    columns.readVector(f, vector);
+                    assigned[f] = centroids.nearest(vector, 0);
+                }
+                IvfPostings rebuilt = new IvfPostings(centroids.getLists());
+                for (int f = 0; f < faceCount; f++) {
+                    if (faceIds[f] != null) {
+                        rebuilt.add(assigned[f], f);
+                    }
+                }
+                ivf = centroids;
+                faceLists = assigned;
+                postings = rebuilt;
+                return;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void ensureFaceCapacity(int required) {
+        if (required <= faceIds.length) return;
+        int newCapacity = Math.max(required, faceIds.length * 2);
+        columns.ensureCapacity(newCapacity);
+        faceIds = Arrays.copyOf(faceIds, newCapacity);
+        facePerson = Arrays.copyOf(facePerson, newCapacity);
+        if (faceLists != null) {
+            faceLists = Arrays.copyOf(faceLists, newCapacity);
+        }
+    }
+
+    private void ensurePersonCapacity(int required) {
+        if (required <= personIds.length) return;
+        int newCapacity = Math.max(required, personIds.length * 2);
+        personIds = Arrays.copyOf(personIds, newCapacity);
+        personGroups = Arrays.copyOf(personGroups, newCapacity);
+        personFaceStart = Arrays.copyOf(personFaceStart, newCapacity);
+        personFaceCount = Arrays.copyOf(personFaceCount, newCapacity);
+    }
+
+    /**
+     * 扫描本段，将命中结果写入收集器
+     * 打分逻辑与 FaceRecogAggregator.accumulate 保持一致；
+     * 启用量化精排时先以 int8 点积粗排，只对每段前 rerankSize 个候选计算浮点余弦
+     */
+    public void search(ScanQuery query, TopNCollector collector) {
+        lock.readLock().lock();
+        try {
+            if (released) return;
+            searchLocked(query, collector);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 共享扫描：一批并发查询一次遍历本段，结果分别写入各自的收集器 (collectors 与 queries 一一对应)
+     * 走索引 (IVF/HNSW/MIH) 的查询单独执行；其余查询按人员槽位分块交替扫描，
+     * 每块人脸列从内存读入一次后留在缓存中供整批查询比对，内存带宽按批而非按查询消耗
+     */
+    public void searchShared(List<ScanQuery> queries, List<TopNCollector> collectors) {
+        lock.readLock().lock();
+        try {
+            if (released) return;
+            List<ScanState> shared = new ArrayList<>(queries.size());
+            for (int q = 0; q < queries.size(); q++) {
+                ScanQuery query = queries.get(q);
+                if (usesIndex(query)) {
+                    searchLocked(query, collectors.get(q));
+                } else {
+                    shared.add(new ScanState(query, collectors.get(q), groupFilter(query),
+                            query.isRerank() && columns.isQuantized()));
+                }
+            }
+            if (shared.isEmpty()) return;
+
+            for (int from = 0; from < personCount; from += SHARED_BLOCK_SLOTS) {
+                final int to = Math.min(from + SHARED_BLOCK_SLOTS, personCount);
+                for (ScanState state : shared) {
+                    // 已取消、超时或预算用尽的查询跳过剩余块
+                    if (state.query.isStopped()) {
+                        state.collector.markIncomplete();
+                        continue;
+                    }
+                    if (state.candidates != null) {
+                        scanQuantized(state, from, to);
+                    } else {
+                        scanExact(state, from, to);
+                    }
+                }
+            }
+            // 与单独扫描一致：预算用尽时照常精排，取消或超时时跳过
+            for (ScanState state : shared) {
+                if (state.candidates != null && !state.query.isAborted()) {
+                    scoreCandidates(state.candidates.sortedByFace(), state.query, state.collector);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean usesIndex(ScanQuery query) {
+        return (query.isIvf() && query.getProbes().length > 0 && ivf == query.getCentroids())
+                || (query.isHnsw() && hnsw != null)
+                || (mih != null && MultiIndexHash.supports(query.getHammingThreshold(), mihMaxSubRadius));
+    }
+
+    private void searchLocked(ScanQuery query, TopNCollector collector) {
+        if (query.isIvf() && query.getProbes().length > 0 && ivf == query.getCentroids()) {
+            searchIvf(query, collector);
+        } else if (query.isHnsw() && hnsw != null) {
+            searchHnsw(query, collector);
+        } else if (mih != null && MultiIndexHash.supports(query.getHammingThreshold(), mihMaxSubRadius)) {
+            searchMih(query, collector);
+        } else if (query.isRerank() && columns.isQuantized()) {
+            ScanState state = new ScanState(query, collector, groupFilter(query), true);
+            scanBlocks(state);
+            // 预算用尽时对已收集的候选照常精排，给出已扫描部分的 TopN；取消或超时的结果会被丢弃，不再精排
+            if (!query.isAborted()) {
+                scoreCandidates(state.candidates.sortedByFace(), query, collector);
+            }
+        } else {
+            scanBlocks(new ScanState(query, collector, groupFilter(query), false));
+        }
+    }
+
+    /**
+     * 按块扫描全部人员槽位，块之间检查取消、截止时间与预算
+     */
+    private void scanBlocks(ScanState state) {
+        for (int from = 0; from < personCount; from += SHARED_BLOCK_SLOTS) {
+            if (state.query.isStopped()) {
+                state.collector.markIncomplete();
+                return;
+            }
+            final int to = Math.min(from + SHARED_BLOCK_SLOTS, personCount);
+            if (state.candidates != null) {
+                scanQuantized(state, from, to);
+            } else {
+                scanExact(state, from, to);
+            }
+        }
+    }
+
+    /**
+     * 精确扫描人员槽位 [from, to)
+     */
+    private void scanExact(ScanState state, int from, int to) {
+        final ScanQuery query = state.query;
+        final TopNCollector collector = state.collector;
+        final int inputSize = query.size();
+        final int[] inputCodes = query.getBinaryBlock();
+        final float[] inputVectors = query.getFloatBlock();
+        final int hamDist = query.getHammingThreshold();
+        final float[] suffixNorms = query.getSuffixNorms();
+        final PersonMatch match = state.match;
+        final int[] selected = state.selected;
+        final float[] scores = state.scores;
+        final long[] allowed = state.allowed;
+        long persons = 0, evaluations = 0;
+
+        for (int slot = nextSlot(allowed, from); slot < to; slot = nextSlot(allowed, slot + 1)) {
+            final int count = personFaceCount[slot];
+            if (count == 0) continue;
+
+            persons++;
+            match.reset(collector);
+            final int start = personFaceStart[slot];
+            for (int face = start; face < start + count; face++) {
+                // 一张人脸一次性与全部查询比较，候选数据只加载一次
+                final int passed = filterLongCode(face, query, selected,
+                        columns.filterBinaFeat(face, inputCodes, inputSize, hamDist, selected));
+                if (passed == 0) continue;
+                evaluations += passed;
+                if (suffixNorms != null && Face303JavaCalcuater.isBoundedWorthwhile(match.getEffectiveThreshold())) {
+                    // 低于有效阈值的比对不影响结果，逐查询有界计算
+                    for (int k = 0; k < passed; k++) {
+                        match.add(selected[k], faceIds[face], columns.compareBounded(face, inputVectors,
+                                suffixNorms, selected[k], match.getEffectiveThreshold()));
+                    }
+                    continue;
+                }
+                columns.compareBlock(face, inputVectors, selected, passed, scores);
+                for (int k = 0; k < passed; k++) {
+                    match.add(selected[k], faceIds[face], scores[k]);
+                }
+            }
+            match.emit(personIds[slot], collector);
+        }
+        charge(state, persons, evaluations);
+    }
+
+    private static void charge(ScanState state, long persons, long evaluations) {
+        charge(state.query, state.collector, persons, evaluations);
+    }
+
+    /**
+     * 累计覆盖统计并扣减本成员的查询预算
+     */
+    private static void charge(ScanQuery query, TopNCollector collector, long persons, long evaluations) {
+        collector.addCoverage(persons, evaluations);
+        if (query.getBudget() != null) {
+            query.getBudget().charge(evaluations);
+        }
+    }
+
+    /**
+     * 量化粗排人员槽位 [from, to)：int8 整数点积，只保留近似分数最高的候选，扫描结束后统一浮点精排
+     */
+    private void scanQuantized(ScanState state, int from, int to) {
+        final ScanQuery query = state.query;
+        final int inputSize = query.size();
+        final int[] inputCodes = query.getBinaryBlock();
+        final int[] selected = state.selected;
+        final byte[][] inputQuantized = query.getQuantizedFeatures();
+        final float[] inputFactors = query.getCosineFactors();
+        final int hamDist = query.getHammingThreshold();
+        final float approxThreshold = state.approxThreshold;
+        final CandidateHeap candidates = state.candidates;
+        final long[] allowed = state.allowed;
+        long persons = 0, evaluations = 0;
+
+        for (int slot = nextSlot(allowed, from); slot < to; slot = nextSlot(allowed, slot + 1)) {
+            final int count = personFaceCount[slot];
+            if (count == 0) continue;
+
+            persons++;
+            final int start = personFaceStart[slot];
+            for (int face = start; face < start + count; face++) {
+                final int passed = filterLongCode(face, query, selected,
+                        columns.filterBinaFeat(face, inputCodes, inputSize, hamDist, selected));
+                evaluations += passed;
+                for (int k = 0; k < passed; k++) {
+                    final int i = selected[k];
+                    float approx = columns.approxCompare(face, inputQuantized[i], inputFactors[i]);
+                    if (approx >= approxThreshold && approx > candidates.minScore()) {
+                        candidates.offer(approx, face, i);
+                    }
+                }
+            }
+        }
+        charge(state, persons, evaluations);
+    }
+
+    /**
+     * IVF 检索：只扫描各查询特征最近的 nprobe 个聚类的倒排列表
+     * 汉明粗筛与分组过滤同全量扫描，候选按人脸排序后统一精排；每个倒排列表之前检查查询是否已停止
+     */
+    private void searchIvf(ScanQuery query, TopNCollector collector) {
+        final int inputSize = query.size();
+        final int[][] inputCodes = query.getBinaryFeatures();
+        final int[][] probes = query.getProbes();
+        final int hamDist = query.getHammingThreshold();
+        final long[] allowed = groupFilter(query);
+        final int[] selected = new int[1];
+        final IndexCheckpoint checkpoint = new IndexCheckpoint(query, collector);
+
+        long[] keys = new long[256];
+        int size = 0;
+        probe:
+        for (int i = 0; i < inputSize; i++) {
+            for (int list : probes[i]) {
+                if (checkpoint.stopAtCandidates(size)) break probe;
+                final int[] faces = postings.faces(list);
+                final int listSize = postings.size(list);
+                for (int n = 0; n < listSize; n++) {
+                    final int face = faces[n];
+                    if (faceIds[face] == null) continue;
+                    if (allowed != null && !GroupPostings.contains(allowed, facePerson[face])) continue;
+                    if (columns.filterBinaFeat(face, inputCodes[i], 1, hamDist, selected) == 0) continue;
+                    if (!passesLongCode(face, query, i, selected)) continue;
+                    if (size == keys.length) {
+                        keys = Arrays.copyOf(keys, size * 2);
+                    }
+                    keys[size++] = ((long) face << 32) | i;
+                }
+            }
+        }
+        scoreIndexCandidates(keys, size, query, collector, checkpoint);
+    }
+
+    /**
+     * HNSW 检索：每个查询特征在图上取 ef 个近邻，过滤墓碑、分组与汉明粗筛后统一精排
+     * 分组过滤在图搜索之后进行，分组很小时召回会下降，此时应使用全量扫描
+     * 图搜索按展开节点数检查查询是否已停止，图上的相似度计算同样扣减预算
+     */
+    private void searchHnsw(ScanQuery query, TopNCollector collector) {
+        final int inputSize = query.size();
+        final int[][] inputCodes = query.getBinaryFeatures();
+        final float[][] inputVectors = query.getFloatFeatures();
+        final int hamDist = query.getHammingThreshold();
+        final int ef = query.getHnswEf();
+        final long[] allowed = groupFilter(query);
+        final int[] selected = new int[1];
+        final int[] nodes = new int[ef];
+        final float[] scores = new float[ef];
+        final IndexCheckpoint checkpoint = new IndexCheckpoint(query, collector);
+
+        long[] keys = new long[inputSize * ef];
+        int size = 0;
+        for (int i = 0; i < inputSize; i++) {
+            if (checkpoint.stopAtCandidates(size)) break;
+            int found = hnsw.search(inputVectors[i], ef, nodes, scores, checkpoint);
+            for (int n = 0; n < found; n++) {
+                final int face = nodes[n];
+                if (faceIds[face] == null) continue;
+                if (scores[n] < query.getThreshold()) break;
+                if (allowed != null && !GroupPostings.contains(allowed, facePerson[face])) continue;
+                if (columns.filterBinaFeat(face, inputCodes[i], 1, hamDist, selected) == 0) continue;
+                if (!passesLongCode(face, query, i, selected)) continue;
+                keys[size++] = ((long) face << 32) | i;
+            }
+        }
+        scoreIndexCandidates(keys, size, query, collector, checkpoint);
+    }
+
+    /**
+     * 多索引哈希检索：按鸽巢原理查桶得到完整的汉明候选集，再做完整汉明校验与浮点余弦
+     * 索引之后追加的人脸顺序扫描补齐，结果与全量扫描完全一致
+     * 每个查询特征查桶之前、校验每 MIH_CHECK_FACES 个候选时检查查询是否已停止
+     */
+    private void searchMih(ScanQuery query, TopNCollector collector) {
+        final int inputSize = query.size();
+        final int[][] inputCodes = query.getBinaryFeatures();
+        final int hamDist = query.getHammingThreshold();
+        final int indexed = mih.getIndexedFaces();
+        final long[] allowed = groupFilter(query);
+        final int[] selected = new int[1];
+        final IndexCheckpoint checkpoint = new IndexCheckpoint(query, collector);
+
+        long[] keys = new long[64];
+        int size = 0;
+        probe:
+        for (int i = 0; i < inputSize; i++) {
+            if (checkpoint.stopAtCandidates(size)) break;
+            final int[] candidates = mih.candidates(inputCodes[i], hamDist);
+            final int tail = faceCount - indexed;
+            for (int n = 0; n < candidates.length + tail; n++) {
+                if (n % MIH_CHECK_FACES == MIH_CHECK_FACES - 1 && checkpoint.stopAtCandidates(size)) break probe;
+                final int face = n < candidates.length ? candidates[n] : indexed + n - candidates.length;
+                if (faceIds[face] == null) continue;
+                if (columns.filterBinaFeat(face, inputCodes[i], 1, hamDist, selected) == 0) continue;
+                if (!passesLongCode(face, query, i, selected)) continue;
+                if (allowed != null && !GroupPostings.contains(allowed, facePerson[face])) continue;
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                }
+                keys[size++] = ((long) face << 32) | i;
+            }
+        }
+        scoreIndexCandidates(keys, size, query, collector, checkpoint);
+    }
+
+    /**
+     * 索引检索收集的候选按人脸排序后统一精排；与全量扫描一致，预算用尽时照常精排，取消或超时时跳过
+     */
+    private void scoreIndexCandidates(long[] keys, int size, ScanQuery query, TopNCollector collector,
+                                      IndexCheckpoint checkpoint) {
+        keys = Arrays.copyOf(keys, size);
+        Arrays.sort(keys);
+        int persons = query.isAborted() ? 0 : scoreCandidates(keys, query, collector);
+        collector.addCoverage(persons, size);
+        checkpoint.chargeCandidates(size);
+    }
+
+    /**
+     * 查询分组在本段的人员槽位位图，查询未指定分组时返回 null (全部匹配)
+     */
+    private long[] groupFilter(ScanQuery query) {
+        return query.getGroups() == null ? null : groupPostings.union(query.getGroups(), personCount);
+    }
+
+    /**
+     * from 及之后第一个属于查询分组的人员槽位，allowed 为 null 时即 from；没有时返回 Integer.MAX_VALUE
+     */
+    private static int nextSlot(long[] allowed, int from) {
+        if (allowed == null) return from;
+        int word = from >>> 6;
+        if (word >= allowed.length) return Integer.MAX_VALUE;
+        long bits = allowed[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == allowed.length) return Integer.MAX_VALUE;
+            bits = allowed[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * 长二进制特征粗筛：对通过 128 位粗筛的 selected[0, count) 再按长编码过滤
+     * 查询与本段使用同一编码器时才生效，否则原样返回
+     */
+    private int filterLongCode(int face, ScanQuery query, int[] selected, int count) {
+        if (count == 0 || projection == null || query.getProjection() != projection) return count;
+        return columns.filterLongCode(face, query.getLongCodeBlock(), query.getLongCodeRadius(), selected, count);
+    }
+
+    /**
+     * 单个查询特征的长二进制特征粗筛，selected 为长度至少为 1 的缓冲区
+     */
+    private boolean passesLongCode(int face, ScanQuery query, int input, int[] selected) {
+        selected[0] = input;
+        return filterLongCode(face, query, selected, 1) > 0;
+    }
+
+    /**
+     * 对按 (人脸, 查询特征) 升序排列的候选计算浮点余弦，同一人员的候选相邻，逐人员汇总
+     */
+    private int scoreCandidates(long[] keys, ScanQuery query, TopNCollector collector) {
+        final float[][] inputVectors = query.getFloatFeatures();
+        final float[] inputBlock = query.getFloatBlock();
+        final float[] suffixNorms = query.getSuffixNorms();
+        final PersonMatch match = new PersonMatch(query);
+        int k = 0, persons = 0;
+        while (k < keys.length) {
+            final int slot = facePerson[CandidateHeap.faceOf(keys[k])];
+            match.reset(collector);
+            while (k < keys.length && facePerson[CandidateHeap.faceOf(keys[k])] == slot) {
+                int face = CandidateHeap.faceOf(keys[k]);
+                int i = CandidateHeap.inputOf(keys[k]);
+                final float score = suffixNorms != null && Face303JavaCalcuater.isBoundedWorthwhile(match.getEffectiveThreshold())
+                        ? columns.compareBounded(face, inputBlock, suffixNorms, i, match.getEffectiveThreshold())
+                        : columns.compare(face, inputVectors[i]);
+                match.add(i, faceIds[face], score);
+                k++;
+            }
+            match.emit(personIds[slot], collector);
+            persons++;
+        }
+        return persons;
+    }
+
+    /**
+     * 按步长抽取存活人脸的归一化特征作为 IVF 训练样本
+     *
+     * @param out      样本数组，按 DIM 连续存放
+     * @param outIndex 本段样本在 out 中的起始序号
+     * @return 实际抽取的样本数
+     */
+    public int sampleVectors(int step, float[] out, int outIndex, int maxCount) {
+        lock.readLock().lock();
+        try {
+            if (released) return 0;
+            float[] vector = new float[DIM];
+            int count = 0;
+            for (int f = 0; f < faceCount && count < maxCount; f += step) {
+                if (faceIds[f] == null) continue;
+                columns.readVector(f, vector);
+                System.arraycopy(vector, 0, out, (outIndex + count) * DIM, DIM);
+                count++;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按步长抽取存活人脸 (二进制特征 + 归一化浮点特征 + 人脸 ID)，作为汉明半径标定的查询
+     *
+     * @return 实际抽取的人脸数
+     */
+    public int sampleFaces(int step, int[] codesOut, float[] vectorsOut, String[] idsOut, int outIndex, int maxCount) {
+        lock.readLock().lock();
+        try {
+            if (released) return 0;
+            float[] vector = new float[DIM];
+            int count = 0;
+            for (int f = 0; f < faceCount && count < maxCount; f += step) {
+                if (faceIds[f] == null) continue;
+                final int n = outIndex + count;
+                columns.readCode(f, codesOut, n * CODE_WORDS);
+                columns.readVector(f, vector);
+                System.arraycopy(vector, 0, vectorsOut, n * DIM, DIM);
+                idsOut[n] = faceIds[f];
+                count++;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 汉明半径标定：全部查询与本段每张存活人脸计算完整汉明距离和精确余弦 (不做任何粗筛)，
+     * 写入直方图，并更新各查询的最佳匹配 (查询人脸自身不计入)
+     *
+     * @param bestScores   各查询目前的最佳分数
+     * @param bestDistance 最佳分数对应的汉明距离
+     */
+    public void calibrate(int[] codes, float[] vectors, String[] ids, int count,
+                          HammingCalibration calibration, float[] bestScores, int[] bestDistance) {
+        lock.readLock().lock();
+        try {
+            if (released) return;
+            final int[] code = new int[CODE_WORDS];
+            final int[] inputCode = new int[CODE_WORDS];
+            final float[] input = new float[DIM];
+            for (int q = 0; q < count; q++) {
+                System.arraycopy(codes, q * CODE_WORDS, inputCode, 0, CODE_WORDS);
+                System.arraycopy(vectors, q * DIM, input, 0, DIM);
+                for (int face = 0; face < faceCount; face++) {
+                    if (faceIds[face] == null) continue;
+                    columns.readCode(face, code, 0);
+                    final int distance = Face303JavaCalcuater.binaDistance(inputCode, code);
+                    // 自身的汉明距离必为 0，只在此时比较 ID
+                    if (distance == 0 && faceIds[face].equals(ids[q])) continue;
+                    final float score = columns.compare(face, input);
+                    calibration.addPair(distance, score);
+                    if (score > bestScores[q]) {
+                        bestScores[q] = score;
+                        bestDistance[q] = distance;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getPersonCount() {
+        lock.readLock().lock();
+        try {
+            return personSlots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getFaceCount() {
+        lock.readLock().lock();
+        try {
+            return faceCount - deadFaces;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 本段各分组的人员数累加到 out
+     */
+    public void addGroupCardinalities(Map<String, Long> out) {
+        lock.readLock().lock();
+        try {
+            groupPostings.addCardinalities(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 估算本段内存占用（字节），仅统计大数组，包含堆外人脸列
+     */
+    public long estimateMemorySize() {
+        lock.readLock().lock();
+        try {
+            long bytes = columns.allocatedBytes() + (long) faceIds.length * 12 + (long) personIds.length * 24;
+            bytes += groupPostings.estimateMemorySize();
+            if (postings != null) {
+                bytes += (long) faceLists.length * 4 + postings.estimateMemorySize();
+            }
+            if (hnsw != null) {
+                bytes += hnsw.estimateMemorySize();
+            }
+            if (mih != null) {
+                bytes += mih.estimateMemorySize();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 释放人脸列 (分区迁出或特征库关闭时调用)
+     * 持有写锁，确保没有扫描线程仍在访问堆外内存
+     */
+    public void release() {
+        lock.writeLock().lock();
+        try {
+            if (released) return;
+            released = true;
+            columns.release();
+            personSlots.clear();
+            personCount = 0;
+            faceCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 单个查询在本段的扫描状态，共享扫描时跨块保留
+     * candidates 非空表示量化粗排 (阶段一)，精排在全部块扫描结束后进行
+     */
+    /**
+     * 索引检索的检查点：扣减新增的比对次数 (收集的候选数与 HNSW 图上的相似度计算)，检查取消、截止时间与预算
+     */
+    private static final class IndexCheckpoint implements HnswGraph.Checkpoint {
+
+        private final ScanQuery query;
+        private final TopNCollector collector;
+        // 已扣减预算的候选数
+        private int chargedCandidates;
+        private boolean stopped;
+
+        IndexCheckpoint(ScanQuery query, TopNCollector collector) {
+            this.query = query;
+            this.collector = collector;
+        }
+
+        /**
+         * 扣减收集到 candidates 个候选为止的比对次数，查询已停止时标记结果不完整并返回 true
+         */
+        boolean stopAtCandidates(int candidates) {
+            chargeCandidates(candidates);
+            return check();
+        }
+
+        void chargeCandidates(int candidates) {
+            if (query.getBudget() != null) {
+                query.getBudget().charge(candidates - chargedCandidates);
+            }
+            chargedCandidates = candidates;
+        }
+
+        @Override
+        public boolean stopAt(long evaluations) {
+            if (query.getBudget() != null) {
+                query.getBudget().charge(evaluations);
+            }
+            return check();
+        }
+
+        private boolean check() {
+            if (!stopped && query.isStopped()) {
+                stopped = true;
+                collector.markIncomplete();
+            }
+            return stopped;
+        }
+    }
+
+    private static final class ScanState {
+
+        final ScanQuery query;
+        final TopNCollector collector;
+        final long[] allowed;
+        final PersonMatch match;
+        final int[] selected;
+        final float[] scores;
+        final CandidateHeap candidates;
+        final float approxThreshold;
+
+        ScanState(ScanQuery query, TopNCollector collector, long[] allowed, boolean quantized) {
+            this.query = query;
+            this.collector = collector;
+            this.allowed = allowed;
+            this.match = new PersonMatch(query);
+            this.selected = new int[query.size()];
+            this.scores = new float[query.size()];
+            this.candidates = quantized ? new CandidateHeap(query.getRerankSize()) : null;
+            this.approxThreshold = Math.max(query.getThreshold(), collector.getDynamicThreshold()) - query.getRerankMargin();
+        }
+    }
+
+    /**
+     * 单个人员的匹配汇总，扫描期间复用同一实例
+     */
+    private static final class PersonMatch {
+
+        private final ScanQuery query;
+        private float effectiveThreshold;
+        private float maxPersonScore;
+        private String maxPersonFaceId;
+        private List<CompareResult.compareDetails> matchedDetails;
+
+        PersonMatch(ScanQuery query) {
+            this.query = query;
+        }
+
+        void reset(TopNCollector collector) {
+            // 获取当前有效阈值（用户阈值 vs 动态剪枝阈值，取较大者）
+            effectiveThreshold = Math.max(query.getThreshold(), collector.getDynamicThreshold());
+            maxPersonScore = -1.0f;
+            maxPersonFaceId = null;
+            matchedDetails = null;
+        }
+
+        float getEffectiveThreshold() {
+            return effectiveThreshold;
+        }
+
+        void add(int input, String faceId, float similarity) {
+            if (similarity > maxPersonScore) {
+                maxPersonScore = similarity;
+                maxPersonFaceId = faceId;
+            }
+            // 只有超过有效阈值，才创建详情对象
+            if (similarity >= effectiveThreshold) {
+                if (matchedDetails == null) {
+                    matchedDetails = new ArrayList<>(4);
+                }
+                CompareResult.compareDetails detail = new CompareResult.compareDetails();
+                detail.setFaceId1(query.getInputFaceId(input));
+                detail.setFaceId2(faceId);
+                detail.setScore(similarity);
+                detail.setMatched(true);
+                matchedDetails.add(detail);
+            }
+        }
+
+        void emit(String personId, TopNCollector collector) {
+            if (matchedDetails == null || maxPersonScore < query.getThreshold()) return;
+            CompareResult result = new CompareResult();
+            result.setPsnTmplNo(personId);
+            result.setScore(maxPersonScore);
+            result.setFaceId(maxPersonFaceId);
+            result.setMatched(true);
+            result.setDetails(matchedDetails);
+            collector.offer(result);
+        }
+    }
+
+}
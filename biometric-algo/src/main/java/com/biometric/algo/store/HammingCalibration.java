@@ -0,0 +1,114 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.util.Face303JavaCalcuater;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 汉明半径标定统计：以库内抽样人脸为查询，统计 (查询, 库内人脸) 对的汉明距离分布
+ *
+ * - pairs[d]:   汉明距离为 d 的人脸对数，累加后即各半径下通过粗筛、需要计算余弦的比例
+ * - matches[d]: 其中余弦 >= 阈值 (精确搜索会命中) 的对数，累加后即各半径下的召回率
+ * - top1[d]:    查询的精确最佳匹配 (排除自身) 的汉明距离，累加后即各半径下的 Top1 召回率
+ *
+ * 各成员只在本地数据上统计，直方图可直接相加合并。
+ */
+public class HammingCalibration implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BINS = Face303JavaCalcuater.MAX_HAM_DIST + 1;
+
+    private final float threshold;
+    private long queries;
+    private final long[] pairs = new long[BINS];
+    private final long[] matches = new long[BINS];
+    private final long[] top1 = new long[BINS];
+
+    public HammingCalibration(float threshold) {
+        this.threshold = threshold;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    void addQueries(int count) {
+        queries += count;
+    }
+
+    /**
+     * 记录一个人脸对
+     */
+    void addPair(int distance, float score) {
+        pairs[distance]++;
+        if (score >= threshold) {
+            matches[distance]++;
+        }
+    }
+
+    /**
+     * 记录一个查询的最佳匹配 (最佳分数低于阈值的查询不计入)
+     */
+    void addTop1(int distance) {
+        top1[distance]++;
+    }
+
+    public void merge(HammingCalibration other) {
+        queries += other.queries;
+        for (int d = 0; d < BINS; d++) {
+            pairs[d] += other.pairs[d];
+            matches[d] += other.matches[d];
+            top1[d] += other.top1[d];
+        }
+    }
+
+    /**
+     * 按给定半径输出通过率与召回率
+     */
+    public Map<String, Object> report(List<Integer> radii) {
+        long totalPairs = sum(pairs, Face303JavaCalcuater.MAX_HAM_DIST);
+        long totalMatches = sum(matches, Face303JavaCalcuater.MAX_HAM_DIST);
+        long totalTop1 = sum(top1, Face303JavaCalcuater.MAX_HAM_DIST);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Integer radius : radii) {
+            int r = Math.max(0, Math.min(radius, Face303JavaCalcuater.MAX_HAM_DIST));
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("radius", r);
+            row.put("passRate", ratio(sum(pairs, r), totalPairs));
+            row.put("recall", ratio(sum(matches, r), totalMatches));
+            row.put("top1Recall", ratio(sum(top1, r), totalTop1));
+            rows.add(row);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("threshold", threshold);
+        result.put("queries", queries);
+        result.put("pairs", totalPairs);
+        result.put("matches", totalMatches);
+        result.put("top1Matches", totalTop1);
+        result.put("radii", rows);
+        return result;
+    }
+
+    private static long sum(long[] hist, int radius) {
+        long total = 0;
+        for (int d = 0; d <= radius; d++) {
+            total += hist[d];
+        }
+        return total;
+    }
+
+    /**
+     * 分母为 0 时返回 null，避免把 "没有样本" 误报为 100% 召回
+     */
+    private static Double ratio(long part, long total) {
+        return total == 0 ? null : (double) part / total;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.biometric.algo.store;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+/**
+ * 分发到各成员执行的汉明半径标定任务，返回该成员本地数据上的统计
+ */
+public class HammingCalibrationTask implements Callable<HammingCalibration>, HazelcastInstanceAware, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int sampleSize;
+    private final float threshold;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    public HammingCalibrationTask(int sampleSize, float threshold) {
+        this.sampleSize = sampleSize;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public HammingCalibration call() {
+        return LocalFeatureStore.get(hazelcastInstance).calibrateHamming(sampleSize, threshold);
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.util.BinaryProjection;
+import com.biometric.algo.util.Face303JavaCalcuater;
+import com.biometric.algo.util.HalfFloat;
+import com.biometric.algo.util.VectorQuantizer;
+
+import java.util.Arrays;
+
+/**
+ * 堆内人脸列：连续 int[] 二进制特征 + 连续 float[] 浮点特征 (+ 连续 byte[] 量化特征 + 连续 long[] 长二进制特征)
+ *
+ * 半精度列以连续 short[] 保存 float16 位模式代替 float[]，浮点特征占用减半。
+ */
+public class HeapFaceColumns implements FaceColumns {
+
+    private static final int CODE_WORDS = FeatureSegment.CODE_WORDS;
+    private static final int DIM = FeatureSegment.DIM;
+
+    private final boolean quantized;
+    private final boolean half;
+    private final int longWords;
+
+    private int[] codes;
+    // 全精度列使用 vectors，半精度列使用 halfVectors，另一个为空数组
+    private float[] vectors;
+    private short[] halfVectors;
+    private byte[] quantizedVectors;
+    private float[] cosineFactors;
+    private long[] longCodes;
+
+    public HeapFaceColumns(int initialFaces, boolean quantized, int longCodeWords, boolean half) {
+        this.quantized = quantized;
+        this.half = half;
+        this.longWords = longCodeWords;
+        this.longCodes = new long[initialFaces * longCodeWords];
+        this.codes = new int[initialFaces * CODE_WORDS];
+        this.vectors = new float[half ? 0 : initialFaces * DIM];
+        this.halfVectors = new short[half ? initialFaces * DIM : 0];
+        if (quantized) {
+            this.quantizedVectors = new byte[initialFaces * DIM];
+            this.cosineFactors = new float[initialFaces];
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return codes.length / CODE_WORDS;
+    }
+
+    @Override
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    @Override
+    public boolean isHalf() {
+        return half;
+    }
+
+    @Override
+    public int longCodeWords() {
+        return longWords;
+    }
+
+    @Override
+    public void ensureCapacity(int faces) {
+        if (faces <= capacity()) return;
+        codes = Arrays.copyOf(codes, faces * CODE_WORDS);
+        if (half) {
+            halfVectors = Arrays.copyOf(halfVectors, faces * DIM);
+        } else {
+            vectors = Arrays.copyOf(vectors, faces * DIM);
+        }
+        if (quantized) {
+            quantizedVectors = Arrays.copyOf(quantizedVectors, faces * DIM);
+            cosineFactors = Arrays.copyOf(cosineFactors, faces);
+        }
+        longCodes = Arrays.copyOf(longCodes, faces * longWords);
+    }
+
+    @Override
+    public void write(int face, int[] binaryFeature, float[] featureVector, byte[] quantizedVector, float cosineFactor,
+                      long[] longCode) {
+        System.arraycopy(binaryFeature, 0, codes, face * CODE_WORDS, CODE_WORDS);
+        if (half) {
+            for (int d = 0, v = face * DIM; d < DIM; d++, v++) {
+                halfVectors[v] = HalfFloat.fromFloat(featureVector[d]);
+            }
+        } else {
+            System.arraycopy(featureVector, 0, vectors, face * DIM, DIM);
+        }
+        if (quantized) {
+            System.arraycopy(quantizedVector, 0, quantizedVectors, face * DIM, DIM);
+            cosineFactors[face] = cosineFactor;
+        }
+        if (longWords > 0) {
+            System.arraycopy(longCode, 0, longCodes, face * longWords, longWords);
+        }
+    }
+
+    @Override
+    public void move(int from, int to, int count) {
+        if (from == to || count == 0) return;
+        System.arraycopy(codes, from * CODE_WORDS, codes, to * CODE_WORDS, count * CODE_WORDS);
+        if (half) {
+            System.arraycopy(halfVectors, from * DIM, halfVectors, to * DIM, count * DIM);
+        } else {
+            System.arraycopy(vectors, from * DIM, vectors, to * DIM, count * DIM);
+        }
+        if (quantized) {
+            System.arraycopy(quantizedVectors, from * DIM, quantizedVectors, to * DIM, count * DIM);
+            System.arraycopy(cosineFactors, from, cosineFactors, to, count);
+        }
+        System.arraycopy(longCodes, from * longWords, longCodes, to * longWords, count * longWords);
+    }
+
+    @Override
+    public void readCode(int face, int[] out, int outOffset) {
+        System.arraycopy(codes, face * CODE_WORDS, out, outOffset, CODE_WORDS);
+    }
+
+    @Override
+    public void readVector(int face, float[] out) {
+        if (half) {
+            for (int d = 0, v = face * DIM; d < DIM; d++, v++) {
+                out[d] = HalfFloat.toFloat(halfVectors[v]);
+            }
+        } else {
+            System.arraycopy(vectors, face * DIM, out, 0, DIM);
+        }
+    }
+
+    @Override
+    public float compare(int face, float[] input) {
+        if (half) {
+            return Face303JavaCalcuater.dotHalf(input, halfVectors, face * DIM);
+        }
+        return Face303JavaCalcuater.dot(input, vectors, face * DIM);
+    }
+
+    @Override
+    public int filterBinaFeat(int face, int[] inputCodes, int inputSize, int hamDist, int[] selected) {
+        final int c = face * CODE_WORDS;
+        return Face303JavaCalcuater.filterBinaFeat(inputCodes, inputSize,
+                codes[c], codes[c + 1], codes[c + 2], codes[c + 3], hamDist, selected);
+    }
+
+    @Override
+    public int filterLongCode(int face, long[] inputCodes, int radius, int[] selected, int count) {
+        final int c = face * longWords;
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            final int i = selected[k];
+            if (BinaryProjection.distance(inputCodes, i * longWords, longCodes, c, longWords) <= radius) {
+                selected[kept++] = i;
+            }
+        }
+        return kept;
+    }
+
+    @Override
+    public void compareBlock(int face, float[] inputs, int[] selected, int count, float[] scores) {
+        if (half) {
+            Face303JavaCalcuater.dotBlockHalf(inputs, DIM, selected, count, halfVectors, face * DIM, scores);
+        } else {
+            Face303JavaCalcuater.dotBlock(inputs, DIM, selected, count, vectors, face * DIM, scores);
+        }
+    }
+
+    @Override
+    public float compareBounded(int face, float[] inputs, float[] suffix, int input, float threshold) {
+        final int s = input * (DIM / Face303JavaCalcuater.BOUND_CHUNK);
+        if (half) {
+            return Face303JavaCalcuater.dotBoundedHalf(inputs, input * DIM, suffix, s, DIM,
+                    halfVectors, face * DIM, threshold);
+        }
+        return Face303JavaCalcuater.dotBounded(inputs, input * DIM, suffix, s, DIM, vectors, face * DIM, threshold);
+    }
+
+    @Override
+    public float approxCompare(int face, byte[] input, float inputCosineFactor) {
+        return VectorQuantizer.dot(input, quantizedVectors, face * DIM) * inputCosineFactor * cosineFactors[face];
+    }
+
+    @Override
+    public long allocatedBytes() {
+        long bytes = (long) codes.length * 4 + (long) vectors.length * 4 + (long) halfVectors.length * 2;
+        if (quantized) {
+            bytes += quantizedVectors.length + (long) cosineFactors.length * 4;
+        }
+        bytes += (long) longCodes.length * 8;
+        return bytes;
+    }
+
+    @Override
+    public void release() {
+        codes = new int[0];
+        vectors = new float[0];
+        halfVectors = new short[0];
+        if (quantized) {
+            quantizedVectors = new byte[0];
+            cosineFactors = new float[0];
+        }
+        longCodes = new long[0];
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.biometric.algo.store;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 分发到各成员执行的 IVF 索引训练任务，返回该成员的训练统计
+ */
+public class IvfTrainTask implements Callable<Map<String, Object>>, HazelcastInstanceAware, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public Map<String, Object> call() {
+        return LocalFeatureStore.get(hazelcastInstance).trainIvf();
+    }
+
+}
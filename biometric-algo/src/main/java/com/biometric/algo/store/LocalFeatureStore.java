@@ -0,0 +1,710 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.dto.CompareParams;
+import com.biometric.algo.dto.CompareResult;
+import com.biometric.algo.dto.PersonFaceData;
+import com.biometric.algo.dto.SearchEngine;
+import com.biometric.algo.dto.SearchResult;
+import com.biometric.algo.index.IvfCentroids;
+import com.biometric.algo.service.FaceCacheService;
+import com.biometric.algo.util.BinaryProjection;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.MapEvent;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.map.listener.MapClearedListener;
+import com.hazelcast.partition.MigrationListener;
+import com.hazelcast.partition.MigrationState;
+import com.hazelcast.partition.Partition;
+import com.hazelcast.partition.PartitionService;
+import com.hazelcast.partition.ReplicaMigrationEvent;
+import com.hazelcast.query.Predicates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 成员本地列式特征库
+ *
+ * 按分区维护 FeatureSegment，只保存本成员拥有 (primary) 的分区：
+ * - 本地 Entry 监听器同步增删改
+ * - 分区迁移完成后对账：加载新拥有的分区，丢弃已迁出的分区
+ *
+ * 1:N 搜索直接扫描列式数组，避免 IMap(BINARY) 聚合时逐条反序列化 PersonFaceData。
+ * 人脸列可放在堆外 (DIRECT/MAPPED)，大幅缩小堆并消除海量小数组带来的 GC 停顿。
+ * 可选的 IVF 倒排索引由本成员数据训练，供近似搜索只扫描最近的若干聚类；
+ * 可选的 HNSW 图索引随数据写入增量构建，供低延迟近似搜索使用。
+ */
+@Service
+public class LocalFeatureStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalFeatureStore.class);
+
+    public static final String USER_CONTEXT_KEY = "biometric.localFeatureStore";
+
+    private static final int RELOAD_BATCH_SIZE = 1000;
+    // 每个聚类至少需要的训练样本数，样本不足时自动减少聚类数
+    private static final int MIN_POINTS_PER_LIST = 39;
+    private static final long IVF_SEED = 20240601L;
+
+    // 列式特征库是 IMap 之外的第二份特征副本，需显式开启
+    @Value("${biometric.store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${biometric.store.storage:HEAP}")
+    private StorageType storageType;
+
+    @Value("${biometric.store.mapped-dir:./data/segments}")
+    private String mappedDir;
+
+    // int8 量化粗排 + 浮点精排，近似检索需显式开启
+    @Value("${biometric.store.quantized:false}")
+    private boolean quantized;
+
+    // 人脸列中的浮点特征以 float16 保存，未配置时跟随加载阶段的半精度开关
+    @Value("${biometric.store.half-precision:${biometric.face-loader.half-precision:false}}")
+    private boolean halfPrecision;
+
+    @Value("${biometric.store.rerank-size:256}")
+    private int rerankSize;
+
+    @Value("${biometric.store.rerank-margin:0.05}")
+    private float rerankMargin;
+
+    // IVF 倒排索引
+    @Value("${biometric.store.ivf.lists:1024}")
+    private int ivfLists;
+
+    @Value("${biometric.store.ivf.iterations:10}")
+    private int ivfIterations;
+
+    @Value("${biometric.store.ivf.sample-size:200000}")
+    private int ivfSampleSize;
+
+    @Value("${biometric.store.ivf.nprobe:16}")
+    private int ivfNprobe;
+
+    // HNSW 图索引：开启后每张人脸额外占用约 (2M + 1) * 4 字节
+    @Value("${biometric.store.hnsw.enabled:false}")
+    private boolean hnswEnabled;
+
+    @Value("${biometric.store.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${biometric.store.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${biometric.store.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    // 二进制特征多索引哈希：汉明半径 <= 8 * (max-sub-radius + 1) - 1 时查桶代替逐条粗筛
+    @Value("${biometric.store.mih.enabled:true}")
+    private boolean mihEnabled;
+
+    @Value("${biometric.store.mih.min-faces:4096}")
+    private int mihMinFaces;
+
+    @Value("${biometric.store.mih.max-sub-radius:3}")
+    private int mihMaxSubRadius;
+
+    // 长二进制特征位数 (256/512)，0 表示不启用；加载端使用同一配置预先编码
+    @Value("${biometric.store.long-code.bits:0}")
+    private int longCodeBits;
+    // longCodeBits 对应的编码器，启动时构造一次，分区段与各次查询共用；未启用时为 null
+    private BinaryProjection projection;
+
+    // 余弦精筛按分块部分和提前放弃不可能达到当前阈值的候选
+    @Value("${biometric.store.early-abandon:true}")
+    private boolean earlyAbandon;
+
+    private File segmentDir;
+
+    // 当前生效的 IVF 聚类中心，未训练时为 null
+    private volatile IvfCentroids ivfCentroids;
+
+    private final HazelcastInstance hazelcastInstance;
+    private final IMap<String, PersonFaceData> faceFeatureMap;
+    private final PartitionService partitionService;
+    // 分区段并行扫描使用的成员本地搜索线程池
+    private final MemberSearchExecutor searchExecutor;
+
+    private final Map<Integer, FeatureSegment> segments = new ConcurrentHashMap<>();
+    // 已完成全量加载的分区；仅依靠事件创建的分区段仍需对账补齐
+    private final Set<Integer> loadedPartitions = ConcurrentHashMap.newKeySet();
+
+    // 全量加载期间收到事件的键 → 事件序号：加载只写入取快照之后没有新事件的键，
+    // 避免旧快照覆盖监听器已写入的新值或恢复已删除的人员；加载结束后清空
+    private final Map<String, Long> reloadEvents = new ConcurrentHashMap<>();
+    private final AtomicLong eventSequence = new AtomicLong();
+    private volatile boolean reloading;
+
+    // 对账任务串行执行，避免与迁移事件交错
+    private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "FeatureStoreSync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Autowired
+    public LocalFeatureStore(HazelcastInstance hazelcastInstance, FaceCacheService faceCacheService,
+                             MemberSearchExecutor searchExecutor) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.faceFeatureMap = faceCacheService.getFaceFeatureMap();
+        this.partitionService = hazelcastInstance.getPartitionService();
+        this.searchExecutor = searchExecutor;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("列式特征库未启用，1:N 搜索使用 IMap 聚合");
+            return;
+        }
+        if (storageType == StorageType.MAPPED) {
+            segmentDir = prepareSegmentDir();
+        }
+        projection = longCodeBits > 0 ? BinaryProjection.of(longCodeBits) : null;
+        hazelcastInstance.getUserContext().put(USER_CONTEXT_KEY, this);
+        faceFeatureMap.addLocalEntryListener(new StoreEntryListener(), Predicates.alwaysTrue(), true);
+        partitionService.addMigrationListener(new StoreMigrationListener());
+
+        // 启动时对账一次，覆盖重启或晚加入集群的场景
+        syncExecutor.submit(this::reconcile);
+        log.info("列式特征库已启用, 存储方式: {}, 量化精排: {}, 半精度: {}, HNSW: {}", storageType, quantized, halfPrecision,
+                hnswEnabled ? "M=" + hnswM + ", efConstruction=" + hnswEfConstruction : "关闭");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        syncExecutor.shutdownNow();
+        releaseAll();
+    }
+
+    /**
+     * 段文件只在进程生命周期内有效，启动时清理上次遗留的文件
+     */
+    private File prepareSegmentDir() {
+        File dir = new File(mappedDir);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("无法创建特征段目录: " + dir.getAbsolutePath());
+        }
+        File[] stale = dir.listFiles((d, name) -> name.startsWith("partition-"));
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+        log.info("特征段文件目录: {}", dir.getAbsolutePath());
+        return dir;
+    }
+
+    private FeatureSegment newSegment(int partitionId) {
+        int longCodeWords = projection != null ? projection.getWords() : 0;
+        FaceColumns columns;
+        switch (storageType) {
+            case DIRECT:
+                columns = new OffHeapFaceColumns(partitionId, FeatureSegment.INITIAL_FACES, quantized, longCodeWords,
+                        halfPrecision, null);
+                break;
+            case MAPPED:
+                columns = new OffHeapFaceColumns(partitionId, FeatureSegment.INITIAL_FACES, quantized, longCodeWords,
+                        halfPrecision, segmentDir);
+                break;
+            default:
+                columns = new HeapFaceColumns(FeatureSegment.INITIAL_FACES, quantized, longCodeWords, halfPrecision);
+        }
+        FeatureSegment segment = new FeatureSegment(partitionId, columns);
+        if (projection != null) {
+            segment.enableLongCode(projection);
+        }
+        if (hnswEnabled) {
+            segment.enableHnsw(hnswM, hnswEfConstruction);
+        }
+        if (mihEnabled) {
+            segment.enableMih(mihMinFaces, mihMaxSubRadius);
+        }
+        IvfCentroids centroids = ivfCentroids;
+        if (centroids != null) {
+            segment.applyIvf(centroids);
+        }
+        return segment;
+    }
+
+    private void dropSegment(int partitionId) {
+        FeatureSegment segment = segments.remove(partitionId);
+        loadedPartitions.remove(partitionId);
+        if (segment != null) {
+            segment.release();
+        }
+    }
+
+    private void releaseAll() {
+        for (Integer partitionId : new ArrayList<>(segments.keySet())) {
+            FeatureSegment segment = segments.remove(partitionId);
+            if (segment != null) {
+                segment.release();
+            }
+        }
+    }
+
+    /**
+     * 从成员用户上下文中获取本地特征库 (供分布式任务使用)
+     */
+    public static LocalFeatureStore get(HazelcastInstance instance) {
+        Object store = instance.getUserContext().get(USER_CONTEXT_KEY);
+        if (store == null) {
+            throw new IllegalStateException("当前成员未启用列式特征库");
+        }
+        return (LocalFeatureStore) store;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ================== 搜索 ==================
+
+    /**
+     * 扫描本成员全部分区段，返回本地 TopN
+     */
+    public List<CompareResult> search(CompareParams params) {
+        return search(params, null).getResults();
+    }
+
+    /**
+     * 只扫描给定分区中由本成员持有的分区段，partitionIds 为 null 时扫描全部；
+     * 返回本地 TopN 及覆盖统计，预算用尽时剩余分区段不再扫描
+     */
+    public SearchResult search(CompareParams params, Set<Integer> partitionIds) {
+        ScanQuery query = prepare(params);
+        if (query.size() == 0) return SearchResult.of(Collections.emptyList());
+
+        List<FeatureSegment> targets = new ArrayList<>(segments.values());
+        if (partitionIds != null) {
+            targets.removeIf(segment -> !partitionIds.contains(segment.getPartitionId()));
+        }
+        List<TopNCollector> partials = searchExecutor.map(targets, segment -> {
+            TopNCollector collector = new TopNCollector(query.getTopN());
+            // 已取消、超时或预算用尽的查询不再扫描剩余分区段
+            if (query.isStopped()) {
+                collector.markIncomplete();
+            } else {
+                segment.search(query, collector);
+            }
+            return collector;
+        });
+
+        return merge(query, partials);
+    }
+
+    /**
+     * 合并各分区段的 TopN 与覆盖统计
+     */
+    private static SearchResult merge(ScanQuery query, List<TopNCollector> partials) {
+        TopNCollector merged = new TopNCollector(query.getTopN());
+        int scanned = 0;
+        for (TopNCollector partial : partials) {
+            merged.merge(partial);
+            if (partial.isComplete()) scanned++;
+        }
+        SearchResult result = SearchResult.of(merged.toSortedList());
+        result.setComplete(merged.isComplete());
+        result.setPartitions(partials.size());
+        result.setPartitionsScanned(scanned);
+        result.setCandidates(merged.getCandidates());
+        result.setEvaluations(merged.getEvaluations());
+        return result;
+    }
+
+    /**
+     * 共享扫描一批并发查询：每个分区段只遍历一次，段内按块交替求值全部查询，
+     * 返回与 paramsList 一一对应的本地 TopN 及覆盖统计
+     */
+    public List<SearchResult> searchBatch(List<CompareParams> paramsList) {
+        List<ScanQuery> queries = new ArrayList<>(paramsList.size());
+        for (CompareParams params : paramsList) {
+            queries.add(prepare(params));
+        }
+        List<ScanQuery> active = new ArrayList<>(queries.size());
+        for (ScanQuery query : queries) {
+            if (query.size() > 0) active.add(query);
+        }
+
+        List<List<TopNCollector>> partials = searchExecutor.map(new ArrayList<>(segments.values()), segment -> {
+            List<TopNCollector> collectors = new ArrayList<>(active.size());
+            for (ScanQuery query : active) {
+                collectors.add(new TopNCollector(query.getTopN()));
+            }
+            segment.searchShared(active, collectors);
+            return collectors;
+        });
+
+        List<SearchResult> results = new ArrayList<>(queries.size());
+        int q = 0;
+        for (ScanQuery query : queries) {
+            if (query.size() == 0) {
+                results.add(SearchResult.of(Collections.emptyList()));
+                continue;
+            }
+            List<TopNCollector> collectors = new ArrayList<>(partials.size());
+            for (List<TopNCollector> partial : partials) {
+                collectors.add(partial.get(q));
+            }
+            results.add(merge(query, collectors));
+            q++;
+        }
+        return results;
+    }
+
+    /**
+     * 请求参数转为扫描查询，并按特征库配置附加量化精排、长编码、提前放弃与索引探查参数
+     */
+    private ScanQuery prepare(CompareParams params) {
+        ScanQuery query = ScanQuery.from(params);
+        if (query.size() == 0) return query;
+        if (quantized) {
+            query.withRerank(Math.max(rerankSize, query.getTopN()), rerankMargin);
+        }
+        if (projection != null) {
+            query.withLongCode(projection);
+        }
+        if (earlyAbandon) {
+            query.withEarlyAbandon();
+        }
+        if (query.getEngine() == SearchEngine.IVF) {
+            IvfCentroids centroids = ivfCentroids;
+            if (centroids != null) {
+                query.withIvf(centroids, query.getNprobe() > 0 ? query.getNprobe() : ivfNprobe);
+            } else {
+                log.debug("IVF 索引尚未训练，退回全量扫描");
+            }
+        } else if (query.getEngine() == SearchEngine.HNSW) {
+            if (hnswEnabled) {
+                query.withHnsw(query.getEfSearch() > 0 ? query.getEfSearch() : hnswEfSearch);
+            } else {
+                log.debug("HNSW 索引未启用，退回全量扫描");
+            }
+        }
+        return query;
+    }
+
+    // ================== IVF 索引 ==================
+
+    /**
+     * 从本成员数据抽样训练 IVF 聚类中心，并重建全部分区段的倒排表
+     * 训练期间搜索不受影响，各分区段在倒排表就绪前继续全量扫描
+     */
+    public synchronized Map<String, Object> trainIvf() {
+        long startTime = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        List<FeatureSegment> snapshot = new ArrayList<>(segments.values());
+        long totalFaces = 0;
+        for (FeatureSegment segment : snapshot) {
+            totalFaces += segment.getFaceCount();
+        }
+        int target = (int) Math.min(totalFaces, ivfSampleSize);
+        int step = (int) Math.max(1, totalFaces / Math.max(1, target));
+        float[] samples = new float[target * FeatureSegment.DIM];
+        int count = 0;
+        for (FeatureSegment segment : snapshot) {
+            if (count >= target) break;
+            count += segment.sampleVectors(step, samples, count, target - count);
+        }
+
+        int lists = Math.min(ivfLists, count / MIN_POINTS_PER_LIST);
+        if (lists < 1) {
+            result.put("trained", false);
+            result.put("message", "训练样本不足: " + count);
+            return result;
+        }
+
+        IvfCentroids centroids = IvfCentroids.train(samples, count, FeatureSegment.DIM, lists, ivfIterations, IVF_SEED);
+        long trainTime = System.currentTimeMillis() - startTime;
+        ivfCentroids = centroids;
+        // 第二轮覆盖训练期间新建的分区段，已是最新中心的分区段直接跳过
+        for (int round = 0; round < 2; round++) {
+            new ArrayList<>(segments.values()).parallelStream().forEach(segment -> segment.applyIvf(centroids));
+        }
+
+        long totalTime = System.currentTimeMillis() - startTime;
+        log.info("IVF 索引训练完成: lists={}, samples={}, 训练耗时 {}ms, 总耗时 {}ms",
+                lists, count, trainTime, totalTime);
+        result.put("trained", true);
+        result.put("lists", lists);
+        result.put("samples", count);
+        result.put("faces", totalFaces);
+        result.put("trainMillis", trainTime);
+        result.put("totalMillis", totalTime);
+        return result;
+    }
+
+    // ================== 汉明半径标定 ==================
+
+    /**
+     * 从本成员数据抽样 sampleSize 张人脸作为查询，与本成员全部人脸做无粗筛的精确比对，
+     * 统计各汉明半径下的粗筛通过率与召回率
+     * 耗时约为 sampleSize 次全量精确扫描，仅用于离线标定
+     */
+    public HammingCalibration calibrateHamming(int sampleSize, float threshold) {
+        long startTime = System.currentTimeMillis();
+        HammingCalibration calibration = new HammingCalibration(threshold);
+
+        List<FeatureSegment> snapshot = new ArrayList<>(segments.values());
+        long totalFaces = 0;
+        for (FeatureSegment segment : snapshot) {
+            totalFaces += segment.getFaceCount();
+        }
+        int target = (int) Math.min(totalFaces, Math.max(sampleSize, 0));
+        int step = (int) Math.max(1, totalFaces / Math.max(1, target));
+        int[] codes = new int[target * FeatureSegment.CODE_WORDS];
+        float[] vectors = new float[target * FeatureSegment.DIM];
+        String[] ids = new String[target];
+        int count = 0;
+        for (FeatureSegment segment : snapshot) {
+            if (count >= target) break;
+            count += segment.sampleFaces(step, codes, vectors, ids, count, target - count);
+        }
+        if (count == 0) return calibration;
+
+        float[] bestScores = new float[count];
+        Arrays.fill(bestScores, -1.0f);
+        int[] bestDistance = new int[count];
+        for (FeatureSegment segment : snapshot) {
+            segment.calibrate(codes, vectors, ids, count, calibration, bestScores, bestDistance);
+        }
+        calibration.addQueries(count);
+        for (int q = 0; q < count; q++) {
+            if (bestScores[q] >= threshold) {
+                calibration.addTop1(bestDistance[q]);
+            }
+        }
+
+        log.info("汉明半径标定完成: queries={}, faces={}, 耗时 {}ms",
+                count, totalFaces, System.currentTimeMillis() - startTime);
+        return calibration;
+    }
+
+    // ================== 同步 ==================
+
+    /**
+     * 缓存键所在分区 (分组共置的键按 @ 之后的分区键计算)
+     */
+    private int partitionOf(String key) {
+        return partitionService.getPartition(FaceCacheService.partitionKeyOf(key)).getPartitionId();
+    }
+
+    private void upsert(String key, PersonFaceData data) {
+        if (data == null) {
+            remove(key);
+            return;
+        }
+        segments.computeIfAbsent(partitionOf(key), this::newSegment).put(data);
+    }
+
+    private void remove(String key) {
+        FeatureSegment segment = segments.get(partitionOf(key));
+        if (segment != null) {
+            segment.remove(FaceCacheService.personIdOf(key));
+        }
+    }
+
+    /**
+     * 对账：丢弃非本成员拥有的分区，全量加载新拥有但尚未加载的分区
+     */
+    private void reconcile() {
+        try {
+            Set<Integer> owned = new HashSet<>();
+            for (Partition partition : partitionService.getPartitions()) {
+                if (partition.getOwner() != null && partition.getOwner().localMember()) {
+                    owned.add(partition.getPartitionId());
+                }
+            }
+
+            for (Integer partitionId : new ArrayList<>(segments.keySet())) {
+                if (!owned.contains(partitionId)) {
+                    dropSegment(partitionId);
+                }
+            }
+            loadedPartitions.retainAll(owned);
+
+            Set<Integer> missing = new HashSet<>(owned);
+            missing.removeAll(loadedPartitions);
+            if (!missing.isEmpty()) {
+                reloadPartitions(missing);
+            }
+        } catch (Exception e) {
+            log.error("列式特征库对账失败", e);
+        }
+    }
+
+    private void reloadPartitions(Set<Integer> partitionIds) {
+        long startTime = System.currentTimeMillis();
+        List<String> batch = new ArrayList<>(RELOAD_BATCH_SIZE);
+        int loaded = 0;
+
+        reloading = true;
+        try {
+            for (String key : faceFeatureMap.localKeySet()) {
+                if (!partitionIds.contains(partitionOf(key))) continue;
+                batch.add(key);
+                if (batch.size() >= RELOAD_BATCH_SIZE) {
+                    loaded += reloadBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                loaded += reloadBatch(batch);
+            }
+        } finally {
+            reloading = false;
+            reloadEvents.clear();
+        }
+        loadedPartitions.addAll(partitionIds);
+
+        log.info("列式特征库加载 {} 个分区, {} 人, 耗时 {}ms",
+                partitionIds.size(), loaded, System.currentTimeMillis() - startTime);
+    }
+
+    private int reloadBatch(List<String> keys) {
+        // 序号在读取快照之前取得：此后到达的事件对应的修改可能晚于快照
+        long snapshot = eventSequence.get();
+        Map<String, PersonFaceData> values = faceFeatureMap.getAll(new HashSet<>(keys));
+        for (Map.Entry<String, PersonFaceData> entry : values.entrySet()) {
+            reloadEvents.compute(entry.getKey(), (key, sequence) -> {
+                if (sequence == null || sequence <= snapshot) {
+                    upsert(key, entry.getValue());
+                }
+                return sequence;
+            });
+        }
+        return values.size();
+    }
+
+    /**
+     * 应用监听器事件 (data 为 null 表示删除)；全量加载期间与加载按键互斥并登记事件序号
+     */
+    private void applyEvent(String key, PersonFaceData data) {
+        if (!reloading) {
+            upsert(key, data);
+            return;
+        }
+        long sequence = eventSequence.incrementAndGet();
+        reloadEvents.compute(key, (k, previous) -> {
+            upsert(k, data);
+            return sequence;
+        });
+    }
+
+    // ================== 统计 ==================
+
+    public Map<String, Object> getStats() {
+        long persons = 0, faces = 0, bytes = 0;
+        for (FeatureSegment segment : segments.values()) {
+            persons += segment.getPersonCount();
+            faces += segment.getFaceCount();
+            bytes += segment.estimateMemorySize();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("storage", storageType);
+        stats.put("quantized", quantized);
+        stats.put("halfPrecision", halfPrecision);
+        stats.put("partitions", segments.size());
+        stats.put("persons", persons);
+        stats.put("faces", faces);
+        stats.put("memoryMB", bytes / (1024 * 1024));
+        IvfCentroids centroids = ivfCentroids;
+        stats.put("ivfLists", centroids == null ? 0 : centroids.getLists());
+        stats.put("hnsw", hnswEnabled);
+        stats.put("mih", mihEnabled);
+        stats.put("longCodeBits", longCodeBits);
+        stats.put("earlyAbandon", earlyAbandon);
+        return stats;
+    }
+
+    /**
+     * 查询规划统计：本成员各分区段的规模、索引状态与分组人员数
+     */
+    public PlannerStatistics plannerStatistics() {
+        IvfCentroids centroids = ivfCentroids;
+        PlannerStatistics stats = new PlannerStatistics(centroids == null ? 0 : centroids.getLists(), ivfNprobe,
+                hnswEnabled, hnswM, hnswEfSearch);
+        for (FeatureSegment segment : new ArrayList<>(segments.values())) {
+            stats.addSegment(segment);
+        }
+        return stats;
+    }
+
+    // ================== 监听器 ==================
+
+    private class StoreEntryListener implements EntryAddedListener<String, PersonFaceData>,
+            EntryUpdatedListener<String, PersonFaceData>, EntryRemovedListener<String, PersonFaceData>,
+            EntryEvictedListener<String, PersonFaceData>, MapClearedListener {
+
+        @Override
+        public void entryAdded(EntryEvent<String, PersonFaceData> event) {
+            applyEvent(event.getKey(), event.getValue());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<String, PersonFaceData> event) {
+            applyEvent(event.getKey(), event.getValue());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<String, PersonFaceData> event) {
+            applyEvent(event.getKey(), null);
+        }
+
+        @Override
+        public void entryEvicted(EntryEvent<String, PersonFaceData> event) {
+            applyEvent(event.getKey(), null);
+        }
+
+        @Override
+        public void mapCleared(MapEvent event) {
+            releaseAll();
+        }
+    }
+
+    private class StoreMigrationListener implements MigrationListener {
+
+        @Override
+        public void migrationStarted(MigrationState state) {
+        }
+
+        @Override
+        public void migrationFinished(MigrationState state) {
+            syncExecutor.submit(LocalFeatureStore.this::reconcile);
+        }
+
+        @Override
+        public void replicaMigrationCompleted(ReplicaMigrationEvent event) {
+            // 主副本迁出本成员时立即释放内存，迁入的分区统一在 migrationFinished 后对账加载
+            if (event.getReplicaIndex() == 0 && event.getSource() != null && event.getSource().localMember()) {
+                dropSegment(event.getPartitionId());
+            }
+        }
+
+        @Override
+        public void replicaMigrationFailed(ReplicaMigrationEvent event) {
+        }
+    }
+
+}
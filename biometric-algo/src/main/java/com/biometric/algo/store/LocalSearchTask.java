@@ -0,0 +1,86 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.config.BiometricDataSerializableFactory;
+import com.biometric.algo.dto.CompareParams;
+import com.biometric.algo.dto.SearchResult;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * 分发到各成员执行的本地搜索任务，返回该成员的 TopN 及覆盖统计
+ * 指定分区时只扫描这些分区 (分组共置下的分组检索)，否则扫描成员持有的全部分区
+ */
+public class LocalSearchTask implements Callable<SearchResult>, HazelcastInstanceAware, IdentifiedDataSerializable {
+
+    private CompareParams params;
+    private HashSet<Integer> partitionIds;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    /**
+     * 反序列化使用
+     */
+    public LocalSearchTask() {
+    }
+
+    public LocalSearchTask(CompareParams params) {
+        this(params, null);
+    }
+
+    public LocalSearchTask(CompareParams params, Set<Integer> partitionIds) {
+        this.params = params;
+        this.partitionIds = partitionIds == null ? null : new HashSet<>(partitionIds);
+    }
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public SearchResult call() {
+        try {
+            return LocalFeatureStore.get(hazelcastInstance).search(params, partitionIds);
+        } finally {
+            QueryScope.release(params.getQueryId());
+        }
+    }
+
+    @Override
+    public int getFactoryId() {
+        return BiometricDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return BiometricDataSerializableFactory.ID_LOCAL_SEARCH_TASK;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        params.writeData(out);
+        out.writeIntArray(partitionIds == null ? null : partitionIds.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        params = new CompareParams();
+        params.readData(in);
+        int[] ids = in.readIntArray();
+        if (ids != null) {
+            partitionIds = new HashSet<>(ids.length * 2);
+            for (int id : ids) {
+                partitionIds.add(id);
+            }
+        }
+    }
+
+}
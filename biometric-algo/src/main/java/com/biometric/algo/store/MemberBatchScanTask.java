@@ -0,0 +1,77 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.config.BiometricDataSerializableFactory;
+import com.biometric.algo.dto.CompareParams;
+import com.biometric.algo.dto.SearchResult;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 分发到各成员执行的批量 IMap 本地扫描任务 (列式特征库未启用时)：
+ * 一批并发查询共享一次扫描，返回与查询一一对应的该成员 TopN 及覆盖统计
+ */
+public class MemberBatchScanTask implements Callable<List<SearchResult>>, HazelcastInstanceAware,
+        IdentifiedDataSerializable {
+
+    private ArrayList<CompareParams> paramsList;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    /**
+     * 反序列化使用
+     */
+    public MemberBatchScanTask() {
+    }
+
+    public MemberBatchScanTask(List<CompareParams> paramsList) {
+        this.paramsList = new ArrayList<>(paramsList);
+    }
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public List<SearchResult> call() {
+        return MemberSearchExecutor.get(hazelcastInstance).scanBatch(paramsList);
+    }
+
+    @Override
+    public int getFactoryId() {
+        return BiometricDataSerializableFactory.FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return BiometricDataSerializableFactory.ID_MEMBER_BATCH_SCAN_TASK;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeInt(paramsList.size());
+        for (CompareParams params : paramsList) {
+            params.writeData(out);
+        }
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        int size = in.readInt();
+        paramsList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CompareParams params = new CompareParams();
+            params.readData(in);
+            paramsList.add(params);
+        }
+    }
+
+}
@@ -0,0 +1,316 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.aggregator.BatchFaceRecogAggregator;
+import com.biometric.algo.aggregator.FaceRecogAggregator;
+import com.biometric.algo.dto.CompareParams;
+import com.biometric.algo.dto.CompareResult;
+import com.biometric.algo.dto.PersonFaceData;
+import com.biometric.algo.dto.SearchResult;
+import com.biometric.algo.service.FaceCacheService;
+import com.hazelcast.aggregation.Aggregator;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.impl.proxy.MapProxyImpl;
+import com.hazelcast.partition.Partition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 成员本地搜索执行器
+ *
+ * 1:N 搜索在成员上的并行扫描统一使用独立线程池，不再占用公共 ForkJoinPool (parallelStream)，
+ * 并行度可单独配置；调用线程 (Hazelcast 执行器线程) 同样参与扫描，线程池繁忙时不会空等。
+ *
+ * 列式特征库未启用时提供 IMap 路径的成员本地扫描：按本成员持有的分区逐分区分批读取记录，
+ * 在本地线程池上打分，结果与覆盖统计直接返回调用方合并，不经过 IMap.aggregate 的通用聚合流程，
+ * 取消、截止时间与预算在分区之间及每批记录之间检查。
+ */
+@Service
+public class MemberSearchExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberSearchExecutor.class);
+
+    public static final String USER_CONTEXT_KEY = "biometric.memberSearchExecutor";
+
+    // 扫描线程数，<= 0 时取 CPU 核数
+    @Value("${biometric.recognition.member.threads:0}")
+    private int threads;
+
+    // IMap 路径逐分区读取记录的批大小
+    @Value("${biometric.recognition.member.fetch-size:500}")
+    private int fetchSize = 500;
+
+    private final HazelcastInstance hazelcastInstance;
+    private final IMap<String, PersonFaceData> faceFeatureMap;
+
+    private ExecutorService pool;
+    private int parallelism;
+
+    @Autowired
+    public MemberSearchExecutor(HazelcastInstance hazelcastInstance, FaceCacheService faceCacheService) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.faceFeatureMap = faceCacheService.getFaceFeatureMap();
+    }
+
+    @PostConstruct
+    public void init() {
+        parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "MemberSearch-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        hazelcastInstance.getUserContext().put(USER_CONTEXT_KEY, this);
+        log.info("成员本地搜索线程数: {}", parallelism);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 从成员用户上下文中获取本地搜索执行器 (供分布式任务使用)
+     */
+    public static MemberSearchExecutor get(HazelcastInstance instance) {
+        Object executor = instance.getUserContext().get(USER_CONTEXT_KEY);
+        if (executor == null) {
+            throw new IllegalStateException("当前成员未初始化本地搜索执行器");
+        }
+        return (MemberSearchExecutor) executor;
+    }
+
+    // ================== 并行执行 ==================
+
+    /**
+     * 并行处理 items，返回与 items 一一对应的结果
+     *
+     * 各线程 (含调用线程) 从共享游标领取下一项，尚未启动的辅助任务发现已无剩余项时直接退出，
+     * 调用线程只等待已被领取的项完成。任一项抛出异常时在全部项结束后重新抛出。
+     */
+    public <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> fn) {
+        final int n = items.size();
+        if (n == 0) return Collections.emptyList();
+        if (n == 1 || pool == null) {
+            List<R> results = new ArrayList<>(n);
+            for (T item : items) {
+                results.add(fn.apply(item));
+            }
+            return results;
+        }
+
+        @SuppressWarnings("unchecked")
+        final R[] results = (R[]) new Object[n];
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(n);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < n) {
+                try {
+                    results[i] = fn.apply(items.get(i));
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        int helpers = Math.min(parallelism, n) - 1;
+        try {
+            for (int h = 0; h < helpers; h++) {
+                pool.execute(worker);
+            }
+        } catch (RejectedExecutionException e) {
+            // 执行器关闭中，剩余项由调用线程完成
+        }
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("成员本地搜索被中断", e);
+        }
+
+        Throwable e = failure.get();
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        if (e != null) throw new IllegalStateException("成员本地搜索失败", e);
+        return Arrays.asList(results);
+    }
+
+    // ================== IMap 本地扫描 ==================
+
+    /**
+     * IMap 本地扫描需要成员端代理 (MapProxyImpl) 的分区迭代器，其他实现 (如客户端代理) 返回 false
+     */
+    public static boolean supportsScan(IMap<?, ?> map) {
+        return map instanceof MapProxyImpl;
+    }
+
+    /**
+     * 扫描本成员持有的给定分区 (null 为全部持有分区)，返回本地 TopN 及覆盖统计
+     */
+    public SearchResult scan(CompareParams params, Set<Integer> partitionIds) {
+        final Set<String> groups = CollectionUtils.isEmpty(params.getGroups()) ? null : new HashSet<>(params.getGroups());
+        final ScanBudget budget = ScanBudget.of(params);
+        List<PartitionScan<FaceRecogAggregator>> scans = scanPartitions(ownedPartitions(partitionIds),
+                () -> new FaceRecogAggregator(params), groups, FaceRecogAggregator::mayMatch,
+                FaceRecogAggregator::accumulateMatched, FaceRecogAggregator::isAborted,
+                () -> SearchCancellation.isAborted(params.getQueryId(), params.getDeadline())
+                        || (budget != null && budget.isExhausted()));
+
+        FaceRecogAggregator merged = new FaceRecogAggregator(params);
+        int scanned = 0;
+        for (PartitionScan<FaceRecogAggregator> scan : scans) {
+            merged.combine(scan.aggregator);
+            if (scan.complete) scanned++;
+        }
+        SearchResult result = merged.aggregate();
+        result.setComplete(result.isComplete() && scanned == scans.size());
+        result.setPartitions(scans.size());
+        result.setPartitionsScanned(scanned);
+        return result;
+    }
+
+    /**
+     * 一批查询共享一次本地扫描，每条记录只反序列化一次，返回与 paramsList 一一对应的本地 TopN 及覆盖统计
+     */
+    public List<SearchResult> scanBatch(List<CompareParams> paramsList) {
+        Set<String> groups = new HashSet<>();
+        for (CompareParams params : paramsList) {
+            if (CollectionUtils.isEmpty(params.getGroups())) {
+                groups = null;
+                break;
+            }
+            groups.addAll(params.getGroups());
+        }
+        List<PartitionScan<BatchFaceRecogAggregator>> scans = scanPartitions(ownedPartitions(null),
+                () -> new BatchFaceRecogAggregator(paramsList), groups, BatchFaceRecogAggregator::mayMatch,
+                BatchFaceRecogAggregator::accumulateMatched, BatchFaceRecogAggregator::isAborted,
+                () -> allAborted(paramsList));
+
+        BatchFaceRecogAggregator merged = new BatchFaceRecogAggregator(paramsList);
+        boolean complete = true;
+        for (PartitionScan<BatchFaceRecogAggregator> scan : scans) {
+            merged.combine(scan.aggregator);
+            complete &= scan.complete;
+        }
+        List<SearchResult> results = merged.aggregate();
+        if (!complete) {
+            // 分区扫描只在整批查询都已取消或超时时停止，未开始累加的副本不会自行标记
+            for (SearchResult result : results) {
+                result.setComplete(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 批次内的查询全部已取消或超时
+     */
+    private static boolean allAborted(List<CompareParams> paramsList) {
+        for (CompareParams params : paramsList) {
+            if (!SearchCancellation.isAborted(params.getQueryId(), params.getDeadline())) return false;
+        }
+        return true;
+    }
+
+    private List<Integer> ownedPartitions(Set<Integer> partitionIds) {
+        List<Integer> owned = new ArrayList<>();
+        for (Partition partition : hazelcastInstance.getPartitionService().getPartitions()) {
+            if (partition.getOwner() != null && partition.getOwner().localMember()
+                    && (partitionIds == null || partitionIds.contains(partition.getPartitionId()))) {
+                owned.add(partition.getPartitionId());
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * 每个分区一个聚合器，分区之间并行；groups 不为 null 时跳过不属于这些分组的人员
+     * 分组过滤需要反序列化，之前先在序列化字节上汉明粗筛，未通过的人员直接跳过
+     *
+     * @param mayMatch         序列化字节上的汉明粗筛
+     * @param accumulateMatched 已通过粗筛的记录直接累加，不再重复粗筛
+     * @param aborted          聚合器已停止累加 (逐条检查，须足够廉价)
+     * @param queryStopped     查询已取消、超时或预算用尽 (每个分区开始前检查)
+     */
+    private <A extends Aggregator<Map.Entry<String, PersonFaceData>, ?>> List<PartitionScan<A>> scanPartitions(
+            List<Integer> partitionIds, Supplier<A> factory, Set<String> groups,
+            BiPredicate<A, Map.Entry<String, PersonFaceData>> mayMatch,
+            BiConsumer<A, Map.Entry<String, PersonFaceData>> accumulateMatched,
+            Predicate<A> aborted, BooleanSupplier queryStopped) {
+        if (!supportsScan(faceFeatureMap)) {
+            throw new IllegalStateException("当前 IMap 代理不支持按分区迭代: " + faceFeatureMap.getClass().getName());
+        }
+        // 分区迭代器按批在分区线程上读取记录，记录在本线程反序列化
+        final MapProxyImpl<String, PersonFaceData> map = (MapProxyImpl<String, PersonFaceData>) faceFeatureMap;
+        return map(partitionIds, partitionId -> {
+            A aggregator = factory.get();
+            if (queryStopped.getAsBoolean()) {
+                return new PartitionScan<>(aggregator, false);
+            }
+            boolean complete = true;
+            Iterator<Map.Entry<String, PersonFaceData>> iterator = map.iterator(fetchSize, partitionId, true);
+            while (iterator.hasNext()) {
+                if (aborted.test(aggregator)) {
+                    complete = false;
+                    break;
+                }
+                Map.Entry<String, PersonFaceData> entry = iterator.next();
+                if (groups == null) {
+                    aggregator.accumulate(entry);
+                } else if (mayMatch.test(aggregator, entry) && inGroups(entry.getValue(), groups)) {
+                    accumulateMatched.accept(aggregator, entry);
+                }
+            }
+            aggregator.onAccumulationFinished();
+            return new PartitionScan<>(aggregator, complete);
+        });
+    }
+
+    private static boolean inGroups(PersonFaceData personData, Set<String> groups) {
+        if (personData == null || personData.getGroupIds() == null) return false;
+        for (String group : personData.getGroupIds()) {
+            if (group != null && groups.contains(group)) return true;
+        }
+        return false;
+    }
+
+    private static final class PartitionScan<A> {
+
+        final A aggregator;
+        final boolean complete;
+
+        PartitionScan(A aggregator, boolean complete) {
+            this.aggregator = aggregator;
+            this.complete = complete;
+        }
+    }
+
+}
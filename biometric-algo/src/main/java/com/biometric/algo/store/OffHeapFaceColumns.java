@@ -0,0 +1,337 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.util.BufferCleaner;
+import com.biometric.algo.util.Face303JavaCalcuater;
+import com.biometric.algo.util.HalfFloat;
+import com.biometric.algo.util.VectorQuantizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * 堆外人脸列
+ *
+ * - DIRECT: DirectByteBuffer，扩容时新建缓冲区并拷贝
+ * - MAPPED: 每个分区每列一个段文件 (.codes / .vectors / ...)，扩容时重新映射更大的区域，无需拷贝
+ *
+ * 半精度列的浮点特征每维 2 字节 (float16 位模式，段文件 .hvectors)。
+ *
+ * 段文件只是内存的延伸，启动时由 IMap 数据重建，不做持久化恢复。
+ */
+public class OffHeapFaceColumns implements FaceColumns {
+
+    private static final int CODE_BYTES = FeatureSegment.CODE_WORDS * 4;
+    private static final int QUANTIZED_BYTES = FeatureSegment.DIM;
+
+    private final boolean quantized;
+    private final boolean half;
+    private final int longWords;
+    // 每张人脸浮点特征的字节数
+    private final int vectorBytes;
+    // 单个 ByteBuffer 最大 2GB
+    private final int maxFaces;
+
+    private final Region codes;
+    private final Region vectors;
+    private final Region quantizedVectors;
+    private final Region cosineFactors;
+    private final Region longCodes;
+    private int capacity;
+
+    /**
+     * @param segmentDir 段文件目录，为 null 时使用 DirectByteBuffer
+     */
+    public OffHeapFaceColumns(int partitionId, int initialFaces, boolean quantized, int longCodeWords, boolean half,
+                              File segmentDir) {
+        this.quantized = quantized;
+        this.half = half;
+        this.longWords = longCodeWords;
+        this.vectorBytes = FeatureSegment.DIM * (half ? 2 : 4);
+        this.maxFaces = Integer.MAX_VALUE / vectorBytes;
+        String prefix = "partition-" + partitionId;
+        this.codes = new Region(segmentDir, prefix + ".codes", CODE_BYTES, initialFaces);
+        this.vectors = new Region(segmentDir, prefix + (half ? ".hvectors" : ".vectors"), vectorBytes, initialFaces);
+        if (quantized) {
+            this.quantizedVectors = new Region(segmentDir, prefix + ".qvectors", QUANTIZED_BYTES, initialFaces);
+            this.cosineFactors = new Region(segmentDir, prefix + ".qfactors", 4, initialFaces);
+        } else {
+            this.quantizedVectors = null;
+            this.cosineFactors = null;
+        }
+        this.longCodes = longCodeWords > 0
+                ? new Region(segmentDir, prefix + ".lcodes", longCodeWords * 8, initialFaces) : null;
+        this.capacity = initialFaces;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    @Override
+    public boolean isHalf() {
+        return half;
+    }
+
+    @Override
+    public int longCodeWords() {
+        return longWords;
+    }
+
+    @Override
+    public void ensureCapacity(int faces) {
+        if (faces <= capacity) return;
+        if (faces > maxFaces) {
+            throw new IllegalStateException("单个分区人脸数超过堆外段上限: " + maxFaces);
+        }
+        codes.grow(faces);
+        vectors.grow(faces);
+        if (quantized) {
+            quantizedVectors.grow(faces);
+            cosineFactors.grow(faces);
+        }
+        if (longWords > 0) {
+            longCodes.grow(faces);
+        }
+        capacity = faces;
+    }
+
+    @Override
+    public void write(int face, int[] binaryFeature, float[] featureVector, byte[] quantizedVector, float cosineFactor,
+                      long[] longCode) {
+        ByteBuffer buffer = codes.buffer;
+        int c = face * CODE_BYTES;
+        for (int i = 0; i < binaryFeature.length; i++, c += 4) {
+            buffer.putInt(c, binaryFeature[i]);
+        }
+        buffer = vectors.buffer;
+        int v = face * vectorBytes;
+        if (half) {
+            for (int i = 0; i < featureVector.length; i++, v += 2) {
+                buffer.putShort(v, HalfFloat.fromFloat(featureVector[i]));
+            }
+        } else {
+            for (int i = 0; i < featureVector.length; i++, v += 4) {
+                buffer.putFloat(v, featureVector[i]);
+            }
+        }
+        if (quantized) {
+            buffer = quantizedVectors.buffer;
+            int q = face * QUANTIZED_BYTES;
+            for (int i = 0; i < quantizedVector.length; i++, q++) {
+                buffer.put(q, quantizedVector[i]);
+            }
+            cosineFactors.buffer.putFloat(face * 4, cosineFactor);
+        }
+        if (longWords > 0) {
+            buffer = longCodes.buffer;
+            int l = face * longWords * 8;
+            for (int i = 0; i < longWords; i++, l += 8) {
+                buffer.putLong(l, longCode[i]);
+            }
+        }
+    }
+
+    @Override
+    public void move(int from, int to, int count) {
+        if (from == to || count == 0) return;
+        codes.move(from, to, count);
+        vectors.move(from, to, count);
+        if (quantized) {
+            quantizedVectors.move(from, to, count);
+            cosineFactors.move(from, to, count);
+        }
+        if (longWords > 0) {
+            longCodes.move(from, to, count);
+        }
+    }
+
+    @Override
+    public void readCode(int face, int[] out, int outOffset) {
+        final ByteBuffer buffer = codes.buffer;
+        for (int w = 0, c = face * CODE_BYTES; w < FeatureSegment.CODE_WORDS; w++, c += 4) {
+            out[outOffset + w] = buffer.getInt(c);
+        }
+    }
+
+    @Override
+    public void readVector(int face, float[] out) {
+        final ByteBuffer buffer = vectors.buffer;
+        if (half) {
+            for (int d = 0, p = face * vectorBytes; d < FeatureSegment.DIM; d++, p += 2) {
+                out[d] = HalfFloat.toFloat(buffer.getShort(p));
+            }
+            return;
+        }
+        for (int d = 0, p = face * vectorBytes; d < FeatureSegment.DIM; d++, p += 4) {
+            out[d] = buffer.getFloat(p);
+        }
+    }
+
+    @Override
+    public float compare(int face, float[] input) {
+        if (half) {
+            return Face303JavaCalcuater.dotHalf(input, vectors.buffer, face * vectorBytes);
+        }
+        return Face303JavaCalcuater.dot(input, vectors.buffer, face * vectorBytes);
+    }
+
+    @Override
+    public int filterBinaFeat(int face, int[] inputCodes, int inputSize, int hamDist, int[] selected) {
+        final ByteBuffer buffer = codes.buffer;
+        final int c = face * CODE_BYTES;
+        return Face303JavaCalcuater.filterBinaFeat(inputCodes, inputSize,
+                buffer.getInt(c), buffer.getInt(c + 4), buffer.getInt(c + 8), buffer.getInt(c + 12),
+                hamDist, selected);
+    }
+
+    @Override
+    public int filterLongCode(int face, long[] inputCodes, int radius, int[] selected, int count) {
+        final ByteBuffer buffer = longCodes.buffer;
+        final int c = face * longWords * 8;
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            final int i = selected[k];
+            int dist = 0;
+            for (int w = 0, in = i * longWords; w < longWords && dist <= radius; w++) {
+                dist += Long.bitCount(inputCodes[in + w] ^ buffer.getLong(c + w * 8));
+            }
+            if (dist <= radius) {
+                selected[kept++] = i;
+            }
+        }
+        return kept;
+    }
+
+    @Override
+    public void compareBlock(int face, float[] inputs, int[] selected, int count, float[] scores) {
+        if (half) {
+            Face303JavaCalcuater.dotBlockHalf(inputs, FeatureSegment.DIM, selected, count,
+                    vectors.buffer, face * vectorBytes, scores);
+        } else {
+            Face303JavaCalcuater.dotBlock(inputs, FeatureSegment.DIM, selected, count,
+                    vectors.buffer, face * vectorBytes, scores);
+        }
+    }
+
+    @Override
+    public float compareBounded(int face, float[] inputs, float[] suffix, int input, float threshold) {
+        final int dim = FeatureSegment.DIM;
+        final int s = input * (dim / Face303JavaCalcuater.BOUND_CHUNK);
+        if (half) {
+            return Face303JavaCalcuater.dotBoundedHalf(inputs, input * dim, suffix, s, dim,
+                    vectors.buffer, face * vectorBytes, threshold);
+        }
+        return Face303JavaCalcuater.dotBounded(inputs, input * dim, suffix, s, dim,
+                vectors.buffer, face * vectorBytes, threshold);
+    }
+
+    @Override
+    public float approxCompare(int face, byte[] input, float inputCosineFactor) {
+        return VectorQuantizer.dot(input, quantizedVectors.buffer, face * QUANTIZED_BYTES)
+                * inputCosineFactor * cosineFactors.buffer.getFloat(face * 4);
+    }
+
+    @Override
+    public long allocatedBytes() {
+        long bytesPerFace = CODE_BYTES + vectorBytes + (quantized ? QUANTIZED_BYTES + 4 : 0) + longWords * 8;
+        return (long) capacity * bytesPerFace;
+    }
+
+    @Override
+    public void release() {
+        codes.release();
+        vectors.release();
+        if (quantized) {
+            quantizedVectors.release();
+            cosineFactors.release();
+        }
+        if (longWords > 0) {
+            longCodes.release();
+        }
+        capacity = 0;
+    }
+
+    /**
+     * 单列的堆外区域，每张人脸占用固定字节数
+     */
+    private static class Region {
+
+        private final File file;
+        private final int bytesPerFace;
+        private ByteBuffer buffer;
+
+        Region(File segmentDir, String fileName, int bytesPerFace, int faces) {
+            this.file = segmentDir != null ? new File(segmentDir, fileName) : null;
+            this.bytesPerFace = bytesPerFace;
+            this.buffer = allocate(faces);
+        }
+
+        private ByteBuffer allocate(int faces) {
+            long bytes = (long) faces * bytesPerFace;
+            ByteBuffer old = buffer;
+            ByteBuffer result;
+            if (file == null) {
+                result = ByteBuffer.allocateDirect((int) bytes);
+                if (old != null) {
+                    ByteBuffer src = old.duplicate();
+                    src.clear();
+                    result.put(src);
+                    result.clear();
+                }
+            } else {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                     FileChannel channel = raf.getChannel()) {
+                    result = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("特征段文件映射失败: " + file, e);
+                }
+            }
+            BufferCleaner.clean(old);
+            return result.order(ByteOrder.nativeOrder());
+        }
+
+        void grow(int faces) {
+            buffer = allocate(faces);
+        }
+
+        /**
+         * 区域内向前搬移，按不重叠的块拷贝，保证 to < from 时语义正确
+         */
+        void move(int fromFace, int toFace, int count) {
+            int from = fromFace * bytesPerFace;
+            int to = toFace * bytesPerFace;
+            int length = count * bytesPerFace;
+            int gap = from - to;
+            int done = 0;
+            while (done < length) {
+                int chunk = Math.min(gap, length - done);
+                ByteBuffer src = buffer.duplicate();
+                src.limit(from + done + chunk).position(from + done);
+                ByteBuffer dst = buffer.duplicate();
+                dst.position(to + done);
+                dst.put(src);
+                done += chunk;
+            }
+        }
+
+        void release() {
+            BufferCleaner.clean(buffer);
+            buffer = null;
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.biometric.algo.store;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 查询规划统计：各成员本地特征库的规模、索引状态与分组基数
+ *
+ * 各成员只统计本地持有的分区段，合并时规模与分组基数直接相加；
+ * 索引只有在全部成员上都可用时才视为可用，否则部分成员会退回全量扫描。
+ */
+public class PlannerStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int members;
+    private int partitions;
+    private long persons;
+    private long faces;
+    // 全部成员都已训练时取各成员聚类数的最小值，否则为 0
+    private int ivfLists;
+    private int ivfNprobe;
+    private boolean hnsw;
+    private int hnswM;
+    private int hnswEfSearch;
+    // 分组 → 人员数
+    private final Map<String, Long> groupPersons = new HashMap<>();
+    private final long collectedAt = System.currentTimeMillis();
+
+    PlannerStatistics() {
+    }
+
+    PlannerStatistics(int ivfLists, int ivfNprobe, boolean hnsw, int hnswM, int hnswEfSearch) {
+        this.members = 1;
+        this.ivfLists = ivfLists;
+        this.ivfNprobe = ivfNprobe;
+        this.hnsw = hnsw;
+        this.hnswM = hnswM;
+        this.hnswEfSearch = hnswEfSearch;
+    }
+
+    void addSegment(FeatureSegment segment) {
+        partitions++;
+        persons += segment.getPersonCount();
+        faces += segment.getFaceCount();
+        segment.addGroupCardinalities(groupPersons);
+    }
+
+    /**
+     * 空的合并起点，合并第一个成员的统计后即与其相同
+     */
+    public static PlannerStatistics empty() {
+        return new PlannerStatistics();
+    }
+
+    public void merge(PlannerStatistics other) {
+        if (members == 0) {
+            ivfLists = other.ivfLists;
+            ivfNprobe = other.ivfNprobe;
+            hnsw = other.hnsw;
+            hnswM = other.hnswM;
+            hnswEfSearch = other.hnswEfSearch;
+        } else {
+            ivfLists = Math.min(ivfLists, other.ivfLists);
+            ivfNprobe = Math.max(ivfNprobe, other.ivfNprobe);
+            hnsw = hnsw && other.hnsw;
+            hnswM = Math.max(hnswM, other.hnswM);
+            hnswEfSearch = Math.max(hnswEfSearch, other.hnswEfSearch);
+        }
+        members += other.members;
+        partitions += other.partitions;
+        persons += other.persons;
+        faces += other.faces;
+        for (Map.Entry<String, Long> entry : other.groupPersons.entrySet()) {
+            groupPersons.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+    }
+
+    public int getMembers() {
+        return members;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public long getPersons() {
+        return persons;
+    }
+
+    public long getFaces() {
+        return faces;
+    }
+
+    public int getIvfLists() {
+        return ivfLists;
+    }
+
+    public int getIvfNprobe() {
+        return ivfNprobe;
+    }
+
+    public boolean isHnsw() {
+        return hnsw;
+    }
+
+    public int getHnswM() {
+        return hnswM;
+    }
+
+    public int getHnswEfSearch() {
+        return hnswEfSearch;
+    }
+
+    /**
+     * 分组的人员数，未出现的分组为 0
+     */
+    public long getGroupPersons(String group) {
+        Long count = groupPersons.get(group);
+        return count == null ? 0 : count;
+    }
+
+    public int getGroupCount() {
+        return groupPersons.size();
+    }
+
+    public long getCollectedAt() {
+        return collectedAt;
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.biometric.algo.store;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+/**
+ * 分发到各成员执行的规划统计收集任务，返回该成员本地特征库的规模与分组基数
+ */
+public class PlannerStatisticsTask implements Callable<PlannerStatistics>, HazelcastInstanceAware, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public PlannerStatistics call() {
+        return LocalFeatureStore.get(hazelcastInstance).plannerStatistics();
+    }
+
+}
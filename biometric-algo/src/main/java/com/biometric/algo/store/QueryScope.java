@@ -0,0 +1,95 @@
+package com.biometric.algo.store;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 成员内按查询 ID 登记的查询级状态 (取消标记、共享剪枝下界等)
+ *
+ * 同一成员上同一查询的并行扫描线程、聚合副本通过查询 ID 找到同一份状态。
+ * 成员本地搜索任务结束、调用方完成查询时释放本成员上的登记项；
+ * IMap 聚合路径在远端成员上没有结束回调，登记项按最后访问时间过期清理。
+ * 同一查询在本成员上可能有多个任务，已取消的登记项不随单个任务的释放删除，保留到过期；
+ * 取消只作用于已登记的查询，不会为已释放的查询重新登记。
+ */
+public final class QueryScope {
+
+    // 登记项空闲超过该时长即清理
+    private static final long EXPIRE_NANOS = TimeUnit.SECONDS.toNanos(60);
+    // 清理间隔，避免每次登记都遍历
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final Map<String, QueryScope> SCOPES = new ConcurrentHashMap<>();
+    private static volatile long lastSweep = System.nanoTime();
+
+    // 状态类型 → 实例
+    private final Map<Class<?>, Object> attachments = new ConcurrentHashMap<>(4);
+    private volatile boolean cancelled;
+    private volatile long lastAccess = System.nanoTime();
+
+    private QueryScope() {
+    }
+
+    /**
+     * 获取 (必要时登记) 查询在本成员上的状态，queryId 为空时返回 null
+     */
+    public static QueryScope of(String queryId) {
+        if (queryId == null) return null;
+        long now = System.nanoTime();
+        if (now - lastSweep > SWEEP_INTERVAL_NANOS) {
+            sweep(now);
+        }
+        QueryScope scope = SCOPES.computeIfAbsent(queryId, id -> new QueryScope());
+        scope.lastAccess = now;
+        return scope;
+    }
+
+    /**
+     * 已登记的查询状态，不存在时返回 null (不登记)
+     */
+    public static QueryScope peek(String queryId) {
+        return queryId == null || SCOPES.isEmpty() ? null : SCOPES.get(queryId);
+    }
+
+    /**
+     * 查询结束，释放本成员上未取消的登记项
+     */
+    public static void release(String queryId) {
+        if (queryId == null) return;
+        QueryScope scope = SCOPES.get(queryId);
+        if (scope != null && !scope.cancelled) {
+            SCOPES.remove(queryId, scope);
+        }
+    }
+
+    private static void sweep(long now) {
+        lastSweep = now;
+        Iterator<QueryScope> iterator = SCOPES.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastAccess > EXPIRE_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        lastAccess = System.nanoTime();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 查询的某类状态，首次访问时由 factory 创建
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T attach(Class<T> type, Supplier<T> factory) {
+        return (T) attachments.computeIfAbsent(type, t -> factory.get());
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.dto.CompareParams;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预算模式下单个查询在本成员上的扫描预算 (登记在查询的 {@link QueryScope} 上)
+ *
+ * 同一成员上并行扫描的分区段 (或并行聚合副本) 共享同一份预算：
+ * 时长从本成员第一次登记该查询时起算，比对次数由各扫描线程分批累加。
+ * 预算用尽后各扫描在下一个检查点停止，返回已扫描部分的 TopN。
+ */
+public final class ScanBudget {
+
+    private final long deadlineNanos;
+    private final long maxEvaluations;
+    private final AtomicLong evaluations = new AtomicLong();
+    private volatile boolean exhausted;
+
+    private ScanBudget(long budgetMillis, long maxEvaluations) {
+        this.deadlineNanos = budgetMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis) : 0;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * 查询在本成员上的预算，未启用预算模式时返回 null
+     */
+    public static ScanBudget of(CompareParams params) {
+        if (params.getBudgetMillis() <= 0 && params.getBudgetEvaluations() <= 0) return null;
+        QueryScope scope = QueryScope.of(params.getQueryId());
+        if (scope == null) {
+            return new ScanBudget(params.getBudgetMillis(), params.getBudgetEvaluations());
+        }
+        return scope.attach(ScanBudget.class,
+                () -> new ScanBudget(params.getBudgetMillis(), params.getBudgetEvaluations()));
+    }
+
+    /**
+     * 累加比对次数，扫描线程按块或按批调用
+     */
+    public void charge(long count) {
+        if (count > 0 && maxEvaluations > 0) {
+            evaluations.addAndGet(count);
+        }
+    }
+
+    public boolean isExhausted() {
+        if (exhausted) return true;
+        if ((deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0)
+                || (maxEvaluations > 0 && evaluations.get() >= maxEvaluations)) {
+            exhausted = true;
+        }
+        return exhausted;
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.dto.CompareParams;
+import com.biometric.algo.dto.SearchEngine;
+import com.biometric.algo.index.IvfCentroids;
+import com.biometric.algo.util.BinaryProjection;
+import com.biometric.algo.util.Face303JavaCalcuater;
+import com.biometric.algo.util.VectorQuantizer;
+import org.springframework.util.CollectionUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 成员本地扫描使用的预处理查询
+ * 查询特征在每个成员上只解码一次，扫描阶段只读
+ */
+public class ScanQuery {
+
+    private final int[][] binaryFeatures;
+    private final float[][] floatFeatures;
+    // 查询特征的连续存放形式，供分块多查询打分使用
+    private final int[] binaryBlock;
+    private final float[] floatBlock;
+    private final byte[][] quantizedFeatures;
+    private final float[] cosineFactors;
+    private final String[] inputFaceIds;
+    private final Set<String> groups;
+    private final float threshold;
+    private final int topN;
+    // 汉明距离粗筛阈值，与 FaceRecogAggregator 取值规则一致
+    private final int hammingThreshold;
+
+    // 量化粗排 + 浮点精排参数，rerankSize <= 0 表示全量浮点计算
+    private int rerankSize;
+    private float rerankMargin;
+
+    // IVF 检索参数：各查询特征探查的聚类，centroids 为 null 表示全量扫描
+    private final SearchEngine engine;
+    private final int nprobe;
+    private IvfCentroids centroids;
+    private int[][] probes;
+    // HNSW 检索的候选队列长度，<= 0 表示不使用图索引
+    private final int efSearch;
+    private int hnswEf;
+    // 长二进制特征粗筛：查询长编码按 words 连续存放，半径由余弦阈值换算，projection 为 null 表示不使用
+    private BinaryProjection projection;
+    private long[] longCodeBlock;
+    private int longCodeRadius;
+    // 分块后缀范数，启用提前放弃时非空
+    private float[] suffixNorms;
+    // 取消与截止时间
+    private String queryId;
+    private long deadline;
+    // 预算模式下本成员共享的扫描预算，未启用时为 null
+    private ScanBudget budget;
+
+    private ScanQuery(int[][] binaryFeatures, float[][] floatFeatures, String[] inputFaceIds,
+                      Set<String> groups, float threshold, int topN, int hammingThreshold,
+                      SearchEngine engine, int nprobe, int efSearch) {
+        this.binaryFeatures = binaryFeatures;
+        this.floatFeatures = floatFeatures;
+        this.binaryBlock = flatten(binaryFeatures, FeatureSegment.CODE_WORDS);
+        this.floatBlock = flatten(floatFeatures, FeatureSegment.DIM);
+        this.quantizedFeatures = new byte[floatFeatures.length][];
+        this.cosineFactors = new float[floatFeatures.length];
+        for (int i = 0; i < floatFeatures.length; i++) {
+            float scale = VectorQuantizer.scale(floatFeatures[i]);
+            quantizedFeatures[i] = VectorQuantizer.quantize(floatFeatures[i], scale);
+            cosineFactors[i] = VectorQuantizer.cosineFactor(scale, VectorQuantizer.norm(floatFeatures[i]));
+        }
+        this.inputFaceIds = inputFaceIds;
+        this.groups = groups;
+        this.threshold = threshold;
+        this.topN = topN;
+        this.hammingThreshold = hammingThreshold;
+        this.engine = engine == null ? SearchEngine.SCAN : engine;
+        this.nprobe = nprobe;
+        this.efSearch = efSearch;
+    }
+
+    public static ScanQuery from(CompareParams params) {
+        Set<String> groups = CollectionUtils.isEmpty(params.getGroups()) ? null : new HashSet<>(params.getGroups());
+
+        ScanQuery query = new ScanQuery(
+                // 编码与归一化向量由调用方预计算，段内向量已归一化，点积即余弦
+                params.getInputCodes(),
+                params.getInputVectors(),
+                params.getInputFaceIds(),
+                groups,
+                params.getThreshold(),
+                params.getTopN(),
+                params.getHammingRadius() != null ? params.getHammingRadius() : Face303JavaCalcuater.DEFAULT_HAM_DIST,
+                params.getEngine(),
+                params.getNprobe(),
+                params.getEfSearch()
+        );
+        query.queryId = params.getQueryId();
+        query.deadline = params.getDeadline();
+        query.budget = ScanBudget.of(params);
+        return query;
+    }
+
+    private static int[] flatten(int[][] rows, int width) {
+        int[] block = new int[rows.length * width];
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(rows[i], 0, block, i * width, width);
+        }
+        return block;
+    }
+
+    private static float[] flatten(float[][] rows, int width) {
+        float[] block = new float[rows.length * width];
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(rows[i], 0, block, i * width, width);
+        }
+        return block;
+    }
+
+    /**
+     * 启用量化粗排：每个分区段只对近似分数最高的 size 个候选做浮点精排
+     *
+     * @param margin 粗排阈值相对用户阈值的放宽量，用于吸收量化误差
+     */
+    public ScanQuery withRerank(int size, float margin) {
+        this.rerankSize = size;
+        this.rerankMargin = margin;
+        return this;
+    }
+
+    /**
+     * 启用 IVF 检索：按给定聚类中心计算各查询特征需要探查的聚类
+     * 分区段只在自身倒排表基于同一组聚类中心时使用，否则退回全量扫描
+     */
+    public ScanQuery withIvf(IvfCentroids centroids, int nprobe) {
+        int[][] result = new int[floatFeatures.length][];
+        for (int i = 0; i < floatFeatures.length; i++) {
+            result[i] = centroids.probe(floatFeatures[i], nprobe);
+        }
+        this.centroids = centroids;
+        this.probes = result;
+        return this;
+    }
+
+    /**
+     * 启用 HNSW 检索，ef 不小于 topN
+     */
+    public ScanQuery withHnsw(int ef) {
+        this.hnswEf = Math.max(ef, topN);
+        return this;
+    }
+
+    /**
+     * 启用长二进制特征粗筛，汉明半径由查询的余弦阈值换算
+     */
+    public ScanQuery withLongCode(BinaryProjection projection) {
+        long[] block = new long[floatFeatures.length * projection.getWords()];
+        for (int i = 0; i < floatFeatures.length; i++) {
+            projection.encode(floatFeatures[i], block, i * projection.getWords());
+        }
+        this.projection = projection;
+        this.longCodeBlock = block;
+        this.longCodeRadius = projection.radius(threshold);
+        return this;
+    }
+
+    /**
+     * 启用余弦精筛的部分和提前放弃：预先计算各查询的分块后缀范数
+     */
+    public ScanQuery withEarlyAbandon() {
+        this.suffixNorms = Face303JavaCalcuater.suffixNorms(floatBlock, FeatureSegment.DIM, floatFeatures.length);
+        return this;
+    }
+
+    public int size() { return binaryFeatures.length; }
+    public int[][] getBinaryFeatures() { return binaryFeatures; }
+    public float[][] getFloatFeatures() { return floatFeatures; }
+    public int[] getBinaryBlock() { return binaryBlock; }
+    public float[] getFloatBlock() { return floatBlock; }
+    public byte[][] getQuantizedFeatures() { return quantizedFeatures; }
+    public float[] getCosineFactors() { return cosineFactors; }
+    public boolean isRerank() { return rerankSize > 0; }
+    public SearchEngine getEngine() { return engine; }
+    public int getNprobe() { return nprobe; }
+    public boolean isIvf() { return centroids != null; }
+    public IvfCentroids getCentroids() { return centroids; }
+    public int[][] getProbes() { return probes; }
+    public int getEfSearch() { return efSearch; }
+    public boolean isHnsw() { return hnswEf > 0; }
+    public int getHnswEf() { return hnswEf; }
+    public BinaryProjection getProjection() { return projection; }
+    public long[] getLongCodeBlock() { return longCodeBlock; }
+    public int getLongCodeRadius() { return longCodeRadius; }
+    public boolean isEarlyAbandon() { return suffixNorms != null; }
+    public float[] getSuffixNorms() { return suffixNorms; }
+    public int getRerankSize() { return rerankSize; }
+    public float getRerankMargin() { return rerankMargin; }
+    public String getInputFaceId(int i) { return inputFaceIds[i]; }
+    public float getThreshold() { return threshold; }
+    public int getTopN() { return topN; }
+    public int getHammingThreshold() { return hammingThreshold; }
+    // 未指定分组时为 null，各分区段在自身的分组倒排表上求并集
+    public Set<String> getGroups() { return groups; }
+    // 查询已取消或超过截止时间
+    public boolean isAborted() { return SearchCancellation.isAborted(queryId, deadline); }
+    public ScanBudget getBudget() { return budget; }
+    // 查询已取消、超时或预算用尽，扫描应在当前检查点停止
+    public boolean isStopped() { return isAborted() || (budget != null && budget.isExhausted()); }
+
+}
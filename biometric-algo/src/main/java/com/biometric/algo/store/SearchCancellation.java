@@ -0,0 +1,34 @@
+package com.biometric.algo.store;
+
+/**
+ * 成员内的搜索取消登记 (按查询 ID，登记在查询的 {@link QueryScope} 上)
+ *
+ * 调用方超时或 HTTP 连接断开时向全部成员广播取消，扫描在分区段之间、共享扫描的块之间、
+ * 聚合器每累加一批记录时检查取消与截止时间，尽早停止为已放弃的查询消耗内存带宽。
+ */
+public final class SearchCancellation {
+
+    private SearchCancellation() {
+    }
+
+    /**
+     * 只标记本成员上已登记的查询；查询已结束释放 (或尚未到达) 时忽略，不为迟到的取消重新登记，
+     * 尚未到达的搜索仍受随查询下发的截止时间约束
+     */
+    public static void cancel(String queryId) {
+        QueryScope scope = QueryScope.peek(queryId);
+        if (scope != null) {
+            scope.cancel();
+        }
+    }
+
+    /**
+     * 查询是否已取消或超过截止时间 (epoch 毫秒，<= 0 表示不限)
+     */
+    public static boolean isAborted(String queryId, long deadline) {
+        if (deadline > 0 && System.currentTimeMillis() >= deadline) return true;
+        QueryScope scope = QueryScope.peek(queryId);
+        return scope != null && scope.isCancelled();
+    }
+
+}
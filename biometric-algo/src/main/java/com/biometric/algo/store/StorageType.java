@@ -0,0 +1,23 @@
+package com.biometric.algo.store;
+
+/**
+ * 列式特征库的人脸列存储方式
+ */
+public enum StorageType {
+
+    /**
+     * 堆内 int[]/float[] 数组 (默认)
+     */
+    HEAP,
+
+    /**
+     * 堆外 DirectByteBuffer，不参与 GC 扫描
+     */
+    DIRECT,
+
+    /**
+     * 内存映射段文件，由操作系统页缓存管理，可超出物理内存
+     */
+    MAPPED
+
+}
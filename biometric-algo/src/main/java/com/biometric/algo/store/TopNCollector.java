@@ -0,0 +1,118 @@
+package com.biometric.algo.store;
+
+import com.biometric.algo.dto.CompareResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * TopN 结果收集器 (小顶堆)，同时累计覆盖统计 (比对的人员数、比对次数、是否扫描完整)
+ * 非线程安全，每个扫描线程独占一个实例，最终在调用方合并
+ */
+public class TopNCollector {
+
+    private final int topN;
+    private final PriorityQueue<CompareResult> heap;
+
+    // 动态剪枝阈值 - 记录当前TopN堆中的最低分
+    private float dynamicThreshold = -1.0f;
+
+    private long candidates;
+    private long evaluations;
+    private boolean complete = true;
+
+    public TopNCollector(int topN) {
+        this.topN = topN;
+        this.heap = new PriorityQueue<>(topN + 1, (r1, r2) -> Float.compare(r1.getScore(), r2.getScore()));
+    }
+
+    public void offer(CompareResult result) {
+        if (heap.size() < topN) {
+            heap.add(result);
+        } else {
+            CompareResult head = heap.peek();
+            if (head != null && result.getScore() > head.getScore()) {
+                heap.poll();
+                heap.add(result);
+            }
+        }
+
+        if (heap.size() >= topN) {
+            CompareResult minInHeap = heap.peek();
+            if (minInHeap != null) {
+                dynamicThreshold = minInHeap.getScore();
+            }
+        }
+    }
+
+    public void merge(Collection<CompareResult> results) {
+        if (results == null) return;
+        for (CompareResult result : results) {
+            offer(result);
+        }
+    }
+
+    public void merge(TopNCollector other) {
+        merge(other.heap);
+        candidates += other.candidates;
+        evaluations += other.evaluations;
+        complete = complete && other.complete;
+    }
+
+    public void addCoverage(long candidates, long evaluations) {
+        this.candidates += candidates;
+        this.evaluations += evaluations;
+    }
+
+    /**
+     * 扫描因预算用尽 (或取消) 提前结束
+     */
+    public void markIncomplete() {
+        complete = false;
+    }
+
+    public long getCandidates() {
+        return candidates;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public float getDynamicThreshold() {
+        return dynamicThreshold;
+    }
+
+    /**
+     * 按分数降序输出，并补全 min/max 统计信息
+     */
+    public List<CompareResult> toSortedList() {
+        List<CompareResult> results = new ArrayList<>(heap);
+        results.sort((r1, r2) -> Float.compare(r2.getScore(), r1.getScore()));
+        for (CompareResult r : results) {
+            fillMinMaxStats(r);
+        }
+        return results;
+    }
+
+    private static void fillMinMaxStats(CompareResult result) {
+        if (result.getDetails() == null) return;
+        float min = Float.MAX_VALUE, max = Float.MIN_VALUE;
+        String minId = null, maxId = null;
+        for (CompareResult.compareDetails d : result.getDetails()) {
+            if (d.getScore() < min) { min = d.getScore(); minId = d.getFaceId2(); }
+            if (d.getScore() > max) { max = d.getScore(); maxId = d.getFaceId2(); }
+        }
+        result.setMaxScore(max != Float.MIN_VALUE ? max : result.getScore());
+        result.setMaxFaceId(maxId != null ? maxId : result.getFaceId());
+        result.setMinScore(min != Float.MAX_VALUE ? min : result.getScore());
+        result.setMinFaceId(minId != null ? minId : result.getFaceId());
+    }
+
+}
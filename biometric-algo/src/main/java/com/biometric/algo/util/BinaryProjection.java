@@ -0,0 +1,140 @@
+package com.biometric.algo.util;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 长二进制特征编码 (256/512 位随机旋转符号投影)
+ *
+ * 将 128 维向量分别投影到 bits / 128 个随机正交基 (高斯矩阵经 Gram-Schmidt 正交化) 上，
+ * 每个投影取符号位得到 1 bit，按 long 连续存放。
+ *
+ * 对随机投影，两个向量某一位不同的概率为 θ / π (θ 为两向量夹角)，
+ * 因此余弦阈值可以直接换算为汉明半径，不需要按数据逐一标定；
+ * 位数越多，汉明距离对夹角的估计越集中，粗筛越锋利。
+ *
+ * 投影矩阵只由位数和固定种子决定，加载端与各成员独立构造即可得到完全一致的编码。
+ */
+public final class BinaryProjection {
+
+    public static final int DIM = 128;
+    // 固定种子：集群内所有节点必须使用同一组投影
+    private static final long SEED = 0x5EEDC0DEL;
+    // 换算半径时在期望距离上附加的标准差倍数
+    private static final double SIGMA_MARGIN = 3.0;
+
+    private static final Map<Integer, BinaryProjection> INSTANCES = new ConcurrentHashMap<>();
+
+    private final int bits;
+    private final int words;
+    // 投影方向，每行 DIM 个 float，共 bits 行
+    private final float[] rows;
+
+    private BinaryProjection(int bits) {
+        this.bits = bits;
+        this.words = bits / 64;
+        this.rows = new float[bits * DIM];
+
+        Random random = new Random(SEED + bits);
+        for (int block = 0; block < bits / DIM; block++) {
+            // 每 DIM 行构成一个随机正交矩阵
+            for (int r = block * DIM; r < (block + 1) * DIM; r++) {
+                final int base = r * DIM;
+                for (int d = 0; d < DIM; d++) {
+                    rows[base + d] = (float) random.nextGaussian();
+                }
+                for (int p = block * DIM; p < r; p++) {
+                    final int prev = p * DIM;
+                    float dot = 0.0F;
+                    for (int d = 0; d < DIM; d++) {
+                        dot += rows[base + d] * rows[prev + d];
+                    }
+                    for (int d = 0; d < DIM; d++) {
+                        rows[base + d] -= dot * rows[prev + d];
+                    }
+                }
+                float norm = 0.0F;
+                for (int d = 0; d < DIM; d++) {
+                    norm += rows[base + d] * rows[base + d];
+                }
+                final float inv = (float) (1.0 / Math.sqrt(norm));
+                for (int d = 0; d < DIM; d++) {
+                    rows[base + d] *= inv;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取指定位数的编码器 (每种位数全局唯一)
+     *
+     * @param bits 编码位数，须为 128 的正整数倍，常用 256 或 512
+     */
+    public static BinaryProjection of(int bits) {
+        if (bits <= 0 || bits % DIM != 0) {
+            throw new IllegalArgumentException("长二进制特征位数必须为 128 的正整数倍，当前值: " + bits);
+        }
+        return INSTANCES.computeIfAbsent(bits, BinaryProjection::new);
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * 每个编码占用的 long 数
+     */
+    public int getWords() {
+        return words;
+    }
+
+    /**
+     * 编码一个向量 (无需归一化，符号与向量长度无关)
+     */
+    public long[] encode(float[] vector) {
+        long[] code = new long[words];
+        encode(vector, code, 0);
+        return code;
+    }
+
+    public void encode(float[] vector, long[] out, int offset) {
+        for (int w = 0; w < words; w++) {
+            long word = 0L;
+            for (int b = 0; b < 64; b++) {
+                final int base = (w * 64 + b) * DIM;
+                float dot = 0.0F;
+                for (int d = 0; d < DIM; d++) {
+                    dot += vector[d] * rows[base + d];
+                }
+                if (dot >= 0.0F) {
+                    word |= 1L << b;
+                }
+            }
+            out[offset + w] = word;
+        }
+    }
+
+    /**
+     * 余弦阈值对应的汉明半径：阈值处夹角 θ 的期望距离 bits·θ/π 加上 3 个标准差，
+     * 余弦恰好等于阈值的人脸对被粗筛误杀的概率约为 0.1%，高于阈值的人脸对更低
+     */
+    public int radius(float cosineThreshold) {
+        if (cosineThreshold <= -1.0F) return bits;
+        double p = Math.acos(Math.min(1.0, cosineThreshold)) / Math.PI;
+        double radius = bits * p + SIGMA_MARGIN * Math.sqrt(bits * p * (1.0 - p));
+        return (int) Math.min(bits, Math.ceil(radius));
+    }
+
+    /**
+     * 两个长编码的汉明距离
+     */
+    public static int distance(long[] code1, int offset1, long[] code2, int offset2, int words) {
+        int dist = 0;
+        for (int w = 0; w < words; w++) {
+            dist += Long.bitCount(code1[offset1 + w] ^ code2[offset2 + w]);
+        }
+        return dist;
+    }
+
+}
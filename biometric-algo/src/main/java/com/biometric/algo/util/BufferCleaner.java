@@ -0,0 +1,59 @@
+package com.biometric.algo.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * 堆外缓冲区立即释放工具
+ * DirectByteBuffer/MappedByteBuffer 默认要等到 GC 才回收，段扩容或迁出时需要主动释放
+ * 兼容 Java 8 (DirectBuffer.cleaner) 与 Java 9+ (Unsafe.invokeCleaner)
+ */
+public final class BufferCleaner {
+
+    private static final Logger log = LoggerFactory.getLogger(BufferCleaner.class);
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            // Java 8 没有 invokeCleaner，回退到 DirectBuffer.cleaner()
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private BufferCleaner() {
+    }
+
+    public static void clean(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) return;
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("堆外缓冲区释放失败，等待 GC 回收: {}", e.getMessage());
+        }
+    }
+
+}
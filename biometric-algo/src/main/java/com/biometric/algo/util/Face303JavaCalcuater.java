@@ -1,16 +1,31 @@
 package com.biometric.algo.util;
 
+import java.nio.ByteBuffer;
+
 /**
  * 人脸特征向量计算工具类 (高性能优化版)
  * 针对 5000万+ 规模的 1:N 搜索进行了指令级优化
+ * JDK 17+ 上特征解码、点积与余弦由 Vector API 内核执行 (见 SimdKernels)，汉明距离仍使用 POPCNT
  */
 public class Face303JavaCalcuater {
 
-    // 汉明距离阈值 (默认50，越小越严格)
-    private static int hamDist = 50;
+    // 汉明距离阈值 (默认50，越小越严格)，请求可通过 CompareParams.hammingRadius 覆盖
+    public static final int DEFAULT_HAM_DIST = 50;
+    // 128 位二进制特征的最大汉明距离，取该值时粗筛不淘汰任何候选
+    public static final int MAX_HAM_DIST = 128;
     // 特征向量长度 (固定为128维)
     private static int featureLength = 128;
 
+    // JDK 17+ 上的 Vector API 内核，不可用时为 null，使用下方的标量展开实现
+    private static final SimdKernels SIMD = SimdKernelLoader.load();
+
+    /**
+     * 当前使用的评分内核
+     */
+    public static String kernelName() {
+        return SIMD != null ? SIMD.name() : SimdKernelLoader.SCALAR_NAME;
+    }
+
     /**
      * 将 byte[] 原始特征转换为 float[] 向量
      * 使用位运算加速转换过程
@@ -19,6 +34,10 @@ public class Face303JavaCalcuater {
         if (byteArray == null) return null;
 
         float[] result = new float[byteArray.length / 4];
+        if (SIMD != null) {
+            SIMD.decode(byteArray, result);
+            return result;
+        }
 
         // 每次处理 4 个字节转换为 1 个 float
         for(int i = 0; i < byteArray.length; i += 4) {
@@ -43,7 +62,15 @@ public class Face303JavaCalcuater {
         if (feat1 == null || feat2 == null) {
             return 0.0F;
         }
+        return compare(feat1, feat2, 0);
+    }
 
+    /**
+     * 计算余弦相似度 (候选向量位于连续数组的指定偏移处)
+     * 供列式存储直接扫描使用，避免逐条拷贝候选向量
+     */
+    public static float compare(float[] feat1, float[] feat2, int offset) {
+        if (SIMD != null) return SIMD.compare(feat1, feat2, offset);
         float s1 = 0.0F;
         float s2 = 0.0F;
         float s3 = 0.0F;
@@ -55,14 +82,14 @@ public class Face303JavaCalcuater {
         // 每次迭代处理 8 个维度，利用 CPU 的超标量架构并行执行乘加指令
         // 128维特征正好循环 16 次，无余数，但为了稳健性保留尾部处理
         for (; i <= len - 8; i += 8) {
-            float v1_0 = feat1[i];   float v2_0 = feat2[i];
-            float v1_1 = feat1[i+1]; float v2_1 = feat2[i+1];
-            float v1_2 = feat1[i+2]; float v2_2 = feat2[i+2];
-            float v1_3 = feat1[i+3]; float v2_3 = feat2[i+3];
-            float v1_4 = feat1[i+4]; float v2_4 = feat2[i+4];
-            float v1_5 = feat1[i+5]; float v2_5 = feat2[i+5];
-            float v1_6 = feat1[i+6]; float v2_6 = feat2[i+6];
-            float v1_7 = feat1[i+7]; float v2_7 = feat2[i+7];
+            float v1_0 = feat1[i];   float v2_0 = feat2[offset + i];
+            float v1_1 = feat1[i+1]; float v2_1 = feat2[offset + i+1];
+            float v1_2 = feat1[i+2]; float v2_2 = feat2[offset + i+2];
+            float v1_3 = feat1[i+3]; float v2_3 = feat2[offset + i+3];
+            float v1_4 = feat1[i+4]; float v2_4 = feat2[offset + i+4];
+            float v1_5 = feat1[i+5]; float v2_5 = feat2[offset + i+5];
+            float v1_6 = feat1[i+6]; float v2_6 = feat2[offset + i+6];
+            float v1_7 = feat1[i+7]; float v2_7 = feat2[offset + i+7];
 
             // 累加平方和 (Self Dot Product)
             s1 += v1_0 * v1_0 + v1_1 * v1_1 + v1_2 * v1_2 + v1_3 * v1_3 +
@@ -79,7 +106,7 @@ public class Face303JavaCalcuater {
         // 处理尾部剩余数据 (防止特征长度不是 8 的倍数)
         for (; i < len; ++i) {
             float tf1 = feat1[i];
-            float tf2 = feat2[i];
+            float tf2 = feat2[offset + i];
             s1 += tf1 * tf1;
             s2 += tf2 * tf2;
             s3 += tf1 * tf2;
@@ -94,6 +121,183 @@ public class Face303JavaCalcuater {
         return (float)(s3 / denominator);
     }
 
+    /**
+     * 计算余弦相似度 (候选向量位于堆外缓冲区的指定字节偏移处)
+     * 缓冲区须为本机字节序，绝对位置读取不改变 position，可多线程并发读
+     */
+    public static float compare(float[] feat1, ByteBuffer feat2, int byteOffset) {
+        if (SIMD != null) return SIMD.compare(feat1, feat2, byteOffset);
+        float s1 = 0.0F;
+        float s2 = 0.0F;
+        float s3 = 0.0F;
+
+        int len = feat1.length;
+        int i = 0;
+        int p = byteOffset;
+
+        for (; i <= len - 8; i += 8, p += 32) {
+            float v1_0 = feat1[i];   float v2_0 = feat2.getFloat(p);
+            float v1_1 = feat1[i+1]; float v2_1 = feat2.getFloat(p + 4);
+            float v1_2 = feat1[i+2]; float v2_2 = feat2.getFloat(p + 8);
+            float v1_3 = feat1[i+3]; float v2_3 = feat2.getFloat(p + 12);
+            float v1_4 = feat1[i+4]; float v2_4 = feat2.getFloat(p + 16);
+            float v1_5 = feat1[i+5]; float v2_5 = feat2.getFloat(p + 20);
+            float v1_6 = feat1[i+6]; float v2_6 = feat2.getFloat(p + 24);
+            float v1_7 = feat1[i+7]; float v2_7 = feat2.getFloat(p + 28);
+
+            s1 += v1_0 * v1_0 + v1_1 * v1_1 + v1_2 * v1_2 + v1_3 * v1_3 +
+                    v1_4 * v1_4 + v1_5 * v1_5 + v1_6 * v1_6 + v1_7 * v1_7;
+
+            s2 += v2_0 * v2_0 + v2_1 * v2_1 + v2_2 * v2_2 + v2_3 * v2_3 +
+                    v2_4 * v2_4 + v2_5 * v2_5 + v2_6 * v2_6 + v2_7 * v2_7;
+
+            s3 += v1_0 * v2_0 + v1_1 * v2_1 + v1_2 * v2_2 + v1_3 * v2_3 +
+                    v1_4 * v2_4 + v1_5 * v2_5 + v1_6 * v2_6 + v1_7 * v2_7;
+        }
+
+        for (; i < len; ++i, p += 4) {
+            float tf1 = feat1[i];
+            float tf2 = feat2.getFloat(p);
+            s1 += tf1 * tf1;
+            s2 += tf2 * tf2;
+            s3 += tf1 * tf2;
+        }
+
+        double denominator = Math.sqrt((double)(s1 * s2));
+        if (denominator < 1.0E-9) {
+            return 0.0F;
+        }
+
+        return (float)(s3 / denominator);
+    }
+
+    /**
+     * L2 归一化，返回新数组；零向量原样返回全零
+     * 归一化后余弦相似度退化为单次点积，省去两次自点积与开方
+     */
+    public static float[] normalize(float[] feat) {
+        if (feat == null) return null;
+        double sum = 0.0;
+        for (float v : feat) {
+            sum += v * v;
+        }
+        float[] result = new float[feat.length];
+        if (sum < 1.0E-18) return result;
+        float inv = (float) (1.0 / Math.sqrt(sum));
+        for (int i = 0; i < feat.length; i++) {
+            result[i] = feat[i] * inv;
+        }
+        return result;
+    }
+
+    /**
+     * L2 范数的倒数，用于未归一化候选的点积换算；零向量返回 0
+     */
+    public static float inverseNorm(float[] feat) {
+        double sum = 0.0;
+        for (float v : feat) {
+            sum += v * v;
+        }
+        return sum < 1.0E-18 ? 0.0F : (float) (1.0 / Math.sqrt(sum));
+    }
+
+    /**
+     * 计算两个已归一化向量的余弦相似度 (即点积)
+     */
+    public static float dot(float[] feat1, float[] feat2) {
+        if (feat1 == null || feat2 == null) {
+            return 0.0F;
+        }
+        return dot(feat1, feat2, 0);
+    }
+
+    /**
+     * 点积 (候选向量位于连续数组的指定偏移处)
+     * 同样按 8 展开，使用两个累加器打断加法依赖链
+     */
+    public static float dot(float[] feat1, float[] feat2, int offset) {
+        if (SIMD != null) return SIMD.dot(feat1, feat2, offset);
+        float s0 = 0.0F;
+        float s1 = 0.0F;
+        int len = feat1.length;
+        int i = 0;
+        for (; i <= len - 8; i += 8) {
+            int p = offset + i;
+            s0 += feat1[i] * feat2[p] + feat1[i+1] * feat2[p+1] +
+                    feat1[i+2] * feat2[p+2] + feat1[i+3] * feat2[p+3];
+            s1 += feat1[i+4] * feat2[p+4] + feat1[i+5] * feat2[p+5] +
+                    feat1[i+6] * feat2[p+6] + feat1[i+7] * feat2[p+7];
+        }
+        for (; i < len; ++i) {
+            s0 += feat1[i] * feat2[offset + i];
+        }
+        return s0 + s1;
+    }
+
+    /**
+     * 点积 (候选向量位于堆外缓冲区的指定字节偏移处)
+     */
+    public static float dot(float[] feat1, ByteBuffer feat2, int byteOffset) {
+        if (SIMD != null) return SIMD.dot(feat1, feat2, byteOffset);
+        float s0 = 0.0F;
+        float s1 = 0.0F;
+        int len = feat1.length;
+        int i = 0;
+        int p = byteOffset;
+        for (; i <= len - 8; i += 8, p += 32) {
+            s0 += feat1[i] * feat2.getFloat(p) + feat1[i+1] * feat2.getFloat(p + 4) +
+                    feat1[i+2] * feat2.getFloat(p + 8) + feat1[i+3] * feat2.getFloat(p + 12);
+            s1 += feat1[i+4] * feat2.getFloat(p + 16) + feat1[i+5] * feat2.getFloat(p + 20) +
+                    feat1[i+6] * feat2.getFloat(p + 24) + feat1[i+7] * feat2.getFloat(p + 28);
+        }
+        for (; i < len; ++i, p += 4) {
+            s0 += feat1[i] * feat2.getFloat(p);
+        }
+        return s0 + s1;
+    }
+
+    /**
+     * 点积 (候选向量为 float16，位于连续 short 数组的指定偏移处，逐维展开后累加)
+     */
+    public static float dotHalf(float[] feat1, short[] feat2, int offset) {
+        float s0 = 0.0F;
+        float s1 = 0.0F;
+        int len = feat1.length;
+        int i = 0;
+        for (; i <= len - 8; i += 8) {
+            int p = offset + i;
+            s0 += feat1[i] * HalfFloat.widen(feat2[p]) + feat1[i+1] * HalfFloat.widen(feat2[p+1]) +
+                    feat1[i+2] * HalfFloat.widen(feat2[p+2]) + feat1[i+3] * HalfFloat.widen(feat2[p+3]);
+            s1 += feat1[i+4] * HalfFloat.widen(feat2[p+4]) + feat1[i+5] * HalfFloat.widen(feat2[p+5]) +
+                    feat1[i+6] * HalfFloat.widen(feat2[p+6]) + feat1[i+7] * HalfFloat.widen(feat2[p+7]);
+        }
+        for (; i < len; ++i) {
+            s0 += feat1[i] * HalfFloat.widen(feat2[offset + i]);
+        }
+        return s0 + s1;
+    }
+
+    /**
+     * 点积 (候选向量为 float16，位于堆外缓冲区的指定字节偏移处)
+     */
+    public static float dotHalf(float[] feat1, ByteBuffer feat2, int byteOffset) {
+        float s0 = 0.0F;
+        float s1 = 0.0F;
+        int len = feat1.length;
+        int i = 0;
+        int p = byteOffset;
+        for (; i <= len - 8; i += 8, p += 16) {
+            s0 += feat1[i] * HalfFloat.widen(feat2.getShort(p)) + feat1[i+1] * HalfFloat.widen(feat2.getShort(p + 2)) +
+                    feat1[i+2] * HalfFloat.widen(feat2.getShort(p + 4)) + feat1[i+3] * HalfFloat.widen(feat2.getShort(p + 6));
+            s1 += feat1[i+4] * HalfFloat.widen(feat2.getShort(p + 8)) + feat1[i+5] * HalfFloat.widen(feat2.getShort(p + 10)) +
+                    feat1[i+6] * HalfFloat.widen(feat2.getShort(p + 12)) + feat1[i+7] * HalfFloat.widen(feat2.getShort(p + 14));
+        }
+        for (; i < len; ++i, p += 2) {
+            s0 += feat1[i] * HalfFloat.widen(feat2.getShort(p));
+        }
+        return s0 + s1;
+    }
+
     /**
      * 提取二进制特征 (用于汉明距离粗筛)
      * 将 512字节 的 float 特征压缩量化为 int[] 数组
@@ -138,7 +342,7 @@ public class Face303JavaCalcuater {
     public static boolean isBinaFeatSimilar(int feat11, int feat12, int feat13, int feat14,
                                             int feat21, int feat22, int feat23, int feat24) {
         return isBinaFeatSimilar(feat11, feat12, feat13, feat14,
-                feat21, feat22, feat23, feat24, hamDist);
+                feat21, feat22, feat23, feat24, DEFAULT_HAM_DIST);
     }
 
     /**
@@ -161,4 +365,354 @@ public class Face303JavaCalcuater {
         return dist <= customHamDist;
     }
 
-}
\ No newline at end of file
+    /**
+     * 两个二进制特征的完整汉明距离 (不剪枝)
+     */
+    public static int binaDistance(int[] feat1, int[] feat2) {
+        return Integer.bitCount(feat1[0] ^ feat2[0]) +
+                Integer.bitCount(feat1[1] ^ feat2[1]) +
+                Integer.bitCount(feat1[2] ^ feat2[2]) +
+                Integer.bitCount(feat1[3] ^ feat2[3]);
+    }
+
+    /**
+     * 批量汉明距离粗筛：一个候选与全部查询特征比较，候选编码只加载一次
+     *
+     * @param inputCodes 查询二进制特征按 4 个 int 一组连续存放
+     * @param selected   输出通过粗筛的查询下标
+     * @return 通过粗筛的查询数
+     */
+    public static int filterBinaFeat(int[] inputCodes, int inputSize,
+                                     int feat21, int feat22, int feat23, int feat24,
+                                     int customHamDist, int[] selected) {
+        int count = 0;
+        for (int i = 0, c = 0; i < inputSize; i++, c += 4) {
+            if (isBinaFeatSimilar(inputCodes[c], inputCodes[c + 1], inputCodes[c + 2], inputCodes[c + 3],
+                    feat21, feat22, feat23, feat24, customHamDist)) {
+                selected[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 分块多查询点积：一个候选向量同时与多个查询向量计算点积
+     * 每次取 4 个查询为一组，候选的每个维度只读取一次，4 条独立的累加链同时推进；
+     * 查询数越多，候选向量的加载开销被摊得越薄
+     *
+     * @param inputs   查询向量按 dim 连续存放 (已归一化)
+     * @param selected 参与计算的查询下标，scores[k] 对应 selected[k]
+     */
+    public static void dotBlock(float[] inputs, int dim, int[] selected, int count,
+                                float[] cand, int offset, float[] scores) {
+        if (SIMD != null) {
+            SIMD.dotBlock(inputs, dim, selected, count, cand, offset, scores);
+            return;
+        }
+        int k = 0;
+        for (; k <= count - 4; k += 4) {
+            final int q0 = selected[k] * dim;
+            final int q1 = selected[k + 1] * dim;
+            final int q2 = selected[k + 2] * dim;
+            final int q3 = selected[k + 3] * dim;
+            float s0 = 0.0F, s1 = 0.0F, s2 = 0.0F, s3 = 0.0F;
+            for (int d = 0; d < dim; d++) {
+                final float c = cand[offset + d];
+                s0 += inputs[q0 + d] * c;
+                s1 += inputs[q1 + d] * c;
+                s2 += inputs[q2 + d] * c;
+                s3 += inputs[q3 + d] * c;
+            }
+            scores[k] = s0;
+            scores[k + 1] = s1;
+            scores[k + 2] = s2;
+            scores[k + 3] = s3;
+        }
+        for (; k < count; k++) {
+            final int q = selected[k] * dim;
+            float s0 = 0.0F;
+            for (int d = 0; d < dim; d++) {
+                s0 += inputs[q + d] * cand[offset + d];
+            }
+            scores[k] = s0;
+        }
+    }
+
+    /**
+     * 分块多查询点积 (候选向量位于堆外缓冲区的指定字节偏移处)
+     */
+    public static void dotBlock(float[] inputs, int dim, int[] selected, int count,
+                                ByteBuffer cand, int byteOffset, float[] scores) {
+        if (SIMD != null) {
+            SIMD.dotBlock(inputs, dim, selected, count, cand, byteOffset, scores);
+            return;
+        }
+        int k = 0;
+        for (; k <= count - 4; k += 4) {
+            final int q0 = selected[k] * dim;
+            final int q1 = selected[k + 1] * dim;
+            final int q2 = selected[k + 2] * dim;
+            final int q3 = selected[k + 3] * dim;
+            float s0 = 0.0F, s1 = 0.0F, s2 = 0.0F, s3 = 0.0F;
+            for (int d = 0, p = byteOffset; d < dim; d++, p += 4) {
+                final float c = cand.getFloat(p);
+                s0 += inputs[q0 + d] * c;
+                s1 += inputs[q1 + d] * c;
+                s2 += inputs[q2 + d] * c;
+                s3 += inputs[q3 + d] * c;
+            }
+            scores[k] = s0;
+            scores[k + 1] = s1;
+            scores[k + 2] = s2;
+            scores[k + 3] = s3;
+        }
+        for (; k < count; k++) {
+            final int q = selected[k] * dim;
+            float s0 = 0.0F;
+            for (int d = 0, p = byteOffset; d < dim; d++, p += 4) {
+                s0 += inputs[q + d] * cand.getFloat(p);
+            }
+            scores[k] = s0;
+        }
+    }
+
+    /**
+     * 分块多查询点积 (候选向量为 float16，位于连续 short 数组的指定偏移处)，候选每维只展开一次
+     */
+    public static void dotBlockHalf(float[] inputs, int dim, int[] selected, int count,
+                                    short[] cand, int offset, float[] scores) {
+        int k = 0;
+        for (; k <= count - 4; k += 4) {
+            final int q0 = selected[k] * dim;
+            final int q1 = selected[k + 1] * dim;
+            final int q2 = selected[k + 2] * dim;
+            final int q3 = selected[k + 3] * dim;
+            float s0 = 0.0F, s1 = 0.0F, s2 = 0.0F, s3 = 0.0F;
+            for (int d = 0; d < dim; d++) {
+                final float c = HalfFloat.widen(cand[offset + d]);
+                s0 += inputs[q0 + d] * c;
+                s1 += inputs[q1 + d] * c;
+                s2 += inputs[q2 + d] * c;
+                s3 += inputs[q3 + d] * c;
+            }
+            scores[k] = s0;
+            scores[k + 1] = s1;
+            scores[k + 2] = s2;
+            scores[k + 3] = s3;
+        }
+        for (; k < count; k++) {
+            final int q = selected[k] * dim;
+            float s0 = 0.0F;
+            for (int d = 0; d < dim; d++) {
+                s0 += inputs[q + d] * HalfFloat.widen(cand[offset + d]);
+            }
+            scores[k] = s0;
+        }
+    }
+
+    /**
+     * 分块多查询点积 (候选向量为 float16，位于堆外缓冲区的指定字节偏移处)
+     */
+    public static void dotBlockHalf(float[] inputs, int dim, int[] selected, int count,
+                                    ByteBuffer cand, int byteOffset, float[] scores) {
+        int k = 0;
+        for (; k <= count - 4; k += 4) {
+            final int q0 = selected[k] * dim;
+            final int q1 = selected[k + 1] * dim;
+            final int q2 = selected[k + 2] * dim;
+            final int q3 = selected[k + 3] * dim;
+            float s0 = 0.0F, s1 = 0.0F, s2 = 0.0F, s3 = 0.0F;
+            for (int d = 0, p = byteOffset; d < dim; d++, p += 2) {
+                final float c = HalfFloat.widen(cand.getShort(p));
+                s0 += inputs[q0 + d] * c;
+                s1 += inputs[q1 + d] * c;
+                s2 += inputs[q2 + d] * c;
+                s3 += inputs[q3 + d] * c;
+            }
+            scores[k] = s0;
+            scores[k + 1] = s1;
+            scores[k + 2] = s2;
+            scores[k + 3] = s3;
+        }
+        for (; k < count; k++) {
+            final int q = selected[k] * dim;
+            float s0 = 0.0F;
+            for (int d = 0, p = byteOffset; d < dim; d++, p += 2) {
+                s0 += inputs[q + d] * HalfFloat.widen(cand.getShort(p));
+            }
+            scores[k] = s0;
+        }
+    }
+
+    /**
+     * 有界点积的分块维数：每算完一块检查一次上界
+     */
+    public static final int BOUND_CHUNK = 32;
+    // 上界比较的浮点误差余量，保证恰好等于阈值的候选不会因舍入被误放弃
+    private static final float BOUND_EPSILON = 1.0E-5F;
+    // 阈值低于该值时很少能在中途放弃，分块检查的开销大于少算的维度
+    private static final float BOUND_MIN_THRESHOLD = 0.6F;
+
+    /**
+     * 给定阈值下有界点积是否划算：
+     * 向量化内核算完 128 维只需几条 FMA，中途归约检查反而更慢，因此只在标量内核且阈值足够高时启用
+     */
+    public static boolean isBoundedWorthwhile(float threshold) {
+        return SIMD == null && threshold >= BOUND_MIN_THRESHOLD;
+    }
+
+    /**
+     * 查询向量的分块后缀范数：suffix[i * (dim / BOUND_CHUNK) + c] 为第 i 个查询第 c 块之后全部维度的 L2 范数
+     *
+     * @param inputs 查询向量按 dim 连续存放，dim 须为 BOUND_CHUNK 的整数倍
+     */
+    public static float[] suffixNorms(float[] inputs, int dim, int count) {
+        final int chunks = dim / BOUND_CHUNK;
+        float[] suffix = new float[count * chunks];
+        for (int i = 0; i < count; i++) {
+            double rest = 0.0;
+            for (int c = chunks - 1; c >= 0; c--) {
+                suffix[i * chunks + c] = (float) Math.sqrt(rest);
+                final int base = i * dim + c * BOUND_CHUNK;
+                for (int d = 0; d < BOUND_CHUNK; d++) {
+                    rest += inputs[base + d] * inputs[base + d];
+                }
+            }
+        }
+        return suffix;
+    }
+
+    /**
+     * 有界点积 (查询与候选均已归一化)：按 BOUND_CHUNK 分块累加，每块结束时由 Cauchy–Schwarz 不等式
+     * 剩余维度的点积不超过 ||q_rest|| · ||c_rest|| <= ||q_rest|| (候选为单位向量)；
+     * 已算部分加上该上界仍低于 threshold 时提前放弃。
+     * 不跟踪候选的已算范数：那样上界更紧，但每维多一次乘加，实测抵消了少算维度的收益
+     *
+     * @param suffix 查询的分块后缀范数，见 suffixNorms
+     * @return 精确点积；提前放弃时返回低于 threshold 的上界
+     */
+    public static float dotBounded(float[] inputs, int q, float[] suffix, int s, int dim,
+                                   float[] cand, int offset, float threshold) {
+        float sum = 0.0F;
+        final int chunks = dim / BOUND_CHUNK;
+        for (int c = 0; c < chunks; c++) {
+            final int d0 = c * BOUND_CHUNK;
+            float s0 = 0.0F, s1 = 0.0F;
+            for (int d = d0; d < d0 + BOUND_CHUNK; d += 8) {
+                final int i = q + d;
+                final int p = offset + d;
+                s0 += inputs[i] * cand[p] + inputs[i+1] * cand[p+1] +
+                        inputs[i+2] * cand[p+2] + inputs[i+3] * cand[p+3];
+                s1 += inputs[i+4] * cand[p+4] + inputs[i+5] * cand[p+5] +
+                        inputs[i+6] * cand[p+6] + inputs[i+7] * cand[p+7];
+            }
+            sum += s0 + s1;
+            if (c < chunks - 1) {
+                final float bound = sum + suffix[s + c];
+                if (bound + BOUND_EPSILON < threshold) return bound;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 有界点积 (候选向量位于堆外缓冲区的指定字节偏移处)
+     */
+    public static float dotBounded(float[] inputs, int q, float[] suffix, int s, int dim,
+                                   ByteBuffer cand, int byteOffset, float threshold) {
+        float sum = 0.0F;
+        final int chunks = dim / BOUND_CHUNK;
+        for (int c = 0; c < chunks; c++) {
+            final int d0 = c * BOUND_CHUNK;
+            float s0 = 0.0F, s1 = 0.0F;
+            for (int d = d0, p = byteOffset + d0 * 4; d < d0 + BOUND_CHUNK; d += 8, p += 32) {
+                final int i = q + d;
+                s0 += inputs[i] * cand.getFloat(p) + inputs[i+1] * cand.getFloat(p + 4) +
+                        inputs[i+2] * cand.getFloat(p + 8) + inputs[i+3] * cand.getFloat(p + 12);
+                s1 += inputs[i+4] * cand.getFloat(p + 16) + inputs[i+5] * cand.getFloat(p + 20) +
+                        inputs[i+6] * cand.getFloat(p + 24) + inputs[i+7] * cand.getFloat(p + 28);
+            }
+            sum += s0 + s1;
+            if (c < chunks - 1) {
+                final float bound = sum + suffix[s + c];
+                if (bound + BOUND_EPSILON < threshold) return bound;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 有界点积 (候选向量为 float16，位于连续 short 数组的指定偏移处)
+     */
+    public static float dotBoundedHalf(float[] inputs, int q, float[] suffix, int s, int dim,
+                                       short[] cand, int offset, float threshold) {
+        float sum = 0.0F;
+        final int chunks = dim / BOUND_CHUNK;
+        for (int c = 0; c < chunks; c++) {
+            final int d0 = c * BOUND_CHUNK;
+            float s0 = 0.0F, s1 = 0.0F;
+            for (int d = d0; d < d0 + BOUND_CHUNK; d += 8) {
+                final int i = q + d;
+                final int p = offset + d;
+                s0 += inputs[i] * HalfFloat.widen(cand[p]) + inputs[i+1] * HalfFloat.widen(cand[p+1]) +
+                        inputs[i+2] * HalfFloat.widen(cand[p+2]) + inputs[i+3] * HalfFloat.widen(cand[p+3]);
+                s1 += inputs[i+4] * HalfFloat.widen(cand[p+4]) + inputs[i+5] * HalfFloat.widen(cand[p+5]) +
+                        inputs[i+6] * HalfFloat.widen(cand[p+6]) + inputs[i+7] * HalfFloat.widen(cand[p+7]);
+            }
+            sum += s0 + s1;
+            if (c < chunks - 1) {
+                final float bound = sum + suffix[s + c];
+                if (bound + BOUND_EPSILON < threshold) return bound;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 有界点积 (候选向量为 float16，位于堆外缓冲区的指定字节偏移处)
+     */
+    public static float dotBoundedHalf(float[] inputs, int q, float[] suffix, int s, int dim,
+                                       ByteBuffer cand, int byteOffset, float threshold) {
+        float sum = 0.0F;
+        final int chunks = dim / BOUND_CHUNK;
+        for (int c = 0; c < chunks; c++) {
+            final int d0 = c * BOUND_CHUNK;
+            float s0 = 0.0F, s1 = 0.0F;
+            for (int d = d0, p = byteOffset + d0 * 2; d < d0 + BOUND_CHUNK; d += 8, p += 16) {
+                final int i = q + d;
+                s0 += inputs[i] * HalfFloat.widen(cand.getShort(p)) + inputs[i+1] * HalfFloat.widen(cand.getShort(p + 2)) +
+                        inputs[i+2] * HalfFloat.widen(cand.getShort(p + 4)) + inputs[i+3] * HalfFloat.widen(cand.getShort(p + 6));
+                s1 += inputs[i+4] * HalfFloat.widen(cand.getShort(p + 8)) + inputs[i+5] * HalfFloat.widen(cand.getShort(p + 10)) +
+                        inputs[i+6] * HalfFloat.widen(cand.getShort(p + 12)) + inputs[i+7] * HalfFloat.widen(cand.getShort(p + 14));
+            }
+            sum += s0 + s1;
+            if (c < chunks - 1) {
+                final float bound = sum + suffix[s + c];
+                if (bound + BOUND_EPSILON < threshold) return bound;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 分块多查询有界点积：scores[k] 为 selected[k] 的精确点积，或确定低于 threshold 时的上界
+     */
+    public static void dotBlockBounded(float[] inputs, int dim, float[] suffix, int[] selected, int count,
+                                       float[] cand, int offset, float threshold, float[] scores) {
+        final int chunks = dim / BOUND_CHUNK;
+        for (int k = 0; k < count; k++) {
+            final int i = selected[k];
+            scores[k] = dotBounded(inputs, i * dim, suffix, i * chunks, dim, cand, offset, threshold);
+        }
+    }
+
+    public static void dotBlockBounded(float[] inputs, int dim, float[] suffix, int[] selected, int count,
+                                       ByteBuffer cand, int byteOffset, float threshold, float[] scores) {
+        final int chunks = dim / BOUND_CHUNK;
+        for (int k = 0; k < count; k++) {
+            final int i = selected[k];
+            scores[k] = dotBounded(inputs, i * dim, suffix, i * chunks, dim, cand, byteOffset, threshold);
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.biometric.algo.util;
+
+/**
+ * 半精度浮点 (IEEE 754 binary16) 转换工具
+ *
+ * 特征向量以 float16 位模式 (short) 存储时，单个 128 维向量由 512B 降为 256B；
+ * 比对时逐维展开为 float 后沿用原有的点积内核。归一化向量各分量绝对值不超过 1，
+ * float16 的 11 位有效精度带来的余弦误差在 1e-4 量级，不影响 TopN 排序。
+ */
+public final class HalfFloat {
+
+    private HalfFloat() {
+    }
+
+    /**
+     * float -> float16 (就近舍入，平局取偶)，超出范围时为无穷大，过小时为 0
+     */
+    public static short fromFloat(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exp == 0xFF) {
+            // 无穷大与 NaN (NaN 保留为静默 NaN)
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int e = exp - 127 + 15;
+        if (e >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (e <= 0) {
+            // 非规格化数
+            if (e < -10) return (short) sign;
+            mantissa |= 0x800000;
+            int shift = 14 - e;
+            int half = mantissa >> shift;
+            int rem = mantissa & ((1 << shift) - 1);
+            int mid = 1 << (shift - 1);
+            if (rem > mid || (rem == mid && (half & 1) != 0)) half++;
+            return (short) (sign | half);
+        }
+        int half = (e << 10) | (mantissa >> 13);
+        int rem = mantissa & 0x1FFF;
+        // 进位可能进入指数位，结果仍正确 (最大值之上进位为无穷大)
+        if (rem > 0x1000 || (rem == 0x1000 && (half & 1) != 0)) half++;
+        return (short) (sign | half);
+    }
+
+    /**
+     * float16 -> float (精确)
+     */
+    public static float toFloat(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exp = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        if (exp == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        if (exp == 0) {
+            float value = mantissa * 0x1p-24f;
+            return sign != 0 ? -value : value;
+        }
+        return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * float16 -> float，只处理有限值 (无穷大与 NaN 的结果无意义)，供评分内核逐维展开
+     * 位模式移入 float 的指数与尾数位后乘 2^112 校正指数偏置，非规格化数同样正确，无分支
+     */
+    public static float widen(short half) {
+        return Float.intBitsToFloat(((half & 0x8000) << 16) | ((half & 0x7FFF) << 13)) * 0x1p112f;
+    }
+
+    /**
+     * 向量转换为 float16
+     */
+    public static short[] encode(float[] vector) {
+        short[] result = new short[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = fromFloat(vector[i]);
+        }
+        return result;
+    }
+
+    /**
+     * float16 向量展开为 float，dst 长度一致时复用，否则新建
+     */
+    public static float[] decode(short[] half, float[] dst) {
+        float[] result = dst != null && dst.length == half.length ? dst : new float[half.length];
+        for (int i = 0; i < half.length; i++) {
+            result[i] = toFloat(half[i]);
+        }
+        return result;
+    }
+
+}
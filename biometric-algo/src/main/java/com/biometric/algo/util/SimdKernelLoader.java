@@ -0,0 +1,44 @@
+package com.biometric.algo.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按运行环境选择评分内核
+ *
+ * VectorApiKernels 只存在于多版本 jar 的 META-INF/versions/17 中，Java 8 上不可见；
+ * 可通过 -Dbiometric.simd=false 强制使用标量实现。
+ */
+final class SimdKernelLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(SimdKernelLoader.class);
+
+    private static final String VECTOR_KERNELS = "com.biometric.algo.util.VectorApiKernels";
+    static final String SCALAR_NAME = "scalar (unrolled)";
+
+    private SimdKernelLoader() {
+    }
+
+    /**
+     * @return 向量化内核，不可用时返回 null
+     */
+    static SimdKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("biometric.simd", "true"))) {
+            log.info("评分内核: {} (biometric.simd=false)", SCALAR_NAME);
+            return null;
+        }
+        try {
+            SimdKernels kernels = (SimdKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+            log.info("评分内核: {}", kernels.name());
+            return kernels;
+        } catch (ClassNotFoundException e) {
+            log.info("评分内核: {} (Java {} 无向量化实现)", SCALAR_NAME, System.getProperty("java.specification.version"));
+        } catch (Throwable e) {
+            // 类存在但 jdk.incubator.vector 模块未加载
+            log.info("评分内核: {} (Vector API 不可用: {}，JDK 17+ 可添加 --add-modules jdk.incubator.vector)",
+                    SCALAR_NAME, e.toString());
+        }
+        return null;
+    }
+
+}
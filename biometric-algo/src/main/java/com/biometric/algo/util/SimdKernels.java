@@ -0,0 +1,36 @@
+package com.biometric.algo.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 向量化评分内核
+ *
+ * JDK 17+ 上由多版本 jar 中的 VectorApiKernels (jdk.incubator.vector) 实现，
+ * 加载失败 (Java 8、未添加 --add-modules jdk.incubator.vector 或被显式关闭) 时
+ * Face303JavaCalcuater 使用原有的标量展开实现。语义与对应的标量方法完全一致。
+ */
+interface SimdKernels {
+
+    /**
+     * 内核描述 (实现与向量宽度)，启动时打印
+     */
+    String name();
+
+    /**
+     * 小端字节序原始特征解码为 float，out.length = raw.length / 4
+     */
+    void decode(byte[] raw, float[] out);
+
+    float compare(float[] feat1, float[] feat2, int offset);
+
+    float compare(float[] feat1, ByteBuffer feat2, int byteOffset);
+
+    float dot(float[] feat1, float[] feat2, int offset);
+
+    float dot(float[] feat1, ByteBuffer feat2, int byteOffset);
+
+    void dotBlock(float[] inputs, int dim, int[] selected, int count, float[] cand, int offset, float[] scores);
+
+    void dotBlock(float[] inputs, int dim, int[] selected, int count, ByteBuffer cand, int byteOffset, float[] scores);
+
+}
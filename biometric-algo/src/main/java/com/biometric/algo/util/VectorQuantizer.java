@@ -0,0 +1,100 @@
+package com.biometric.algo.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 特征向量标量量化工具 (float -> int8)
+ *
+ * 每个向量独立计算缩放系数 scale = max|v| / 127，q[i] = round(v[i] / scale)。
+ * 量化后单个 128 维向量由 512B 降为 128B，整数点积用于候选粗排，
+ * 最终分数仍由原始浮点向量精排得到。
+ */
+public final class VectorQuantizer {
+
+    private static final int LEVELS = 127;
+
+    private VectorQuantizer() {
+    }
+
+    /**
+     * 计算向量的量化缩放系数
+     */
+    public static float scale(float[] vector) {
+        float maxAbs = 0.0F;
+        for (float v : vector) {
+            float abs = Math.abs(v);
+            if (abs > maxAbs) maxAbs = abs;
+        }
+        return maxAbs / LEVELS;
+    }
+
+    /**
+     * 按给定缩放系数量化向量
+     */
+    public static byte[] quantize(float[] vector, float scale) {
+        byte[] result = new byte[vector.length];
+        if (scale <= 0.0F) return result;
+        float inv = 1.0F / scale;
+        for (int i = 0; i < vector.length; i++) {
+            int q = Math.round(vector[i] * inv);
+            result[i] = (byte) Math.max(-LEVELS, Math.min(LEVELS, q));
+        }
+        return result;
+    }
+
+    /**
+     * 向量 L2 范数
+     */
+    public static float norm(float[] vector) {
+        double sum = 0.0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    /**
+     * 余弦换算系数: cos ≈ dot(q1, q2) * factor1 * factor2，其中 factor = scale / norm
+     */
+    public static float cosineFactor(float scale, float norm) {
+        return norm < 1.0E-9F ? 0.0F : scale / norm;
+    }
+
+    /**
+     * int8 整数点积 (候选向量位于连续数组的指定偏移处)
+     * 循环展开步长为 8，累加在 int 中完成，128 维不会溢出
+     */
+    public static int dot(byte[] q1, byte[] q2, int offset) {
+        int s0 = 0, s1 = 0;
+        int len = q1.length;
+        int i = 0;
+        for (; i <= len - 8; i += 8) {
+            int p = offset + i;
+            s0 += q1[i] * q2[p] + q1[i + 1] * q2[p + 1] + q1[i + 2] * q2[p + 2] + q1[i + 3] * q2[p + 3];
+            s1 += q1[i + 4] * q2[p + 4] + q1[i + 5] * q2[p + 5] + q1[i + 6] * q2[p + 6] + q1[i + 7] * q2[p + 7];
+        }
+        for (; i < len; i++) {
+            s0 += q1[i] * q2[offset + i];
+        }
+        return s0 + s1;
+    }
+
+    /**
+     * int8 整数点积 (候选向量位于堆外缓冲区的指定字节偏移处)
+     */
+    public static int dot(byte[] q1, ByteBuffer q2, int byteOffset) {
+        int s0 = 0, s1 = 0;
+        int len = q1.length;
+        int i = 0;
+        for (; i <= len - 8; i += 8) {
+            int p = byteOffset + i;
+            s0 += q1[i] * q2.get(p) + q1[i + 1] * q2.get(p + 1) + q1[i + 2] * q2.get(p + 2) + q1[i + 3] * q2.get(p + 3);
+            s1 += q1[i + 4] * q2.get(p + 4) + q1[i + 5] * q2.get(p + 5) + q1[i + 6] * q2.get(p + 6) + q1[i + 7] * q2.get(p + 7);
+        }
+        for (; i < len; i++) {
+            s0 += q1[i] * q2.get(byteOffset + i);
+        }
+        return s0 + s1;
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.biometric.algo.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 基于 jdk.incubator.vector 的评分内核 (仅编译进多版本 jar 的 META-INF/versions/17)
+ *
+ * 使用本机首选向量宽度 (AVX2 为 8 路、AVX-512 为 16 路 float)，FMA 累加；
+ * 128 维特征恰好是向量宽度的整数倍，尾部标量循环只为兼容其他维度。
+ * 运行时须添加 --add-modules jdk.incubator.vector，否则由 SimdKernelLoader 退回标量实现。
+ */
+final class VectorApiKernels implements SimdKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final ByteOrder NATIVE = ByteOrder.nativeOrder();
+
+    @Override
+    public String name() {
+        return "Vector API (" + SPECIES.vectorBitSize() + "-bit, " + LANES + " lanes)";
+    }
+
+    @Override
+    public void decode(byte[] raw, float[] out) {
+        final int len = out.length;
+        final int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            FloatVector.fromByteArray(SPECIES, raw, i * 4, ByteOrder.LITTLE_ENDIAN).intoArray(out, i);
+        }
+        for (; i < len; i++) {
+            final int p = i * 4;
+            out[i] = Float.intBitsToFloat((raw[p] & 0xFF) | (raw[p + 1] & 0xFF) << 8
+                    | (raw[p + 2] & 0xFF) << 16 | raw[p + 3] << 24);
+        }
+    }
+
+    @Override
+    public float compare(float[] feat1, float[] feat2, int offset) {
+        final int len = feat1.length;
+        final int bound = SPECIES.loopBound(len);
+        FloatVector n1 = FloatVector.zero(SPECIES);
+        FloatVector n2 = FloatVector.zero(SPECIES);
+        FloatVector dp = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            FloatVector a = FloatVector.fromArray(SPECIES, feat1, i);
+            FloatVector b = FloatVector.fromArray(SPECIES, feat2, offset + i);
+            n1 = a.fma(a, n1);
+            n2 = b.fma(b, n2);
+            dp = a.fma(b, dp);
+        }
+        float s1 = n1.reduceLanes(VectorOperators.ADD);
+        float s2 = n2.reduceLanes(VectorOperators.ADD);
+        float s3 = dp.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            final float a = feat1[i];
+            final float b = feat2[offset + i];
+            s1 += a * a;
+            s2 += b * b;
+            s3 += a * b;
+        }
+        return cosine(s1, s2, s3);
+    }
+
+    @Override
+    public float compare(float[] feat1, ByteBuffer feat2, int byteOffset) {
+        final int len = feat1.length;
+        final int bound = SPECIES.loopBound(len);
+        FloatVector n1 = FloatVector.zero(SPECIES);
+        FloatVector n2 = FloatVector.zero(SPECIES);
+        FloatVector dp = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            FloatVector a = FloatVector.fromArray(SPECIES, feat1, i);
+            FloatVector b = FloatVector.fromByteBuffer(SPECIES, feat2, byteOffset + i * 4, NATIVE);
+            n1 = a.fma(a, n1);
+            n2 = b.fma(b, n2);
+            dp = a.fma(b, dp);
+        }
+        float s1 = n1.reduceLanes(VectorOperators.ADD);
+        float s2 = n2.reduceLanes(VectorOperators.ADD);
+        float s3 = dp.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            final float a = feat1[i];
+            final float b = feat2.getFloat(byteOffset + i * 4);
+            s1 += a * a;
+            s2 += b * b;
+            s3 += a * b;
+        }
+        return cosine(s1, s2, s3);
+    }
+
+    private static float cosine(float s1, float s2, float s3) {
+        double denominator = Math.sqrt((double) (s1 * s2));
+        if (denominator < 1.0E-9) {
+            return 0.0F;
+        }
+        return (float) (s3 / denominator);
+    }
+
+    @Override
+    public float dot(float[] feat1, float[] feat2, int offset) {
+        final int len = feat1.length;
+        final int bound = SPECIES.loopBound(len);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            acc = FloatVector.fromArray(SPECIES, feat1, i)
+                    .fma(FloatVector.fromArray(SPECIES, feat2, offset + i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            sum += feat1[i] * feat2[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] feat1, ByteBuffer feat2, int byteOffset) {
+        final int len = feat1.length;
+        final int bound = SPECIES.loopBound(len);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            acc = FloatVector.fromArray(SPECIES, feat1, i)
+                    .fma(FloatVector.fromByteBuffer(SPECIES, feat2, byteOffset + i * 4, NATIVE), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            sum += feat1[i] * feat2.getFloat(byteOffset + i * 4);
+        }
+        return sum;
+    }
+
+    /**
+     * 每次取 4 个查询为一组，候选向量的每个分块只加载一次，与 4 个查询分块同时 FMA
+     */
+    @Override
+    public void dotBlock(float[] inputs, int dim, int[] selected, int count, float[] cand, int offset, float[] scores) {
+        final int bound = SPECIES.loopBound(dim);
+        int k = 0;
+        for (; k <= count - 4; k += 4) {
+            final int q0 = selected[k] * dim;
+            final int q1 = selected[k + 1] * dim;
+            final int q2 = selected[k + 2] * dim;
+            final int q3 = selected[k + 3] * dim;
+            FloatVector a0 = FloatVector.zero(SPECIES);
+            FloatVector a1 = FloatVector.zero(SPECIES);
+            FloatVector a2 = FloatVector.zero(SPECIES);
+            FloatVector a3 = FloatVector.zero(SPECIES);
+            int d = 0;
+            for (; d < bound; d += LANES) {
+                FloatVector c = FloatVector.fromArray(SPECIES, cand, offset + d);
+                a0 = FloatVector.fromArray(SPECIES, inputs, q0 + d).fma(c, a0);
+                a1 = FloatVector.fromArray(SPECIES, inputs, q1 + d).fma(c, a1);
+                a2 = FloatVector.fromArray(SPECIES, inputs, q2 + d).fma(c, a2);
+                a3 = FloatVector.fromArray(SPECIES, inputs, q3 + d).fma(c, a3);
+            }
+            float s0 = a0.reduceLanes(VectorOperators.ADD);
+            float s1 = a1.reduceLanes(VectorOperators.ADD);
+            float s2 = a2.reduceLanes(VectorOperators.ADD);
+            float s3 = a3.reduceLanes(VectorOperators.ADD);
+            for (; d < dim; d++) {
+                final float c = cand[offset + d];
+                s0 += inputs[q0 + d] * c;
+                s1 += inputs[q1 + d] * c;
+                s2 += inputs[q2 + d] * c;
+                s3 += inputs[q3 + d] * c;
+            }
+            scores[k] = s0;
+            scores[k + 1] = s1;
+            scores[k + 2] = s2;
+            scores[k + 3] = s3;
+        }
+        for (; k < count; k++) {
+            scores[k] = dotAt(inputs, selected[k] * dim, dim, cand, offset);
+        }
+    }
+
+    @Override
+    public void dotBlock(float[] inputs, int dim, int[] selected, int count, ByteBuffer cand, int byteOffset, float[] scores) {
+        final int bound = SPECIES.loopBound(dim);
+        int k = 0;
+        for (; k <= count - 4; k += 4) {
+            final int q0 = selected[k] * dim;
+            final int q1 = selected[k + 1] * dim;
+            final int q2 = selected[k + 2] * dim;
+            final int q3 = selected[k + 3] * dim;
+            FloatVector a0 = FloatVector.zero(SPECIES);
+            FloatVector a1 = FloatVector.zero(SPECIES);
+            FloatVector a2 = FloatVector.zero(SPECIES);
+            FloatVector a3 = FloatVector.zero(SPECIES);
+            int d = 0;
+            for (; d < bound; d += LANES) {
+                FloatVector c = FloatVector.fromByteBuffer(SPECIES, cand, byteOffset + d * 4, NATIVE);
+                a0 = FloatVector.fromArray(SPECIES, inputs, q0 + d).fma(c, a0);
+                a1 = FloatVector.fromArray(SPECIES, inputs, q1 + d).fma(c, a1);
+                a2 = FloatVector.fromArray(SPECIES, inputs, q2 + d).fma(c, a2);
+                a3 = FloatVector.fromArray(SPECIES, inputs, q3 + d).fma(c, a3);
+            }
+            float s0 = a0.reduceLanes(VectorOperators.ADD);
+            float s1 = a1.reduceLanes(VectorOperators.ADD);
+            float s2 = a2.reduceLanes(VectorOperators.ADD);
+            float s3 = a3.reduceLanes(VectorOperators.ADD);
+            for (; d < dim; d++) {
+                final float c = cand.getFloat(byteOffset + d * 4);
+                s0 += inputs[q0 + d] * c;
+                s1 += inputs[q1 + d] * c;
+                s2 += inputs[q2 + d] * c;
+                s3 += inputs[q3 + d] * c;
+            }
+            scores[k] = s0;
+            scores[k + 1] = s1;
+            scores[k + 2] = s2;
+            scores[k + 3] = s3;
+        }
+        for (; k < count; k++) {
+            scores[k] = dotAt(inputs, selected[k] * dim, dim, cand, byteOffset);
+        }
+    }
+
+    private static float dotAt(float[] inputs, int q, int dim, float[] cand, int offset) {
+        final int bound = SPECIES.loopBound(dim);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int d = 0;
+        for (; d < bound; d += LANES) {
+            acc = FloatVector.fromArray(SPECIES, inputs, q + d)
+                    .fma(FloatVector.fromArray(SPECIES, cand, offset + d), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; d < dim; d++) {
+            sum += inputs[q + d] * cand[offset + d];
+        }
+        return sum;
+    }
+
+    private static float dotAt(float[] inputs, int q, int dim, ByteBuffer cand, int byteOffset) {
+        final int bound = SPECIES.loopBound(dim);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int d = 0;
+        for (; d < bound; d += LANES) {
+            acc = FloatVector.fromArray(SPECIES, inputs, q + d)
+                    .fma(FloatVector.fromByteBuffer(SPECIES, cand, byteOffset + d * 4, NATIVE), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; d < dim; d++) {
+            sum += inputs[q + d] * cand.getFloat(byteOffset + d * 4);
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,254 @@
+package com.biometric.algo.dto;
+
+import com.biometric.algo.config.BiometricDataSerializableFactory;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.internal.serialization.impl.HeapData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PersonFaceData 各序列化布局的往返，mayMatch 的固定偏移与 writeData 实际输出一致，
+ * 以及与最初版本 (滚动升级前的旧节点) 的字节兼容
+ *
+ * person-face-data-baseline-*.bin 由最初版本的 PersonFaceData / CachedFaceFeature 序列化 {@link #baselineFixture()}
+ * 得到 (大端 / 小端各一份)，不随当前代码重新生成。
+ */
+class PersonFaceDataLayoutTest {
+
+    private static final int HAM_DIST = 10;
+
+    private final Random random = new Random(42);
+
+    @AfterEach
+    void restoreLayout() {
+        PersonFaceData.setWriteLayout(PersonFaceData.LAYOUT_LEGACY);
+    }
+
+    @Test
+    void defaultLayoutIsLegacy() {
+        assertEquals(PersonFaceData.LAYOUT_LEGACY, PersonFaceData.getWriteLayout());
+    }
+
+    @Test
+    void roundTripAllLayouts() {
+        for (boolean nativeOrder : new boolean[]{true, false}) {
+            InternalSerializationService ss = serializationService(nativeOrder);
+            try {
+                for (int layout = PersonFaceData.LAYOUT_LEGACY; layout <= PersonFaceData.LAYOUT_FLAT; layout++) {
+                    PersonFaceData.setWriteLayout(layout);
+                    PersonFaceData person = person(randomCode(), randomCode());
+                    PersonFaceData copy = ss.toObject(ss.toData(person));
+
+                    assertEquals(person.getPersonId(), copy.getPersonId());
+                    assertArrayEquals(person.getGroupIds(), copy.getGroupIds());
+                    assertEquals(person.getFeatures().size(), copy.getFeatures().size());
+                    for (int i = 0; i < person.getFeatures().size(); i++) {
+                        CachedFaceFeature expected = person.getFeatures().get(i);
+                        CachedFaceFeature actual = copy.getFeatures().get(i);
+                        assertEquals(expected.getFaceId(), actual.getFaceId());
+                        assertArrayEquals(expected.getBinaryFeature(), actual.getBinaryFeature());
+                        assertArrayEquals(expected.getFeatureVector(), actual.getFeatureVector());
+                    }
+                }
+            } finally {
+                ss.dispose();
+            }
+        }
+    }
+
+    @Test
+    void mayMatchReadsCodesWrittenByWriteData() {
+        for (boolean nativeOrder : new boolean[]{true, false}) {
+            InternalSerializationService ss = serializationService(nativeOrder);
+            try {
+                for (int layout : new int[]{PersonFaceData.LAYOUT_CODES, PersonFaceData.LAYOUT_FLAT}) {
+                    PersonFaceData.setWriteLayout(layout);
+                    int[] first = randomCode();
+                    int[] second = randomCode();
+                    byte[] bytes = ss.toData(person(first, second)).toByteArray();
+
+                    assertTrue(PersonFaceData.mayMatch(bytes, first, 1, HAM_DIST), "layout " + layout);
+                    assertTrue(PersonFaceData.mayMatch(bytes, second, 1, HAM_DIST), "layout " + layout);
+                    assertTrue(PersonFaceData.mayMatch(bytes, concat(invert(first), second), 2, HAM_DIST),
+                            "layout " + layout);
+                    // 取反的编码与两张人脸的汉明距离均为 128
+                    int[] far = invert(first);
+                    if (hamming(far, second) > HAM_DIST) {
+                        assertFalse(PersonFaceData.mayMatch(bytes, far, 1, HAM_DIST), "layout " + layout);
+                    }
+                }
+            } finally {
+                ss.dispose();
+            }
+        }
+    }
+
+    @Test
+    void mayMatchPassesLegacyBytes() {
+        InternalSerializationService ss = serializationService(true);
+        try {
+            PersonFaceData.setWriteLayout(PersonFaceData.LAYOUT_LEGACY);
+            int[] code = randomCode();
+            Data data = ss.toData(person(code));
+            assertTrue(PersonFaceData.mayMatch(data.toByteArray(), invert(code), 1, HAM_DIST));
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    @Test
+    void readsBaselineBytes() throws Exception {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            InternalSerializationService ss = serializationService(order);
+            try {
+                PersonFaceData expected = baselineFixture();
+                PersonFaceData actual = ss.toObject(new HeapData(baselineBytes(order)));
+
+                assertEquals(expected.getPersonId(), actual.getPersonId());
+                assertArrayEquals(expected.getGroupIds(), actual.getGroupIds());
+                assertEquals(expected.getFeatures().size(), actual.getFeatures().size());
+                for (int i = 0; i < expected.getFeatures().size(); i++) {
+                    CachedFaceFeature e = expected.getFeatures().get(i);
+                    CachedFaceFeature a = actual.getFeatures().get(i);
+                    assertEquals(e.getFaceId(), a.getFaceId());
+                    assertEquals(e.getTemplateType(), a.getTemplateType());
+                    assertEquals(e.getAlgoType(), a.getAlgoType());
+                    assertArrayEquals(e.getFeatureData(), a.getFeatureData());
+                    assertArrayEquals(e.getBinaryFeature(), a.getBinaryFeature());
+                    assertArrayEquals(e.getFeatureVector(), a.getFeatureVector());
+                    assertNull(a.getQuantizedVector());
+                    assertNull(a.getLongCode());
+                }
+                // 最初的格式不携带归一化标记，读取时按模长判定
+                assertTrue(actual.getFeatures().get(0).isNormalized());
+                assertFalse(actual.getFeatures().get(1).isNormalized());
+                assertFalse(actual.getFeatures().get(2).isNormalized());
+            } finally {
+                ss.dispose();
+            }
+        }
+    }
+
+    @Test
+    void legacyLayoutWritesBaselineBytes() throws Exception {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            InternalSerializationService ss = serializationService(order);
+            try {
+                PersonFaceData.setWriteLayout(PersonFaceData.LAYOUT_LEGACY);
+                PersonFaceData person = baselineFixture();
+                // 加载阶段的派生字段不进入最初的格式
+                for (CachedFaceFeature feature : person.getFeatures()) {
+                    feature.setNormalized(true);
+                    feature.setQuantizedVector(new byte[128]);
+                    feature.setQuantizedScale(0.01F);
+                    feature.setLongCode(new long[4]);
+                }
+                assertArrayEquals(baselineBytes(order), ss.toData(person).toByteArray(), order.toString());
+            } finally {
+                ss.dispose();
+            }
+        }
+    }
+
+    /**
+     * 与生成基线字节时相同的数据：归一化向量、带原始特征的非归一化向量、缺少编码与向量的人脸，personId 含非 ASCII 字符
+     */
+    private static PersonFaceData baselineFixture() {
+        float[] unit = new float[128];
+        float[] plain = new float[128];
+        for (int k = 0; k < 128; k++) {
+            unit[k] = (k * 31 % 5 == 0 ? -1 : 1) * 0.088388346f;
+            plain[k] = k / 128f;
+        }
+        CachedFaceFeature f0 = CachedFaceFeature.createOptimized("F0", new int[]{0x12345678, 0x9ABCDEF0, -1, 0}, unit);
+        f0.setTemplateType("FACE310");
+        f0.setAlgoType("303");
+        CachedFaceFeature f1 = CachedFaceFeature.createOptimized("F1", new int[]{1, 2, 3, 4}, plain);
+        f1.setFeatureData(new byte[]{1, 2, 3, 4, 5});
+        CachedFaceFeature f2 = CachedFaceFeature.createOptimized("F2", null, null);
+        PersonFaceData person = new PersonFaceData();
+        person.setPersonId("人员-42");
+        person.setGroupIds(new String[]{"G1", "G2"});
+        person.setFeatures(Arrays.asList(f0, f1, f2));
+        return person;
+    }
+
+    private static byte[] baselineBytes(ByteOrder order) throws Exception {
+        String name = "person-face-data-baseline-" + (order == ByteOrder.BIG_ENDIAN ? "be" : "le") + ".bin";
+        return Files.readAllBytes(Paths.get(PersonFaceDataLayoutTest.class.getResource(name).toURI()));
+    }
+
+    private static InternalSerializationService serializationService(ByteOrder order) {
+        return new DefaultSerializationServiceBuilder()
+                .addDataSerializableFactory(BiometricDataSerializableFactory.FACTORY_ID,
+                        new BiometricDataSerializableFactory())
+                .setByteOrder(order)
+                .build();
+    }
+
+    private static InternalSerializationService serializationService(boolean nativeOrder) {
+        return new DefaultSerializationServiceBuilder()
+                .addDataSerializableFactory(BiometricDataSerializableFactory.FACTORY_ID,
+                        new BiometricDataSerializableFactory())
+                .setUseNativeByteOrder(nativeOrder)
+                .setAllowUnsafe(true)
+                .build();
+    }
+
+    private PersonFaceData person(int[]... codes) {
+        PersonFaceData person = new PersonFaceData();
+        person.setPersonId("P" + random.nextInt(1000));
+        person.setGroupIds(new String[]{"G1", "G2"});
+        CachedFaceFeature[] features = new CachedFaceFeature[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            float[] vector = new float[128];
+            for (int k = 0; k < vector.length; k++) {
+                vector[k] = random.nextFloat() - 0.5f;
+            }
+            features[i] = CachedFaceFeature.createOptimized("F" + i, codes[i], vector);
+        }
+        person.setFeatures(Arrays.asList(features));
+        return person;
+    }
+
+    private int[] randomCode() {
+        return new int[]{random.nextInt(), random.nextInt(), random.nextInt(), random.nextInt()};
+    }
+
+    private static int[] invert(int[] code) {
+        int[] result = new int[code.length];
+        for (int i = 0; i < code.length; i++) {
+            result[i] = ~code[i];
+        }
+        return result;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static int hamming(int[] a, int[] b) {
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Integer.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.biometric.algo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HalfFloat 的往返与误差界，以及半精度点积内核与展开后全精度内核一致
+ */
+class HalfFloatTest {
+
+    private static final int DIM = 128;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void roundTripAllBitPatterns() {
+        for (int bits = 0; bits <= 0xFFFF; bits++) {
+            short half = (short) bits;
+            float value = HalfFloat.toFloat(half);
+            if (Float.isNaN(value)) {
+                assertTrue(Float.isNaN(HalfFloat.toFloat(HalfFloat.fromFloat(value))), Integer.toHexString(bits));
+                continue;
+            }
+            assertEquals(half, HalfFloat.fromFloat(value), Integer.toHexString(bits));
+            if (!Float.isInfinite(value)) {
+                assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(HalfFloat.widen(half)),
+                        Integer.toHexString(bits));
+            }
+        }
+    }
+
+    @Test
+    void roundsToNearest() {
+        for (int i = 0; i < 1_000_000; i++) {
+            float value = (random.nextFloat() * 2 - 1) * (i % 2 == 0 ? 1.0F : 1e-4F);
+            short half = HalfFloat.fromFloat(value);
+            float error = Math.abs(HalfFloat.toFloat(half) - value);
+            // 与同符号的相邻两个有限 float16 比较，结果不劣于任一相邻值
+            int magnitude = half & 0x7FFF;
+            for (int neighborMagnitude = magnitude - 1; neighborMagnitude <= magnitude + 1; neighborMagnitude += 2) {
+                if (neighborMagnitude < 0 || neighborMagnitude >= 0x7C00) continue;
+                float neighbor = HalfFloat.toFloat((short) ((half & 0x8000) | neighborMagnitude));
+                assertTrue(error <= Math.abs(neighbor - value), value + " -> " + HalfFloat.toFloat(half));
+            }
+            // 规格化范围内相对误差不超过 2^-11，非规格化范围内绝对误差不超过 2^-25
+            assertTrue(error <= Math.max(Math.abs(value) * 0x1p-11f, 0x1p-25f), value + " error " + error);
+        }
+        assertEquals(HalfFloat.fromFloat(65504.0F), HalfFloat.fromFloat(65519.0F));
+        assertTrue(Float.isInfinite(HalfFloat.toFloat(HalfFloat.fromFloat(65520.0F))));
+        assertEquals(0, HalfFloat.fromFloat(0x1p-26f));
+    }
+
+    @Test
+    void halfKernelsMatchWidenedVectors() {
+        final int inputs = 5;
+        float[] queries = new float[inputs * DIM];
+        for (int q = 0; q < inputs; q++) {
+            float[] unit = Face303JavaCalcuater.normalize(randomVector());
+            System.arraycopy(unit, 0, queries, q * DIM, DIM);
+        }
+        float[] suffix = Face303JavaCalcuater.suffixNorms(queries, DIM, inputs);
+        int[] selected = {0, 1, 2, 3, 4};
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3 * DIM * 2).order(ByteOrder.nativeOrder());
+
+        for (int trial = 0; trial < 100; trial++) {
+            float[] cand = Face303JavaCalcuater.normalize(randomVector());
+            short[] half = new short[3 * DIM];
+            System.arraycopy(HalfFloat.encode(cand), 0, half, DIM, DIM);
+            for (int d = 0; d < DIM; d++) {
+                buffer.putShort((DIM + d) * 2, half[DIM + d]);
+            }
+            float[] widened = HalfFloat.decode(HalfFloat.encode(cand), null);
+
+            float[] expected = new float[inputs];
+            float[] heapScores = new float[inputs];
+            float[] bufferScores = new float[inputs];
+            Face303JavaCalcuater.dotBlockHalf(queries, DIM, selected, inputs, half, DIM, heapScores);
+            Face303JavaCalcuater.dotBlockHalf(queries, DIM, selected, inputs, buffer, DIM * 2, bufferScores);
+            for (int q = 0; q < inputs; q++) {
+                float[] query = new float[DIM];
+                System.arraycopy(queries, q * DIM, query, 0, DIM);
+                expected[q] = Face303JavaCalcuater.dot(query, widened, 0);
+                // float16 候选与全精度候选的余弦误差
+                assertEquals(Face303JavaCalcuater.dot(query, cand, 0), expected[q], 1e-3);
+
+                assertEquals(expected[q], Face303JavaCalcuater.dotHalf(query, half, DIM), 1e-5);
+                assertEquals(expected[q], Face303JavaCalcuater.dotHalf(query, buffer, DIM * 2), 1e-5);
+                assertEquals(expected[q], heapScores[q], 1e-5);
+                assertEquals(expected[q], bufferScores[q], 1e-5);
+                int s = q * (DIM / Face303JavaCalcuater.BOUND_CHUNK);
+                assertEquals(expected[q], Face303JavaCalcuater.dotBoundedHalf(queries, q * DIM, suffix, s, DIM,
+                        half, DIM, -2.0F), 1e-5);
+                assertEquals(expected[q], Face303JavaCalcuater.dotBoundedHalf(queries, q * DIM, suffix, s, DIM,
+                        buffer, DIM * 2, -2.0F), 1e-5);
+                // 提前放弃时返回值仍是精确值的上界
+                float bounded = Face303JavaCalcuater.dotBoundedHalf(queries, q * DIM, suffix, s, DIM,
+                        half, DIM, 2.0F);
+                assertTrue(bounded + 1e-5 >= expected[q]);
+            }
+        }
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.biometric.serv.controller;
 
 import com.biometric.algo.service.FaceCacheService;
+import com.biometric.algo.service.FaceRecogService;
+import com.biometric.algo.store.LocalFeatureStore;
 import com.biometric.serv.service.DataLoadService;
 import com.biometric.serv.service.MockDataLoadService;
 import com.hazelcast.cluster.Member;
@@ -8,6 +10,7 @@ import com.hazelcast.core.HazelcastInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
@@ -22,6 +25,9 @@ public class DataLoadController {
 
     private static final Logger log = LoggerFactory.getLogger(DataLoadController.class);
 
+    @Value("${biometric.recognition.threshold:0.6}")
+    private float threshold;
+
     @Autowired
     private DataLoadService dataLoadService;
 
@@ -34,6 +40,12 @@ public class DataLoadController {
     @Autowired
     private MockDataLoadService mockDataLoadService;
 
+    @Autowired
+    private LocalFeatureStore localFeatureStore;
+
+    @Autowired
+    private FaceRecogService faceRecogService;
+
     /**
      * 手动触发当前节点加载数据
      * 
@@ -124,6 +136,7 @@ public class DataLoadController {
             result.put("allMembers", nodeInfo.allMemberAddresses);
             result.put("cacheSize", faceCacheService.getFaceFeatureMap().size());
             result.put("localCacheSize", faceCacheService.getFaceFeatureMap().localKeySet().size());
+            result.put("localStore", localFeatureStore.getStats());
             
         } catch (Exception e) {
             log.error("获取缓存统计失败", e);
@@ -134,6 +147,66 @@ public class DataLoadController {
         return result;
     }
 
+    /**
+     * 在所有节点上重新训练 IVF 索引 (数据加载完成或大批量更新后调用)
+     *
+     * @return 各节点训练统计
+     */
+    @PostMapping("/ivf/rebuild")
+    public Map<String, Object> rebuildIvfIndex() {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            log.info("手动触发 IVF 索引重建");
+            result.put("members", faceRecogService.rebuildIvfIndex());
+            result.put("success", true);
+
+        } catch (Exception e) {
+            log.error("IVF 索引重建失败", e);
+            result.put("success", false);
+            result.put("message", "IVF 索引重建失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * 汉明半径标定：从已加载数据抽样查询，输出各半径下的粗筛通过率与召回率
+     * 耗时约为 (成员内抽样数 × 全量精确扫描)，请在低峰期调用
+     *
+     * @param samples   每个节点抽样的查询数（默认100）
+     * @param threshold 判定为命中的余弦阈值（默认识别阈值）
+     * @param radii     需要输出的半径，逗号分隔（可选）
+     * @return 标定结果
+     */
+    @GetMapping("/hamming/calibrate")
+    public Map<String, Object> calibrateHammingRadius(
+            @RequestParam(required = false, defaultValue = "100") Integer samples,
+            @RequestParam(required = false) Float threshold,
+            @RequestParam(required = false) String radii) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            List<Integer> radiusList = new ArrayList<>();
+            if (radii != null && !radii.trim().isEmpty()) {
+                for (String r : radii.split(",")) {
+                    radiusList.add(Integer.parseInt(r.trim()));
+                }
+            }
+            float effectiveThreshold = threshold != null ? threshold : this.threshold;
+            log.info("手动触发汉明半径标定: samples={}, threshold={}, radii={}", samples, effectiveThreshold, radiusList);
+            result.put("calibration", faceRecogService.calibrateHammingRadius(samples, effectiveThreshold, radiusList));
+            result.put("success", true);
+
+        } catch (Exception e) {
+            log.error("汉明半径标定失败", e);
+            result.put("success", false);
+            result.put("message", "汉明半径标定失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
     /**
      * 获取集群信息
      * 
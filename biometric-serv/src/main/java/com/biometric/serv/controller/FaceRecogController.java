@@ -2,7 +2,9 @@ package com.biometric.serv.controller;
 
 import com.alibaba.fastjson.JSONObject;
 import com.biometric.algo.dto.CompareParams;
-import com.biometric.algo.dto.CompareResult;
+import com.biometric.algo.dto.SearchEngine;
+import com.biometric.algo.dto.SearchPlan;
+import com.biometric.algo.dto.SearchResult;
 import com.biometric.algo.dto.SocketFaceFeature;
 import com.biometric.algo.service.FaceAlgoService;
 import com.biometric.algo.service.FaceRecogService;
@@ -11,15 +13,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/faceRecog")
@@ -33,23 +41,37 @@ public class FaceRecogController {
     @Value("${biometric.recognition.top-n:3}")
     private int topN;
 
+    // 1:N 搜索超时，到期后各节点停止扫描并返回 504
+    @Value("${biometric.recognition.timeout-ms:10000}")
+    private long searchTimeout;
+
     @Autowired
     private FaceRecogService faceSearchService;
 
     @Autowired
     private FaceAlgoService faceAlgoService;
 
+    /**
+     * 1:N 识别，搜索异步执行不占用容器线程
+     * 超时返回 504；客户端断开或请求超时时取消搜索，各节点停止扫描
+     *
+     * @param budgetMs          预算模式：各节点最长扫描时间（可选）
+     * @param budgetEvaluations 预算模式：各节点最多比对次数（可选）
+     *                          预算模式返回 best-effort 结果及覆盖统计（已扫描分区、候选人员、比对次数）
+     */
     @PostMapping("/compareMore")
-    public ResponseEntity<?> compareMore(@RequestParam(required = true) String fileName,
-                                         @RequestParam(required = false) String groupIds) throws IOException {
+    public DeferredResult<ResponseEntity<?>> compareMore(@RequestParam(required = true) String fileName,
+                                                         @RequestParam(required = false) String groupIds,
+                                                         @RequestParam(required = false) Long budgetMs,
+                                                         @RequestParam(required = false) Long budgetEvaluations) throws IOException {
         if (fileName == null || fileName.trim().isEmpty()) {
             log.error("文件名为空或为空字符串");
-            return ResponseEntity.badRequest().body("文件名是必需的");
+            return immediate(ResponseEntity.badRequest().body("文件名是必需的"));
         }
 
         File file = new File(fileName);
         if(!file.exists()){
-            return ResponseEntity.badRequest().body("文件不存在");
+            return immediate(ResponseEntity.badRequest().body("文件不存在"));
         }
 
         String imageBase64 = ImageToBase64Util.convertImageToBase64(fileName);
@@ -58,7 +80,7 @@ public class FaceRecogController {
 
         SocketFaceFeature featureResult = faceAlgoService.faceExtractFeature(images);
         if (featureResult.getReturnId() != 0 || featureResult.getReturnValue() == null) {
-            return ResponseEntity.badRequest().body("提取特征失败");
+            return immediate(ResponseEntity.badRequest().body("提取特征失败"));
         }
 
         List<byte[]> features = new ArrayList<>();
@@ -77,11 +99,81 @@ public class FaceRecogController {
         recogParam.setGroups(setGroupIds);
         recogParam.setThreshold(threshold);
         recogParam.setTopN(topN);
+        if (budgetMs != null) {
+            recogParam.setBudgetMillis(budgetMs);
+        }
+        if (budgetEvaluations != null) {
+            recogParam.setBudgetEvaluations(budgetEvaluations);
+        }
+
+        CompletableFuture<?> future = recogParam.isBudgeted()
+                ? faceSearchService.recogOneToManyWithCoverageAsync(recogParam, searchTimeout)
+                : faceSearchService.recogOneToManyAsync(recogParam, searchTimeout);
+        // 容器超时略晚于搜索超时，正常情况下由搜索超时给出 504
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(searchTimeout > 0 ? searchTimeout + 1000 : null);
+        deferred.onTimeout(() -> {
+            future.cancel(false);
+            deferred.setErrorResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("识别超时"));
+        });
+        deferred.onError(e -> future.cancel(false));
+        deferred.onCompletion(() -> {
+            // 连接断开等未正常写出结果的情况
+            if (!future.isDone()) {
+                future.cancel(false);
+            }
+        });
+
+        future.whenComplete((result, e) -> {
+            if (e == null) {
+                if (result instanceof SearchResult) {
+                    SearchResult searchResult = (SearchResult) result;
+                    log.info("人脸识别完成，找到 {} 个匹配结果，完整: {}", searchResult.getResults().size(), searchResult.isComplete());
+                } else {
+                    log.info("人脸识别完成，找到 {} 个匹配结果", ((List<?>) result).size());
+                }
+                deferred.setResult(ResponseEntity.ok(result));
+            } else if (e instanceof TimeoutException) {
+                log.warn("人脸识别超时: {}", e.getMessage());
+                deferred.setErrorResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("识别超时"));
+            } else if (!(e instanceof CancellationException)) {
+                log.error("人脸识别失败", e);
+                deferred.setErrorResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("识别失败: " + e.getMessage()));
+            }
+        });
+        return deferred;
+    }
+
+    private static DeferredResult<ResponseEntity<?>> immediate(ResponseEntity<?> response) {
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>();
+        deferred.setResult(response);
+        return deferred;
+    }
+
+    /**
+     * 查看 1:N 搜索的执行计划 (不执行搜索)
+     *
+     * @param groupIds 分组，逗号分隔（可选）
+     * @param features 查询特征数（默认2，与 compareMore 一致）
+     * @param engine   搜索引擎（可选，默认服务端配置）
+     */
+    @GetMapping("/explain")
+    public ResponseEntity<?> explain(@RequestParam(required = false) String groupIds,
+                                     @RequestParam(required = false, defaultValue = "2") Integer features,
+                                     @RequestParam(required = false) SearchEngine engine) {
+        List<String> setGroupIds = new ArrayList<>();
+        if (groupIds != null && !groupIds.trim().isEmpty()) {
+            setGroupIds = Arrays.asList(groupIds.split(","));
+        }
 
-        List<CompareResult> resultList = faceSearchService.recogOneToMany(recogParam);
+        CompareParams recogParam = new CompareParams();
+        recogParam.setFeatures(new ArrayList<>(Collections.nCopies(Math.max(features, 1), new byte[0])));
+        recogParam.setGroups(setGroupIds);
+        recogParam.setThreshold(threshold);
+        recogParam.setTopN(topN);
+        recogParam.setEngine(engine);
 
-        log.info("人脸识别完成，找到 {} 个匹配结果", resultList.size());
-        return ResponseEntity.ok(resultList);
+        SearchPlan plan = faceSearchService.explain(recogParam);
+        return ResponseEntity.ok(plan);
     }
 
-}
\ No newline at end of file
+}
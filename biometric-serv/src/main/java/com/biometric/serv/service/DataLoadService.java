@@ -3,7 +3,10 @@ package com.biometric.serv.service;
 import com.biometric.algo.dto.CachedFaceFeature;
 import com.biometric.algo.dto.PersonFaceData;
 import com.biometric.algo.service.FaceCacheService;
+import com.biometric.algo.util.BinaryProjection;
 import com.biometric.algo.util.Face303JavaCalcuater;
+import com.biometric.algo.util.HalfFloat;
+import com.biometric.algo.util.VectorQuantizer;
 import com.biometric.serv.config.ServerConfigOptimizer;
 import com.biometric.serv.config.ServerConfigOptimizer.LoaderConfig;
 import com.biometric.serv.entity.FaceFtur;
@@ -19,6 +22,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
@@ -42,6 +46,25 @@ public class DataLoadService implements DisposableBean {
     @Value("${biometric.face-loader.allPerson:false}")
     private boolean allPerson;
 
+    // 加载时预计算 int8 量化特征并随记录存入 IMap，仅供列式特征库入库时复用 (特征库会自行量化)，默认关闭
+    @Value("${biometric.face-loader.quantize:false}")
+    private boolean quantize;
+
+    // 加载时对浮点特征做 L2 归一化，比对时余弦相似度退化为单次点积
+    @Value("${biometric.face-loader.normalize:true}")
+    private boolean normalize;
+
+    // 加载时将浮点特征转为半精度 (float16) 存储，向量内存减半，比对时再展开为 float
+    // 需全部节点支持半精度字段后才能开启 (见 biometric.cache.serialization-layout)
+    @Value("${biometric.face-loader.half-precision:false}")
+    private boolean halfPrecision;
+
+    // 加载时预先计算长二进制特征，位数与列式特征库保持一致，0 表示不计算
+    @Value("${biometric.store.long-code.bits:0}")
+    private int longCodeBits;
+    // longCodeBits 对应的编码器，启动时构造一次，各加载线程共用；不计算时为 null
+    private BinaryProjection projection;
+
     @Autowired
     private PsnTmplMapper psnTmplMapper;
     @Autowired
@@ -87,6 +110,11 @@ public class DataLoadService implements DisposableBean {
         );
     }
 
+    @PostConstruct
+    public void init() {
+        projection = longCodeBits > 0 ? BinaryProjection.of(longCodeBits) : null;
+    }
+
     public void loadAllFeaturesIntoCache(int shardIndex, int totalShards) {
         log.info("开始分片 {}/{} 数据加载，批次大小: {}", shardIndex, totalShards, BATCH_SIZE);
         long startTime = System.currentTimeMillis();
@@ -185,6 +213,23 @@ public class DataLoadService implements DisposableBean {
 
                     if (minFeat) cf.setBinaryFeature(Face303JavaCalcuater.getBinaFeat(rawData));
                     if (maxFeat) cf.setFeatureVector(Face303JavaCalcuater.toFloatArray(rawData));
+                    if (normalize && cf.getFeatureVector() != null) {
+                        cf.setFeatureVector(Face303JavaCalcuater.normalize(cf.getFeatureVector()));
+                        cf.setNormalized(true);
+                    }
+                    if (quantize && cf.getFeatureVector() != null) {
+                        float scale = VectorQuantizer.scale(cf.getFeatureVector());
+                        cf.setQuantizedVector(VectorQuantizer.quantize(cf.getFeatureVector(), scale));
+                        cf.setQuantizedScale(scale);
+                    }
+                    if (projection != null && cf.getFeatureVector() != null) {
+                        cf.setLongCode(projection.encode(cf.getFeatureVector()));
+                    }
+                    // 量化与长编码均由浮点向量计算，最后再转为半精度
+                    if (halfPrecision && cf.getFeatureVector() != null) {
+                        cf.setHalfVector(HalfFloat.encode(cf.getFeatureVector()));
+                        cf.setFeatureVector(null);
+                    }
 
                     psnToFeatures.computeIfAbsent(f.getPsnTmplNo(), k -> new ArrayList<>()).add(cf);
                 }
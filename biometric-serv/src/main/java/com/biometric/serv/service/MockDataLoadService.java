@@ -3,10 +3,14 @@ package com.biometric.serv.service;
 import com.biometric.algo.dto.CachedFaceFeature;
 import com.biometric.algo.dto.PersonFaceData;
 import com.biometric.algo.service.FaceCacheService;
+import com.biometric.algo.util.BinaryProjection;
 import com.biometric.algo.util.Face303JavaCalcuater;
+import com.biometric.algo.util.HalfFloat;
+import com.biometric.algo.util.VectorQuantizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
@@ -38,6 +42,22 @@ public class MockDataLoadService {
     @Autowired
     private FaceCacheService faceCacheService;
 
+    // 与列式特征库一致的长二进制特征位数，0 表示不预先编码
+    @Value("${biometric.store.long-code.bits:0}")
+    private int longCodeBits;
+
+    // 与 DataLoadService 一致的量化开关
+    @Value("${biometric.face-loader.quantize:false}")
+    private boolean quantize;
+
+    // 与 DataLoadService 一致的归一化开关
+    @Value("${biometric.face-loader.normalize:true}")
+    private boolean normalize;
+
+    // 与 DataLoadService 一致的半精度存储开关
+    @Value("${biometric.face-loader.half-precision:false}")
+    private boolean halfPrecision;
+
     // 状态跟踪
     private final AtomicLong generatedPersons = new AtomicLong(0);
     private final AtomicLong loadedPersons = new AtomicLong(0);
@@ -59,6 +79,7 @@ public class MockDataLoadService {
     public void init() {
         log.info("正在初始化模拟特征池 (size={})...", FEATURE_POOL_SIZE);
         Random random = new Random(12345); // 固定种子
+        BinaryProjection projection = longCodeBits > 0 ? BinaryProjection.of(longCodeBits) : null;
         for (int i = 0; i < FEATURE_POOL_SIZE; i++) {
             byte[] raw = new byte[512];
             random.nextBytes(raw);
@@ -66,8 +87,18 @@ public class MockDataLoadService {
             // 预计算，模拟生产环境的优化结构
             int[] binary = Face303JavaCalcuater.getBinaFeat(raw);
             float[] vector = Face303JavaCalcuater.toFloatArray(raw);
+            if (normalize) {
+                vector = Face303JavaCalcuater.normalize(vector);
+            }
+            float scale = quantize ? VectorQuantizer.scale(vector) : 0.0F;
+            byte[] quantized = quantize ? VectorQuantizer.quantize(vector, scale) : null;
+
+            long[] longCode = projection != null ? projection.encode(vector) : null;
 
-            FEATURE_POOL.add(new MockFeatureTemplate(binary, vector));
+            short[] halfVector = halfPrecision ? HalfFloat.encode(vector) : null;
+
+            FEATURE_POOL.add(new MockFeatureTemplate(binary, halfVector == null ? vector : null, halfVector, normalize,
+                    quantized, scale, longCode));
         }
         log.info("特征池初始化完成");
     }
@@ -76,10 +107,21 @@ public class MockDataLoadService {
     private static class MockFeatureTemplate {
         final int[] binaryFeature;
         final float[] featureVector;
-
-        public MockFeatureTemplate(int[] binaryFeature, float[] featureVector) {
+        final short[] halfVector;
+        final boolean normalized;
+        final byte[] quantizedVector;
+        final float quantizedScale;
+        final long[] longCode;
+
+        public MockFeatureTemplate(int[] binaryFeature, float[] featureVector, short[] halfVector, boolean normalized,
+                                   byte[] quantizedVector, float quantizedScale, long[] longCode) {
             this.binaryFeature = binaryFeature;
             this.featureVector = featureVector;
+            this.halfVector = halfVector;
+            this.normalized = normalized;
+            this.quantizedVector = quantizedVector;
+            this.quantizedScale = quantizedScale;
+            this.longCode = longCode;
         }
     }
 
@@ -183,6 +225,11 @@ public class MockDataLoadService {
                 // 模拟 DataLoadService 的优化结构：设置预计算字段，featuresData设为null
                 feature.setBinaryFeature(template.binaryFeature);
                 feature.setFeatureVector(template.featureVector);
+                feature.setHalfVector(template.halfVector);
+                feature.setNormalized(template.normalized);
+                feature.setQuantizedVector(template.quantizedVector);
+                feature.setQuantizedScale(template.quantizedScale);
+                feature.setLongCode(template.longCode);
                 feature.setFeatureData(null); // 省内存
 
                 features.add(feature);
@@ -6,6 +6,11 @@ export LC_ALL=zh_CN.UTF-8
 export JAVA_TOOL_OPTIONS="-Dfile.encoding=UTF-8"
 
 # 运行应用
+# 若 biometric.store.storage=DIRECT/MAPPED，特征向量位于堆外，可将堆缩小并为堆外内存预留空间，例如:
+#   java -jar -Xmx16G -Xms16G -XX:MaxDirectMemorySize=40G ...
+# JDK 17+ 可添加 --add-modules jdk.incubator.vector 启用 Vector API 评分内核 (Java 8 不识别该参数，勿添加)，
+# 启动日志 "1:N 搜索评分内核" 显示实际使用的内核，例如:
+#   java --add-modules jdk.incubator.vector -jar -Xmx50G -Xms32G ...
 java -jar -Xmx50G -Xms32G \
   -Dfile.encoding=UTF-8 \
   -Dsun.jnu.encoding=UTF-8 \